@@ -30,15 +30,17 @@ import java.security.NoSuchAlgorithmException;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class CoderUtils {
   private static final char[] HEX_CODE = "0123456789ABCDEF".toCharArray();
-  private static MessageDigest md;
-
-  static {
-    try {
-      md = MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      log.error(e.getMessage(), e);
-    }
-  }
+  /** MessageDigest is not thread safe */
+  private static final ThreadLocal<MessageDigest> MD =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+              log.error(e.getMessage(), e);
+              return null;
+            }
+          });
 
   public static String md516Bit(String input) {
     String hash = md532Bit(input);
@@ -52,6 +54,7 @@ public class CoderUtils {
     if (input == null || input.length() == 0) {
       return null;
     }
+    MessageDigest md = MD.get();
     md.update(input.getBytes());
     byte[] digest = md.digest();
     return convertToString(digest);
@@ -61,6 +64,7 @@ public class CoderUtils {
     if (input == null || input.length == 0) {
       return null;
     }
+    MessageDigest md = MD.get();
     md.update(input);
     byte[] digest = md.digest();
     return convertToString(digest);
@@ -18,12 +18,14 @@ package org.apache.dubbo.admin.common.utils;
 
 import org.apache.dubbo.admin.model.domain.Consumer;
 import org.apache.dubbo.admin.model.domain.Provider;
+import org.apache.dubbo.admin.registry.cache.ConsumerAggregates;
+import org.apache.dubbo.admin.registry.cache.RegistrySources;
 import org.apache.dubbo.common.URL;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /** @author wujunshen */
 public class SyncUtils {
@@ -59,6 +61,7 @@ public class SyncUtils {
     p.setEnabled(url.getParameter(Constants.ENABLED_KEY, true));
     p.setWeight(url.getParameter(Constants.WEIGHT_KEY, Constants.DEFAULT_WEIGHT));
     p.setUsername(url.getParameter("owner"));
+    p.setRegistry(url.getParameter(RegistrySources.SOURCE_KEY));
 
     return p;
   }
@@ -89,6 +92,7 @@ public class SyncUtils {
     c.setAddress(url.getHost());
     c.setApplication(url.getParameter(Constants.APPLICATION_KEY));
     c.setParameters(url.toParameterString());
+    c.setRegistry(url.getParameter(RegistrySources.SOURCE_KEY));
 
     return c;
   }
@@ -132,70 +136,32 @@ public class SyncUtils {
    */
   public static Map<String, URL> filterFromService(
       Map<String, Map<String, URL>> urls, Map<String, String> filter) {
-    Map<String, URL> ret = new ConcurrentHashMap<>(8);
-    if (urls == null) {
-      return ret;
-    }
-
-    String s = filter.remove(SERVICE_FILTER_KEY);
-    if (s == null) {
-      for (Map.Entry<String, Map<String, URL>> entry : urls.entrySet()) {
-        filterFromUrls(entry.getValue(), ret, filter);
-      }
-    } else {
-      Map<String, URL> map = urls.get(s);
-      filterFromUrls(map, ret, filter);
-    }
-
-    return ret;
+    return UrlFilter.compile(filter).filter(urls);
   }
 
   /**
-   * Map<Long, URL>
+   * Map<serviceName, Map<Long, URL>>, only the given services are visited
    *
-   * @param from
-   * @param to
+   * @param urls
+   * @param services candidate service names, usually looked up from a registry index
    * @param filter
+   * @return Map<Long, URL>
    */
-  static void filterFromUrls(
-      Map<String, URL> from, Map<String, URL> to, Map<String, String> filter) {
-    if (from == null || from.isEmpty()) {
-      return;
-    }
-
-    for (Map.Entry<String, URL> entry : from.entrySet()) {
-      URL url = entry.getValue();
-
-      boolean match = true;
-      for (Map.Entry<String, String> e : filter.entrySet()) {
-        String key = e.getKey();
-        String value = e.getValue();
-
-        if (ADDRESS_FILTER_KEY.equals(key)) {
-          // value is address:port
-          if (value.contains(COLON)) {
-            if (!value.equals(url.getIp() + COLON + url.getPort())) {
-              match = false;
-              break;
-            }
-          } else { // value is just address
-            if (!value.equals(url.getIp())) {
-              match = false;
-              break;
-            }
-          }
-        } else {
-          if (!value.equals(url.getParameter(key))) {
-            match = false;
-            break;
-          }
-        }
-      }
+  public static Map<String, URL> filterFromServices(
+      Map<String, Map<String, URL>> urls, Collection<String> services, Map<String, String> filter) {
+    return UrlFilter.compile(filter).filter(urls, services);
+  }
 
-      if (match) {
-        to.put(entry.getKey(), url);
+  /** @param value address:port or just address of one of the aggregated instances */
+  static boolean matchesAggregate(URL url, String value) {
+    for (String address : ConsumerAggregates.getAddresses(url)) {
+      if (value.equals(address)
+          || value.equals(ConsumerAggregates.getHost(address))
+          || value.equals(address + COLON + 0)) {
+        return true;
       }
     }
+    return false;
   }
 
   public static <M extends Map<String, Map<String, URL>>> Pair<String, URL> filterFromCategory(
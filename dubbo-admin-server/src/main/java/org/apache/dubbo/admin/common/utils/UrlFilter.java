@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.common.utils;
+
+import org.apache.dubbo.admin.registry.cache.ConsumerAggregates;
+import org.apache.dubbo.common.URL;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.dubbo.common.constants.CommonConstants.RELEASE_KEY;
+import static org.apache.dubbo.common.constants.CommonConstants.SIDE_KEY;
+
+/**
+ * A filter over cached URLs, compiled once from what the {@link SyncUtils} filter maps spell out.
+ *
+ * <p>The address is split into ip and port up front instead of concatenating both for every URL,
+ * and the checks run from the most to the least selective one: the address, then the parameters,
+ * the ones every instance shares a handful of values for last. A filter is immutable, so the ones
+ * that do not depend on a request are kept in constants and reused.
+ */
+public final class UrlFilter {
+  /** matches every URL */
+  public static final UrlFilter ALL = new UrlFilter(null, null, new String[0], new String[0]);
+
+  /** parameters with a handful of values over the whole registry, checked last */
+  private static final Set<String> UNSELECTIVE =
+      new HashSet<>(
+          Arrays.asList(SIDE_KEY, RELEASE_KEY, Constants.CATEGORY_KEY));
+
+  /** service key, null for every service */
+  private final String service;
+
+  /** address:port or address as given, null for any address */
+  private final String address;
+
+  /** ip of the address, null when the address can never match */
+  private final String ip;
+
+  /** port of the address, -1 for any port */
+  private final int port;
+
+  private final String[] keys;
+
+  private final String[] values;
+
+  private UrlFilter(String service, String address, String[] keys, String[] values) {
+    this.service = service;
+    this.address = address;
+    this.keys = keys;
+    this.values = values;
+    if (address == null) {
+      ip = null;
+      port = -1;
+      return;
+    }
+    int index = address.indexOf(SyncUtils.COLON);
+    if (index < 0) {
+      ip = address;
+      port = -1;
+      return;
+    }
+    int parsed;
+    try {
+      parsed = Integer.parseInt(address.substring(index + 1));
+    } catch (NumberFormatException e) {
+      parsed = -1;
+    }
+    ip = parsed < 0 ? null : address.substring(0, index);
+    port = parsed;
+  }
+
+  /**
+   * @param filter parameters, plus {@link SyncUtils#SERVICE_FILTER_KEY} and {@link
+   *     SyncUtils#ADDRESS_FILTER_KEY}; the category is not looked at
+   */
+  public static UrlFilter compile(Map<String, String> filter) {
+    UrlFilter ret = ALL;
+    for (Map.Entry<String, String> entry : filter.entrySet()) {
+      String key = entry.getKey();
+      if (SyncUtils.SERVICE_FILTER_KEY.equals(key)) {
+        ret = ret.service(entry.getValue());
+      } else if (SyncUtils.ADDRESS_FILTER_KEY.equals(key)) {
+        ret = ret.address(entry.getValue());
+      } else if (!Constants.CATEGORY_KEY.equals(key)) {
+        ret = ret.parameter(key, entry.getValue());
+      }
+    }
+    return ret;
+  }
+
+  /** @return this filter, restricted to one service */
+  public UrlFilter service(String service) {
+    return new UrlFilter(service, address, keys, values);
+  }
+
+  /** @return this filter, restricted to address:port, or to every port of an address */
+  public UrlFilter address(String address) {
+    return new UrlFilter(service, address, keys, values);
+  }
+
+  /** @return this filter, restricted to a value of a parameter */
+  public UrlFilter parameter(String key, String value) {
+    List<String> newKeys = new ArrayList<>(Arrays.asList(keys));
+    List<String> newValues = new ArrayList<>(Arrays.asList(values));
+    // the unselective ones go last, the others before them
+    int index = 0;
+    while (index < newKeys.size()
+        && (UNSELECTIVE.contains(key) || !UNSELECTIVE.contains(newKeys.get(index)))) {
+      index++;
+    }
+    newKeys.add(index, key);
+    newValues.add(index, value);
+    return new UrlFilter(
+        service, address, newKeys.toArray(new String[0]), newValues.toArray(new String[0]));
+  }
+
+  public boolean test(URL url) {
+    if (address != null && !testAddress(url)) {
+      return false;
+    }
+    for (int i = 0; i < keys.length; i++) {
+      if (!values[i].equals(url.getParameter(keys[i]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean testAddress(URL url) {
+    if (ConsumerAggregates.isAggregate(url)) {
+      return SyncUtils.matchesAggregate(url, address);
+    }
+    if (ip == null || !ip.equals(url.getIp())) {
+      return false;
+    }
+    return port < 0 || port == url.getPort();
+  }
+
+  /**
+   * @param services Map<serviceName, Map<id, URL>> of a category
+   * @return Map<id, URL> of the matching URLs
+   */
+  public Map<String, URL> filter(Map<String, Map<String, URL>> services) {
+    Map<String, URL> ret = new HashMap<>();
+    if (services == null) {
+      return ret;
+    }
+    if (service != null) {
+      filter(services.get(service), ret);
+    } else {
+      for (Map<String, URL> urls : services.values()) {
+        filter(urls, ret);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @param services Map<serviceName, Map<id, URL>> of a category
+   * @param candidates the only services to visit, usually looked up from a registry index
+   * @return Map<id, URL> of the matching URLs
+   */
+  public Map<String, URL> filter(
+      Map<String, Map<String, URL>> services, Collection<String> candidates) {
+    Map<String, URL> ret = new HashMap<>();
+    if (services == null) {
+      return ret;
+    }
+    for (String candidate : candidates) {
+      if (service == null || service.equals(candidate)) {
+        filter(services.get(candidate), ret);
+      }
+    }
+    return ret;
+  }
+
+  private void filter(Map<String, URL> from, Map<String, URL> to) {
+    if (from == null) {
+      return;
+    }
+    for (Map.Entry<String, URL> entry : from.entrySet()) {
+      if (test(entry.getValue())) {
+        to.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+}
@@ -18,24 +18,18 @@
 package org.apache.dubbo.admin.config;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.dubbo.admin.common.exception.ConfigurationException;
-import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.admin.registry.cache.RegistrySources;
 import org.apache.dubbo.admin.registry.config.GovernanceConfiguration;
 import org.apache.dubbo.admin.registry.metadata.MetaDataCollector;
-import org.apache.dubbo.admin.registry.metadata.impl.NoOpMetadataCollector;
 import org.apache.dubbo.common.URL;
-import org.apache.dubbo.common.extension.ExtensionLoader;
 import org.apache.dubbo.registry.Registry;
-import org.apache.dubbo.registry.RegistryFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 
-import java.util.Arrays;
-
-import static org.apache.dubbo.common.constants.CommonConstants.CLUSTER_KEY;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /** @author wujunshen */
 @Slf4j
@@ -57,6 +51,10 @@ public class ConfigCenter {
   @Value("${admin.registry.group:dubbo}")
   private String registryGroup;
 
+  /** more registries merged into the cache, name=address entries separated by semicolons */
+  @Value("${admin.registry.federation:}")
+  private String registryFederation;
+
   @Value("${admin.config-center.group:dubbo}")
   private String configCenterGroup;
 
@@ -79,47 +77,10 @@ public class ConfigCenter {
    */
   @Bean("governanceConfiguration")
   GovernanceConfiguration getDynamicConfiguration() {
-    GovernanceConfiguration dynamicConfiguration = null;
-
-    if (StringUtils.isNotEmpty(configAddress)) {
-      URL configCenterUrl = formUrl(configAddress, configCenterGroup, username, password);
-      dynamicConfiguration =
-          ExtensionLoader.getExtensionLoader(GovernanceConfiguration.class)
-              .getExtension(configCenterUrl.getProtocol());
-      dynamicConfiguration.setUrl(configCenterUrl);
-      dynamicConfiguration.init();
-      String config = dynamicConfiguration.getConfig(Constants.GLOBAL_CONFIG_PATH);
-
-      if (StringUtils.isNotEmpty(config)) {
-        Arrays.stream(config.split("\n"))
-            .forEach(
-                s -> {
-                  if (s.startsWith(Constants.REGISTRY_ADDRESS)) {
-                    registryUrl =
-                        formUrl(s.split("=")[1].trim(), configCenterGroup, username, password);
-                  } else if (s.startsWith(Constants.METADATA_ADDRESS)) {
-                    metadataUrl =
-                        formUrl(s.split("=")[1].trim(), configCenterGroup, username, password);
-                  }
-                });
-      }
-    }
-    if (dynamicConfiguration == null) {
-      if (StringUtils.isNotEmpty(registryAddress)) {
-        registryUrl = formUrl(registryAddress, registryGroup, username, password);
-        dynamicConfiguration =
-            ExtensionLoader.getExtensionLoader(GovernanceConfiguration.class)
-                .getExtension(registryUrl.getProtocol());
-        dynamicConfiguration.setUrl(registryUrl);
-        dynamicConfiguration.init();
-        log.warn(
-            "you are using dubbo.registry.address, which is not recommend, please refer to: https://github.com/apache/incubator-dubbo-admin/wiki/Dubbo-Admin-configuration");
-      } else {
-        throw new ConfigurationException(
-            "Either config center or registry address is needed, please refer to https://github.com/apache/incubator-dubbo-admin/wiki/Dubbo-Admin-configuration");
-        // throw exception
-      }
-    }
+    EnvironmentClients clients = clients();
+    GovernanceConfiguration dynamicConfiguration = clients.createGovernanceConfiguration();
+    registryUrl = clients.getRegistryUrl();
+    metadataUrl = clients.getMetadataUrl();
     return dynamicConfiguration;
   }
 
@@ -127,55 +88,52 @@ public class ConfigCenter {
   @Bean
   @DependsOn("governanceConfiguration")
   Registry getRegistry() {
-    Registry registry;
-    if (registryUrl == null) {
-      if (StringUtils.isBlank(registryAddress)) {
-        throw new ConfigurationException(
-            "Either config center or registry address is needed, please refer to https://github.com/apache/incubator-dubbo-admin/wiki/Dubbo-Admin-configuration");
-      }
-      registryUrl = formUrl(registryAddress, registryGroup, username, password);
-    }
-    RegistryFactory registryFactory =
-        ExtensionLoader.getExtensionLoader(RegistryFactory.class).getAdaptiveExtension();
-    registry = registryFactory.getRegistry(registryUrl);
+    EnvironmentClients clients = clients();
+    Registry registry = clients.createRegistry();
+    registryUrl = clients.getRegistryUrl();
     return registry;
   }
 
-  /** generate metadata client */
+  /** generate clients of the federated registries */
   @Bean
   @DependsOn("governanceConfiguration")
-  MetaDataCollector getMetadataCollector() {
-    MetaDataCollector metaDataCollector = new NoOpMetadataCollector();
-    if (metadataUrl == null) {
-      if (StringUtils.isNotEmpty(metadataAddress)) {
-        metadataUrl = formUrl(metadataAddress, metadataGroup, username, password);
-        metadataUrl = metadataUrl.addParameter(CLUSTER_KEY, cluster);
-      }
+  RegistrySources getRegistrySources() {
+    Map<String, String> addresses = RegistrySources.parse(registryFederation);
+    if (addresses.isEmpty()) {
+      return RegistrySources.NONE;
     }
-    if (metadataUrl != null) {
-      metaDataCollector =
-          ExtensionLoader.getExtensionLoader(MetaDataCollector.class)
-              .getExtension(metadataUrl.getProtocol());
-      metaDataCollector.setUrl(metadataUrl);
-      metaDataCollector.init();
-    } else {
-      log.warn(
-          "you are using dubbo.registry.address, which is not recommend, please refer to: https://github.com/apache/incubator-dubbo-admin/wiki/Dubbo-Admin-configuration");
+    EnvironmentClients clients = clients();
+    Map<String, Registry> registries = new LinkedHashMap<>();
+    for (Map.Entry<String, String> entry : addresses.entrySet()) {
+      registries.put(entry.getKey(), clients.createRegistry(entry.getValue()));
     }
+    return new RegistrySources(registries);
+  }
+
+  /** generate metadata client */
+  @Bean
+  @DependsOn("governanceConfiguration")
+  MetaDataCollector getMetadataCollector() {
+    EnvironmentClients clients = clients();
+    MetaDataCollector metaDataCollector = clients.createMetaDataCollector();
+    metadataUrl = clients.getMetadataUrl();
     return metaDataCollector;
   }
 
-  private URL formUrl(String config, String group, String username, String password) {
-    URL url = URL.valueOf(config);
-    if (StringUtils.isNotEmpty(group)) {
-      url = url.addParameter(Constants.GROUP_KEY, group);
-    }
-    if (StringUtils.isNotEmpty(username)) {
-      url = url.setUsername(username);
-    }
-    if (StringUtils.isNotEmpty(password)) {
-      url = url.setPassword(password);
-    }
-    return url;
+  /** @return clients of the default environment, knowing the addresses found so far */
+  private EnvironmentClients clients() {
+    return EnvironmentClients.builder()
+        .configAddress(configAddress)
+        .registryAddress(registryAddress)
+        .metadataAddress(metadataAddress)
+        .cluster(cluster)
+        .registryGroup(registryGroup)
+        .configCenterGroup(configCenterGroup)
+        .metadataGroup(metadataGroup)
+        .username(username)
+        .password(password)
+        .registryUrl(registryUrl)
+        .metadataUrl(metadataUrl)
+        .build();
   }
 }
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.config;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.dubbo.admin.common.exception.ConfigurationException;
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.admin.registry.config.GovernanceConfiguration;
+import org.apache.dubbo.admin.registry.metadata.MetaDataCollector;
+import org.apache.dubbo.admin.registry.metadata.impl.NoOpMetadataCollector;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.extension.ExtensionLoader;
+import org.apache.dubbo.registry.Registry;
+import org.apache.dubbo.registry.RegistryFactory;
+import org.springframework.core.env.PropertyResolver;
+
+import java.util.Arrays;
+
+import static org.apache.dubbo.common.constants.CommonConstants.CLUSTER_KEY;
+
+/**
+ * Creates the registry, config center and metadata clients of an environment, for {@link
+ * ConfigCenter} from the {@code admin.} settings and for any other environment from the same
+ * settings under its own prefix, such as {@code admin.env.prod.config-center} for {@code
+ * admin.config-center}.
+ *
+ * <p>The addresses of the registry and the metadata report are taken from the config center when
+ * it has them, so the config center client is created first.
+ *
+ * @author wujunshen
+ */
+@Slf4j
+public class EnvironmentClients {
+  private final String configAddress;
+
+  private final String registryAddress;
+
+  private final String metadataAddress;
+
+  private final boolean cluster;
+
+  private final String registryGroup;
+
+  private final String configCenterGroup;
+
+  private final String metadataGroup;
+
+  private final String username;
+
+  private final String password;
+
+  /** whether the clients are instances of their own rather than the Dubbo extension singletons */
+  private final boolean isolated;
+
+  /** address of the registry, once known */
+  @Getter private URL registryUrl;
+
+  /** address of the metadata report, once known */
+  @Getter private URL metadataUrl;
+
+  /**
+   * Clients of an environment other than the one of {@link ConfigCenter}, which do not share the
+   * Dubbo extension singletons.
+   *
+   * @param properties where the settings are read from
+   * @param prefix prefix of every setting, ending with a dot
+   */
+  public EnvironmentClients(PropertyResolver properties, String prefix) {
+    this(
+        properties.getProperty(prefix + "config-center", ""),
+        properties.getProperty(prefix + "registry.address", ""),
+        properties.getProperty(prefix + "metadata-report.address", ""),
+        properties.getProperty(prefix + "metadata-report.cluster", Boolean.class, false),
+        properties.getProperty(prefix + "registry.group", "dubbo"),
+        properties.getProperty(prefix + "config-center.group", "dubbo"),
+        properties.getProperty(prefix + "metadata-report.group", "dubbo"),
+        properties.getProperty(prefix + "config-center.username", ""),
+        properties.getProperty(prefix + "config-center.password", ""),
+        true,
+        null,
+        null);
+  }
+
+  @Builder
+  private EnvironmentClients(
+      String configAddress,
+      String registryAddress,
+      String metadataAddress,
+      boolean cluster,
+      String registryGroup,
+      String configCenterGroup,
+      String metadataGroup,
+      String username,
+      String password,
+      boolean isolated,
+      URL registryUrl,
+      URL metadataUrl) {
+    this.configAddress = configAddress;
+    this.registryAddress = registryAddress;
+    this.metadataAddress = metadataAddress;
+    this.cluster = cluster;
+    this.registryGroup = registryGroup;
+    this.configCenterGroup = configCenterGroup;
+    this.metadataGroup = metadataGroup;
+    this.username = username;
+    this.password = password;
+    this.isolated = isolated;
+    this.registryUrl = registryUrl;
+    this.metadataUrl = metadataUrl;
+  }
+
+  /** generate dynamic configuration client */
+  public GovernanceConfiguration createGovernanceConfiguration() {
+    GovernanceConfiguration dynamicConfiguration = null;
+
+    if (StringUtils.isNotEmpty(configAddress)) {
+      URL configCenterUrl = formUrl(configAddress, configCenterGroup);
+      dynamicConfiguration =
+          extension(GovernanceConfiguration.class, configCenterUrl.getProtocol());
+      dynamicConfiguration.setUrl(configCenterUrl);
+      dynamicConfiguration.init();
+      String config = dynamicConfiguration.getConfig(Constants.GLOBAL_CONFIG_PATH);
+
+      if (StringUtils.isNotEmpty(config)) {
+        Arrays.stream(config.split("\n"))
+            .forEach(
+                s -> {
+                  if (s.startsWith(Constants.REGISTRY_ADDRESS)) {
+                    registryUrl = formUrl(s.split("=")[1].trim(), configCenterGroup);
+                  } else if (s.startsWith(Constants.METADATA_ADDRESS)) {
+                    metadataUrl = formUrl(s.split("=")[1].trim(), configCenterGroup);
+                  }
+                });
+      }
+    }
+    if (dynamicConfiguration == null) {
+      if (StringUtils.isNotEmpty(registryAddress)) {
+        registryUrl = formUrl(registryAddress, registryGroup);
+        dynamicConfiguration = extension(GovernanceConfiguration.class, registryUrl.getProtocol());
+        dynamicConfiguration.setUrl(registryUrl);
+        dynamicConfiguration.init();
+        log.warn(
+            "you are using dubbo.registry.address, which is not recommend, please refer to: https://github.com/apache/incubator-dubbo-admin/wiki/Dubbo-Admin-configuration");
+      } else {
+        throw new ConfigurationException(
+            "Either config center or registry address is needed, please refer to https://github.com/apache/incubator-dubbo-admin/wiki/Dubbo-Admin-configuration");
+      }
+    }
+    return dynamicConfiguration;
+  }
+
+  /** generate registry client, after {@link #createGovernanceConfiguration()} */
+  public Registry createRegistry() {
+    if (registryUrl == null) {
+      if (StringUtils.isBlank(registryAddress)) {
+        throw new ConfigurationException(
+            "Either config center or registry address is needed, please refer to https://github.com/apache/incubator-dubbo-admin/wiki/Dubbo-Admin-configuration");
+      }
+      registryUrl = formUrl(registryAddress, registryGroup);
+    }
+    return createRegistry(registryUrl);
+  }
+
+  /**
+   * @param address address of a registry
+   * @return its client, with the registry group and credentials of this environment
+   */
+  public Registry createRegistry(String address) {
+    return createRegistry(formUrl(address, registryGroup));
+  }
+
+  /** generate metadata client, after {@link #createGovernanceConfiguration()} */
+  public MetaDataCollector createMetaDataCollector() {
+    MetaDataCollector metaDataCollector = new NoOpMetadataCollector();
+    if (metadataUrl == null) {
+      if (StringUtils.isNotEmpty(metadataAddress)) {
+        metadataUrl = formUrl(metadataAddress, metadataGroup);
+        metadataUrl = metadataUrl.addParameter(CLUSTER_KEY, cluster);
+      }
+    }
+    if (metadataUrl != null) {
+      metaDataCollector = extension(MetaDataCollector.class, metadataUrl.getProtocol());
+      metaDataCollector.setUrl(metadataUrl);
+      metaDataCollector.init();
+    } else {
+      log.warn(
+          "No metadata report is configured, service metadata will not be available, please refer to: https://github.com/apache/incubator-dubbo-admin/wiki/Dubbo-Admin-configuration");
+    }
+    return metaDataCollector;
+  }
+
+  private static Registry createRegistry(URL url) {
+    RegistryFactory registryFactory =
+        ExtensionLoader.getExtensionLoader(RegistryFactory.class).getAdaptiveExtension();
+    return registryFactory.getRegistry(url);
+  }
+
+  /**
+   * Dubbo extensions are singletons, an isolated environment makes an instance of its own so that
+   * it does not replace the clients of {@link ConfigCenter}.
+   */
+  private <T> T extension(Class<T> type, String name) {
+    T extension = ExtensionLoader.getExtensionLoader(type).getExtension(name);
+    if (!isolated) {
+      return extension;
+    }
+    try {
+      return type.cast(extension.getClass().newInstance());
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new ConfigurationException("Can not create " + name + " " + type.getSimpleName());
+    }
+  }
+
+  private URL formUrl(String config, String group) {
+    URL url = URL.valueOf(config);
+    if (StringUtils.isNotEmpty(group)) {
+      url = url.addParameter(Constants.GROUP_KEY, group);
+    }
+    if (StringUtils.isNotEmpty(username)) {
+      url = url.setUsername(username);
+    }
+    if (StringUtils.isNotEmpty(password)) {
+      url = url.setPassword(password);
+    }
+    return url;
+  }
+}
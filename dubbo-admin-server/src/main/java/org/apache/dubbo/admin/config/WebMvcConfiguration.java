@@ -17,6 +17,8 @@
 package org.apache.dubbo.admin.config;
 
 import org.apache.dubbo.admin.interceptor.AuthInterceptor;
+import org.apache.dubbo.admin.interceptor.EnvironmentInterceptor;
+import org.apache.dubbo.admin.interceptor.TimeTravelInterceptor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -28,8 +30,14 @@ import javax.annotation.Resource;
 public class WebMvcConfiguration implements WebMvcConfigurer {
   @Resource private AuthInterceptor interceptor;
 
+  @Resource private TimeTravelInterceptor timeTravelInterceptor;
+
+  @Resource private EnvironmentInterceptor environmentInterceptor;
+
   @Override
   public void addInterceptors(InterceptorRegistry registry) {
     registry.addInterceptor(interceptor).addPathPatterns("/**");
+    registry.addInterceptor(timeTravelInterceptor).addPathPatterns("/api/**");
+    registry.addInterceptor(environmentInterceptor).addPathPatterns("/api/**");
   }
 }
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.controller;
+
+import org.apache.dubbo.admin.annotation.Authority;
+import org.apache.dubbo.admin.model.dto.InstanceQueryDTO;
+import org.apache.dubbo.admin.registry.cache.InstanceQuery;
+import org.apache.dubbo.admin.service.InstanceQueryService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/** Ad-hoc questions about the fleet, answered from the parameter index of the registry cache */
+@Authority(needLogin = true)
+@RestController
+@RequestMapping("/api/{env}/instances")
+public class InstanceQueryController {
+  @Resource private InstanceQueryService instanceQueryService;
+
+  /**
+   * @param q boolean query, see {@link InstanceQuery}
+   * @param limit how many of the matching instances to list, 0 to only count them
+   */
+  @GetMapping("/query")
+  public InstanceQueryDTO query(
+      @RequestParam String q,
+      @RequestParam(defaultValue = "100") int limit,
+      @PathVariable String env) {
+    return instanceQueryService.query(q, limit);
+  }
+}
@@ -69,7 +69,7 @@ public class ManagementController {
     Set<String> query = new HashSet<>();
     List<ConfigDTO> configDtoList = new ArrayList<>();
     if (key.equals(Constants.ANY_VALUE)) {
-      query = providerService.findApplications();
+      query.addAll(providerService.findApplications());
       query.add(Constants.GLOBAL_CONFIG);
     } else {
       query.add(key);
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.controller;
+
+import org.apache.dubbo.admin.annotation.Authority;
+import org.apache.dubbo.admin.model.dto.RegistryCacheMetricsDTO;
+import org.apache.dubbo.admin.model.dto.RegistryCacheSizeDTO;
+import org.apache.dubbo.admin.registry.cache.NotifyPipeline;
+import org.apache.dubbo.admin.service.QueryResultCache;
+import org.apache.dubbo.admin.service.RegistryBootstrap;
+import org.apache.dubbo.admin.service.RegistryCacheSizes;
+import org.apache.dubbo.admin.service.RegistryReconciler;
+import org.apache.dubbo.admin.service.RegistryServerSync;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/** Health and size of the registry cache */
+@Authority(needLogin = true)
+@RestController
+@RequestMapping("/api/{env}/registry/cache")
+public class RegistryCacheController {
+  @Resource private RegistryServerSync registryServerSync;
+
+  @Resource private RegistryCacheSizes registryCacheSizes;
+
+  @Resource private RegistryReconciler registryReconciler;
+
+  @Resource private QueryResultCache queryResultCache;
+
+  @GetMapping("/metrics")
+  public RegistryCacheMetricsDTO metrics(@PathVariable String env) {
+    RegistryCacheMetricsDTO metrics = new RegistryCacheMetricsDTO();
+    metrics.setEpoch(registryServerSync.getSnapshot().getEpoch());
+    metrics.setStale(registryServerSync.isStale());
+    RegistryBootstrap bootstrap = registryServerSync.getBootstrap();
+    metrics.setBootstrapping(bootstrap.isRunning());
+    metrics.setBootstrapLoaded(bootstrap.getLoaded());
+    metrics.setBootstrapTotal(bootstrap.getTotal());
+    metrics.setBootstrapFailed(bootstrap.getFailed());
+    metrics.setReconcileRuns(registryReconciler.getRuns());
+    metrics.setReconcileRepairs(registryReconciler.getRepairs());
+    metrics.setQueryCacheHits(queryResultCache.getHits());
+    metrics.setQueryCacheMisses(queryResultCache.getMisses());
+    metrics.setQueryCacheSize(queryResultCache.getSize());
+    NotifyPipeline pipeline = registryServerSync.getNotifyPipeline();
+    if (pipeline != null) {
+      metrics.setAsync(true);
+      metrics.setQueueDepth(pipeline.getQueueDepth());
+      metrics.setQueueCapacity(pipeline.getCapacity());
+      metrics.setReceived(pipeline.getReceived());
+      metrics.setCoalesced(pipeline.getCoalesced());
+      metrics.setApplied(pipeline.getApplied());
+      long batches = pipeline.getBatches();
+      metrics.setBatches(batches);
+      metrics.setFailures(pipeline.getFailures());
+      metrics.setRetrying(pipeline.getRetrying());
+      if (batches > 0) {
+        metrics.setApplyLatencyAvgMillis(toMillis(pipeline.getApplyNanos()) / batches);
+      }
+      metrics.setApplyLatencyMaxMillis(toMillis(pipeline.getMaxApplyNanos()));
+    }
+    return metrics;
+  }
+
+  /**
+   * Instance counts and estimated bytes of the cache.
+   *
+   * @param top how many of the largest services and applications to list
+   */
+  @GetMapping("/size")
+  public RegistryCacheSizeDTO size(
+      @PathVariable String env, @RequestParam(defaultValue = "20") int top) {
+    return registryCacheSizes.getSizes(top);
+  }
+
+  private static double toMillis(long nanos) {
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.controller;
+
+import org.apache.dubbo.admin.annotation.Authority;
+import org.apache.dubbo.admin.common.exception.ResourceNotFoundException;
+import org.apache.dubbo.admin.common.exception.ServiceException;
+import org.apache.dubbo.admin.model.dto.RegistryReplicationDTO;
+import org.apache.dubbo.admin.registry.cache.RegistryEvent;
+import org.apache.dubbo.admin.registry.cache.RegistryEventLog;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshotFile;
+import org.apache.dubbo.admin.service.RegistryReplication;
+import org.apache.dubbo.admin.service.RegistryServerSync;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What followers replicate from the leader, see {@link RegistryReplication}. Replicas are not
+ * logged in users, they must share a token instead. Nothing is served unless replication is
+ * enabled.
+ */
+@Authority(needLogin = false)
+@RestController
+@RequestMapping("/api/{env}/registry/replication")
+public class RegistryReplicationController {
+  private static final int MAX_EVENTS = 1000;
+
+  private static final long MAX_TIMEOUT = 60000L;
+
+  @Resource private RegistryServerSync registryServerSync;
+
+  @Resource private RegistryReplication registryReplication;
+
+  /**
+   * The current cache in the {@link RegistrySnapshotFile} layout, with the sequence of the last
+   * event it includes for sure.
+   */
+  @GetMapping("/snapshot")
+  public void snapshot(
+      @PathVariable String env,
+      @RequestHeader(value = RegistryReplication.TOKEN_HEADER, required = false) String token,
+      HttpServletResponse response)
+      throws IOException {
+    check(token);
+    // read before the snapshot, the events after it may already be in the snapshot
+    long sequence = registryServerSync.getEventLog().getLastSequence();
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    response.setHeader(RegistryReplication.SEQUENCE_HEADER, String.valueOf(sequence));
+    RegistrySnapshotFile.write(snapshot, response.getOutputStream());
+  }
+
+  /**
+   * Events after a sequence, waiting for one when there is none yet.
+   *
+   * @param after last sequence the follower applied
+   * @param timeout milliseconds to wait for an event
+   */
+  @GetMapping("/events")
+  public RegistryReplicationDTO events(
+      @PathVariable String env,
+      @RequestHeader(value = RegistryReplication.TOKEN_HEADER, required = false) String token,
+      @RequestParam long after,
+      @RequestParam(defaultValue = "0") long timeout)
+      throws InterruptedException {
+    check(token);
+    RegistryEventLog eventLog = registryServerSync.getEventLog();
+    RegistryReplicationDTO replication = new RegistryReplicationDTO();
+    replication.setLastSequence(
+        eventLog.await(after, Math.min(timeout, MAX_TIMEOUT), TimeUnit.MILLISECONDS));
+    List<RegistryEvent> events = eventLog.getEvents(after, MAX_EVENTS);
+    if (events == null) {
+      throw new ResourceNotFoundException("Events after " + after + " are no longer kept");
+    }
+    replication.setEvents(events);
+    return replication;
+  }
+
+  private void check(String token) {
+    if (!registryReplication.isEnabled()) {
+      throw new ResourceNotFoundException("Registry replication is not enabled");
+    }
+    registryReplication.checkToken(token);
+    if (!registryReplication.isLeader()) {
+      throw new ServiceException("This admin replica is not the leader");
+    }
+  }
+}
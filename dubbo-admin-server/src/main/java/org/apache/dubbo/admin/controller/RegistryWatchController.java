@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.controller;
+
+import org.apache.dubbo.admin.annotation.Authority;
+import org.apache.dubbo.admin.common.exception.ParamValidationException;
+import org.apache.dubbo.admin.service.RegistryEventStream;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.Resource;
+
+/**
+ * Server-Sent Events of registry changes, so the UI does not have to poll.
+ *
+ * <p>Resume with the standard {@code Last-Event-ID} header, or with {@code from} when the client
+ * cannot set headers.
+ */
+@Authority(needLogin = true)
+@RestController
+@RequestMapping("/api/{env}/watch")
+public class RegistryWatchController {
+  @Resource private RegistryEventStream registryEventStream;
+
+  @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter watch(
+      @RequestParam(required = false) String service,
+      @RequestParam(required = false) String application,
+      @RequestParam(required = false) Long from,
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+      @PathVariable String env) {
+    Long sequence = from;
+    if (lastEventId != null) {
+      try {
+        sequence = Long.valueOf(lastEventId);
+      } catch (NumberFormatException e) {
+        throw new ParamValidationException("Last-Event-ID is not a sequence: " + lastEventId);
+      }
+    }
+    return registryEventStream.watch(env, service, application, sequence);
+  }
+}
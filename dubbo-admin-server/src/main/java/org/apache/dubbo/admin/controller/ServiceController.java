@@ -17,37 +17,60 @@
 
 package org.apache.dubbo.admin.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.admin.annotation.Authority;
+import org.apache.dubbo.admin.common.exception.ParamValidationException;
 import org.apache.dubbo.admin.common.utils.Constants;
 import org.apache.dubbo.admin.common.utils.Tool;
 import org.apache.dubbo.admin.model.domain.Consumer;
-import org.apache.dubbo.admin.model.domain.Provider;
+import org.apache.dubbo.admin.model.dto.ConsumerGroupDTO;
 import org.apache.dubbo.admin.model.dto.ServiceDTO;
 import org.apache.dubbo.admin.model.dto.ServiceDetailDTO;
+import org.apache.dubbo.admin.model.dto.ServicePageDTO;
 import org.apache.dubbo.admin.service.ConsumerService;
+import org.apache.dubbo.admin.service.InstanceFragments;
+import org.apache.dubbo.admin.service.InstanceFragments.ServiceFragments;
 import org.apache.dubbo.admin.service.ProviderService;
+import org.apache.dubbo.common.URL;
 import org.apache.dubbo.metadata.definition.model.FullServiceDefinition;
 import org.apache.dubbo.metadata.identifier.MetadataIdentifier;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 /** @author wujunshen */
+@Slf4j
 @Authority(needLogin = true)
 @RestController
 @RequestMapping("/api/{env}")
 public class ServiceController {
+  /** services a single request may ask the details of */
+  private static final int MAX_DETAILS = 1000;
+
   @Resource private ProviderService providerService;
   @Resource private ConsumerService consumerService;
-  private Gson gson;
+  @Resource private InstanceFragments instanceFragments;
+  @Resource private ObjectMapper objectMapper;
+  private final Gson gson = new Gson();
 
   @GetMapping(value = "/service")
   public Page<ServiceDTO> searchService(
@@ -55,48 +78,140 @@ public class ServiceController {
       @RequestParam String filter,
       @PathVariable String env,
       Pageable pageable) {
-    final Set<ServiceDTO> serviceDtoList = providerService.getServiceDtoList(pattern, filter, env);
+    // only the services up to the end of the page are looked at
+    int end = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+    final ServicePageDTO page = providerService.searchServices(pattern, filter, null, end, true);
 
-    final int total = serviceDtoList.size();
+    final long total = page.getTotal();
     final List<ServiceDTO> content =
-        serviceDtoList.stream()
-            .skip(pageable.getOffset())
-            .limit(pageable.getPageSize())
-            .collect(Collectors.toList());
+        page.getContent().stream().skip(pageable.getOffset()).collect(Collectors.toList());
 
     return new PageImpl<>(content, pageable, total);
   }
 
+  /**
+   * Search services page by page, the cursor of the next page stays valid however services come
+   * and go in between.
+   *
+   * @param cursor cursor of the previous page, none for the first page
+   * @param count whether to count every matching service as well
+   */
+  @GetMapping(value = "/services/search")
+  public ServicePageDTO searchServices(
+      @RequestParam String pattern,
+      @RequestParam String filter,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size,
+      @RequestParam(defaultValue = "false") boolean count,
+      @PathVariable String env) {
+    return providerService.searchServices(pattern, filter, cursor, size, count);
+  }
+
+  /**
+   * Providers, consumers and metadata of a service, as a {@link ServiceDetailDTO}. The instances
+   * are written from their cached JSON fragments instead of being converted and serialized again.
+   * When consumers are cached aggregated, full reads every consumer instance from the registries.
+   */
   @GetMapping(value = "/service/{service}")
-  public ServiceDetailDTO serviceDetail(@PathVariable String service) {
+  public void serviceDetail(
+      @PathVariable String service,
+      @RequestParam(defaultValue = "false") boolean full,
+      HttpServletResponse response)
+      throws IOException {
     service = service.replace(Constants.ANY_VALUE, Constants.PATH_SEPARATOR);
-    String group = Tool.getGroup(service);
-    String version = Tool.getVersion(service);
-    String interfaze = Tool.getInterface(service);
-    List<Provider> providers = providerService.findByService(service);
+    ServiceFragments providers = instanceFragments.getProviders(service);
 
-    List<Consumer> consumers = consumerService.findByService(service);
+    ServiceFragments consumers = instanceFragments.getConsumers(service);
+    List<Consumer> allConsumers = full ? consumerService.findByService(service, true) : null;
 
-    String application = null;
-    if (providers != null && !providers.isEmpty()) {
-      application = providers.get(0).getApplication();
-    }
-    MetadataIdentifier identifier =
-        new MetadataIdentifier(interfaze, version, group, Constants.PROVIDER_SIDE, application);
+    MetadataIdentifier identifier = toIdentifier(service, providers);
     String metadata = providerService.getProviderMetaData(identifier);
-    ServiceDetailDTO serviceDetailDTO = new ServiceDetailDTO();
-    serviceDetailDTO.setConsumers(consumers);
-    serviceDetailDTO.setProviders(providers);
+    FullServiceDefinition serviceDefinition = null;
     if (metadata != null) {
-      FullServiceDefinition serviceDefinition =
-          gson.fromJson(metadata, FullServiceDefinition.class);
-      serviceDetailDTO.setMetadata(serviceDefinition);
+      serviceDefinition = gson.fromJson(metadata, FullServiceDefinition.class);
     }
-    serviceDetailDTO.setConsumers(consumers);
-    serviceDetailDTO.setProviders(providers);
-    serviceDetailDTO.setService(service);
-    serviceDetailDTO.setApplication(application);
-    return serviceDetailDTO;
+
+    response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+    OutputStream out = response.getOutputStream();
+    writeDetail(
+        out,
+        service,
+        providers,
+        consumers,
+        allConsumers,
+        identifier.getApplication(),
+        serviceDefinition);
+    out.flush();
+  }
+
+  /**
+   * Details of many services at once, as a JSON array of {@link ServiceDetailDTO} in the order of
+   * the keys. The instances of all of them come from the same snapshot, their metadata and the
+   * consumers read in full are read concurrently. Each detail is written as soon as they are
+   * there; one that cannot be read is written without them instead of failing the whole array.
+   *
+   * @param services service keys, at most {@value #MAX_DETAILS}
+   */
+  @PostMapping(value = "/services/details")
+  public void serviceDetails(
+      @RequestBody List<String> services,
+      @RequestParam(defaultValue = "false") boolean full,
+      HttpServletResponse response)
+      throws IOException {
+    if (services.size() > MAX_DETAILS) {
+      throw new ParamValidationException("At most " + MAX_DETAILS + " services at once");
+    }
+    List<String> keys =
+        services.stream()
+            .map(service -> service.replace(Constants.ANY_VALUE, Constants.PATH_SEPARATOR))
+            .collect(Collectors.toList());
+    List<ServiceFragments> providers =
+        instanceFragments.getAll(Constants.PROVIDERS_CATEGORY, keys);
+    List<ServiceFragments> consumers =
+        instanceFragments.getAll(Constants.CONSUMERS_CATEGORY, keys);
+    List<MetadataIdentifier> identifiers = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      identifiers.add(toIdentifier(keys.get(i), providers.get(i)));
+    }
+    List<CompletableFuture<String>> metadata = providerService.getProviderMetaData(identifiers);
+    List<CompletableFuture<List<Consumer>>> allConsumers =
+        full ? consumerService.findAllByServices(keys) : null;
+
+    response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+    OutputStream out = response.getOutputStream();
+    out.write('[');
+    try {
+      for (int i = 0; i < keys.size(); i++) {
+        if (i > 0) {
+          out.write(',');
+        }
+        String service = keys.get(i);
+        writeDetail(
+            out,
+            service,
+            providers.get(i),
+            consumers.get(i),
+            // the consumers as cached are better than none
+            full ? getOrNull(allConsumers.get(i), service) : null,
+            identifiers.get(i).getApplication(),
+            toServiceDefinition(getOrNull(metadata.get(i), service), service));
+      }
+    } finally {
+      // nobody reads what is left once the response failed
+      metadata.forEach(future -> future.cancel(false));
+      if (allConsumers != null) {
+        allConsumers.forEach(future -> future.cancel(false));
+      }
+    }
+    out.write(']');
+    out.flush();
+  }
+
+  /** Consumers of a service per application, however they are cached. */
+  @GetMapping(value = "/service/{service}/consumers")
+  public List<ConsumerGroupDTO> serviceConsumers(@PathVariable String service) {
+    return consumerService.findGroupsByService(
+        service.replace(Constants.ANY_VALUE, Constants.PATH_SEPARATOR));
   }
 
   @GetMapping(value = "/services")
@@ -108,4 +223,77 @@ public class ServiceController {
   public Set<String> allApplications() {
     return providerService.findApplications();
   }
+
+  /** metadata is read for the application of any provider, as the metadata report keys it */
+  private static MetadataIdentifier toIdentifier(String service, ServiceFragments providers) {
+    String application = null;
+    URL provider = providers.getAnyUrl();
+    if (provider != null) {
+      application = provider.getParameter(Constants.APPLICATION_KEY);
+    }
+    return new MetadataIdentifier(
+        Tool.getInterface(service),
+        Tool.getVersion(service),
+        Tool.getGroup(service),
+        Constants.PROVIDER_SIDE,
+        application);
+  }
+
+  /** @param allConsumers consumers read in full, null to write the cached ones */
+  private void writeDetail(
+      OutputStream out,
+      String service,
+      ServiceFragments providers,
+      ServiceFragments consumers,
+      List<Consumer> allConsumers,
+      String application,
+      FullServiceDefinition serviceDefinition)
+      throws IOException {
+    writeField(out, '{', "providers");
+    providers.writeTo(out);
+    writeField(out, ',', "consumers");
+    if (allConsumers != null) {
+      out.write(objectMapper.writeValueAsBytes(allConsumers));
+    } else {
+      consumers.writeTo(out);
+    }
+    writeField(out, ',', "metadata");
+    out.write(objectMapper.writeValueAsBytes(serviceDefinition));
+    writeField(out, ',', "service");
+    out.write(objectMapper.writeValueAsBytes(service));
+    writeField(out, ',', "application");
+    out.write(objectMapper.writeValueAsBytes(application));
+    out.write('}');
+  }
+
+  /** @return the result of a read made for a batch, null when it failed */
+  private static <T> T getOrNull(CompletableFuture<T> future, String service) {
+    try {
+      return future.join();
+    } catch (CompletionException | CancellationException e) {
+      log.warn("Failed to read the details of {}", service, e.getCause());
+      return null;
+    }
+  }
+
+  private FullServiceDefinition toServiceDefinition(String metadata, String service) {
+    if (metadata == null) {
+      return null;
+    }
+    try {
+      return gson.fromJson(metadata, FullServiceDefinition.class);
+    } catch (JsonParseException e) {
+      log.warn("Invalid metadata of {}", service, e);
+      return null;
+    }
+  }
+
+  private static void writeField(OutputStream out, char separator, String name)
+      throws IOException {
+    out.write(separator);
+    out.write('"');
+    out.write(name.getBytes(StandardCharsets.UTF_8));
+    out.write('"');
+    out.write(':');
+  }
 }
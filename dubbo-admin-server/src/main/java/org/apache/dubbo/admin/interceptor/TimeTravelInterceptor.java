@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.interceptor;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.dubbo.admin.common.exception.ParamValidationException;
+import org.apache.dubbo.admin.registry.cache.RegistryHistory;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Lets read requests ask for the registry as it was at some time, with an {@code at} parameter in
+ * milliseconds since the epoch or as a local date time such as {@code 2019-06-01T12:00:00}.
+ *
+ * @author wujunshen
+ */
+@Component
+public class TimeTravelInterceptor extends HandlerInterceptorAdapter {
+  public static final String AT = "at";
+
+  @Override
+  public boolean preHandle(
+      HttpServletRequest request, HttpServletResponse response, Object handler) {
+    String at = request.getParameter(AT);
+    if (StringUtils.isNotBlank(at) && HttpMethod.GET.matches(request.getMethod())) {
+      RegistryHistory.setQueryTime(parse(at.trim()));
+    }
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(
+      HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    RegistryHistory.setQueryTime(null);
+  }
+
+  static long parse(String at) {
+    try {
+      if (StringUtils.isNumeric(at)) {
+        return Long.parseLong(at);
+      }
+      return LocalDateTime.parse(at).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    } catch (NumberFormatException | DateTimeParseException e) {
+      throw new ParamValidationException("Unsupported time: " + at);
+    }
+  }
+}
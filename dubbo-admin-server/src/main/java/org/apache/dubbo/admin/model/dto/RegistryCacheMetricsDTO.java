@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.model.dto;
+
+import lombok.Data;
+
+/** State of the registry cache and of the notification pipeline feeding it */
+@Data
+public class RegistryCacheMetricsDTO {
+  private long epoch;
+
+  /** true while serving services restored from the snapshot file that are not confirmed yet */
+  private boolean stale;
+
+  /** true while the interfaces are loaded in parallel on startup */
+  private boolean bootstrapping;
+
+  /** interfaces loaded by the bootstrap so far */
+  private int bootstrapLoaded;
+
+  /** interfaces the bootstrap loads */
+  private int bootstrapTotal;
+
+  /** interfaces the bootstrap could not read, left to the subscription */
+  private int bootstrapFailed;
+
+  /** false when notifications are applied on the registry's callback thread */
+  private boolean async;
+
+  private int queueDepth;
+  private int queueCapacity;
+  private long received;
+  private long coalesced;
+  private long applied;
+  private long batches;
+  private long failures;
+
+  /** keys waiting to be retried after they failed to apply */
+  private int retrying;
+
+  /** average time to apply a batch */
+  private double applyLatencyAvgMillis;
+
+  private double applyLatencyMaxMillis;
+
+  /** buckets of interfaces checked against the registries */
+  private long reconcileRuns;
+
+  /** interfaces applied again because they drifted from the registries */
+  private long reconcileRepairs;
+
+  /** query results served from the query cache, shared by the environments */
+  private long queryCacheHits;
+
+  /** query results computed because the registry changed or nothing was cached */
+  private long queryCacheMisses;
+
+  private long queryCacheSize;
+}
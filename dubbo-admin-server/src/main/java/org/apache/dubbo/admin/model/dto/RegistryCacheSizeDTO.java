@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.model.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Size of the registry cache, bytes are estimates */
+@Data
+public class RegistryCacheSizeDTO {
+  private long epoch;
+
+  private String storage;
+
+  /** bytes of every category, its indexes and the storage */
+  private long totalBytes;
+
+  /** bytes retained by the storage itself, such as the compact dictionary */
+  private long storageBytes;
+
+  /** snapshots kept for time-travel queries */
+  private int historySnapshots;
+
+  /** bytes the kept snapshots retain on top of the current one, not part of the total */
+  private long historyBytes;
+
+  private List<CategorySize> categories = new ArrayList<>();
+
+  /** largest services first */
+  private List<ServiceSize> services = new ArrayList<>();
+
+  /** applications with the most instances first */
+  private List<ApplicationSize> applications = new ArrayList<>();
+
+  @Data
+  public static class CategorySize {
+    private String category;
+    private int services;
+    private int instances;
+    private long bytes;
+    private long indexBytes;
+  }
+
+  @Data
+  public static class ServiceSize {
+    private String category;
+    private String service;
+    private int instances;
+    private long bytes;
+  }
+
+  @Data
+  public static class ApplicationSize {
+    private String category;
+    private String application;
+    private int instances;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.dubbo.common.URL;
+
+import java.util.Map;
+
+/**
+ * Rough retained sizes of what the registry cache keeps, for a 64-bit JVM with compressed
+ * references.
+ *
+ * <p>Strings are counted for every object referring to them, so a URL estimate is an upper bound
+ * when strings are shared. Good enough to see what grows and to plan heap sizes, not meant to be
+ * exact.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CacheSizes {
+  static final int OBJECT_HEADER = 12;
+
+  static final int REFERENCE = 4;
+
+  static final int ARRAY_HEADER = 16;
+
+  /** HashMap.Node: header, hash, key, value, next */
+  static final int HASH_MAP_ENTRY = align(OBJECT_HEADER + 4 + 3 * REFERENCE);
+
+  /** a leaf of a {@link PersistentHashMap} plus its share of the branch arrays */
+  static final int PERSISTENT_MAP_ENTRY = align(OBJECT_HEADER + 2 * REFERENCE) + 2 * REFERENCE;
+
+  /** URL fields: protocol, username, password, host, port, path, parameters and cached strings */
+  private static final int URL_OBJECT = align(OBJECT_HEADER + 4 + 16 * REFERENCE);
+
+  private static final int HASH_MAP_OBJECT = align(OBJECT_HEADER + 3 * 4 + 4 + 4 * REFERENCE);
+
+  public static long estimate(String value) {
+    if (value == null) {
+      return 0;
+    }
+    // String: header, value, hash; char[] behind it
+    return align(OBJECT_HEADER + REFERENCE + 4) + align(ARRAY_HEADER + 2L * value.length());
+  }
+
+  public static long estimate(URL url) {
+    long bytes =
+        URL_OBJECT
+            + estimate(url.getProtocol())
+            + estimate(url.getUsername())
+            + estimate(url.getPassword())
+            + estimate(url.getHost())
+            + estimate(url.getPath());
+    Map<String, String> parameters = url.getParameters();
+    if (parameters != null) {
+      bytes += estimateMap(parameters.size());
+      for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+        bytes += estimate(parameter.getKey()) + estimate(parameter.getValue());
+      }
+    }
+    return bytes;
+  }
+
+  /** @param urls Map<id, URL> of a service, as notified */
+  public static long estimate(Map<String, URL> urls) {
+    long bytes = estimateMap(urls.size());
+    for (Map.Entry<String, URL> entry : urls.entrySet()) {
+      bytes += estimate(entry.getKey()) + estimate(entry.getValue());
+    }
+    return bytes;
+  }
+
+  static long estimate(int[] array) {
+    return align(ARRAY_HEADER + 4L * array.length);
+  }
+
+  /** HashMap with its table at the default load factor, without keys and values */
+  static long estimateMap(int size) {
+    long capacity = Math.max(16, Long.highestOneBit(Math.max(1, size * 4 / 3)) << 1);
+    return HASH_MAP_OBJECT + align(ARRAY_HEADER + REFERENCE * capacity) + size * HASH_MAP_ENTRY;
+  }
+
+  private static int align(int bytes) {
+    return (bytes + 7) & ~7;
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Dictionary-encoded URL storage.
+ *
+ * <p>Every instance is kept as one int array of dictionary codes: {@code [protocol, username,
+ * password, host, port, path, key1, value1, key2, value2, ...]} where port is stored as is. The
+ * parameter keys and the values repeated across instances (application, dubbo version, methods,
+ * side...) are held once in the shared {@link UrlDictionary}. {@link URL}s are rebuilt on read.
+ *
+ * <p>Records of an instance that is notified again unchanged are reused. When more than half of
+ * the dictionary is no longer referenced, {@link #compact()} starts a new dictionary and asks for
+ * every stored map to be encoded again, after which the old one can be collected.
+ */
+public class CompactUrlStorage implements UrlStorage {
+  private static final int PROTOCOL = 0;
+  private static final int USERNAME = 1;
+  private static final int PASSWORD = 2;
+  private static final int HOST = 3;
+  private static final int PORT = 4;
+  private static final int PATH = 5;
+  private static final int PARAMETERS = 6;
+
+  /** Do not bother starting a new dictionary for less garbage than this */
+  private static final int MIN_GARBAGE = 64 * 1024;
+
+  private volatile UrlDictionary dictionary = new UrlDictionary();
+
+  @Override
+  public Map<String, URL> store(Map<String, URL> urls, Map<String, URL> previous) {
+    UrlDictionary current = dictionary;
+    CompactUrlMap old =
+        previous instanceof CompactUrlMap && ((CompactUrlMap) previous).dictionary == current
+            ? (CompactUrlMap) previous
+            : null;
+    String[] ids = urls.keySet().toArray(new String[0]);
+    Arrays.sort(ids);
+    int[][] records = new int[ids.length][];
+    for (int i = 0; i < ids.length; i++) {
+      int[] record = old == null ? null : old.record(ids[i]);
+      records[i] = record == null ? encode(current, urls.get(ids[i])) : record;
+    }
+    if (old != null) {
+      for (int i = 0; i < old.ids.length; i++) {
+        if (!urls.containsKey(old.ids[i])) {
+          release(current, old.records[i]);
+        }
+      }
+    }
+    return new CompactUrlMap(current, ids, records);
+  }
+
+  @Override
+  public void release(Map<String, URL> stored) {
+    if (stored instanceof CompactUrlMap && ((CompactUrlMap) stored).dictionary == dictionary) {
+      for (int[] record : ((CompactUrlMap) stored).records) {
+        release(dictionary, record);
+      }
+    }
+  }
+
+  @Override
+  public boolean compact() {
+    UrlDictionary current = dictionary;
+    int garbage = current.garbage();
+    if (garbage < MIN_GARBAGE || garbage * 2 < current.size()) {
+      return false;
+    }
+    dictionary = new UrlDictionary();
+    return true;
+  }
+
+  @Override
+  public long estimate(Map<String, URL> stored) {
+    if (!(stored instanceof CompactUrlMap)) {
+      return CacheSizes.estimate(stored);
+    }
+    CompactUrlMap map = (CompactUrlMap) stored;
+    long bytes =
+        CacheSizes.OBJECT_HEADER
+            + 3 * CacheSizes.REFERENCE
+            + 2 * (CacheSizes.ARRAY_HEADER + (long) CacheSizes.REFERENCE * map.ids.length);
+    for (int i = 0; i < map.ids.length; i++) {
+      bytes += CacheSizes.estimate(map.ids[i]) + CacheSizes.estimate(map.records[i]);
+    }
+    return bytes;
+  }
+
+  @Override
+  public long getSharedBytes() {
+    return dictionary.bytes();
+  }
+
+  private static int[] encode(UrlDictionary dictionary, URL url) {
+    Map<String, String> parameters = url.getParameters();
+    int[] record = new int[PARAMETERS + parameters.size() * 2];
+    record[PROTOCOL] = dictionary.acquire(url.getProtocol());
+    record[USERNAME] = dictionary.acquire(url.getUsername());
+    record[PASSWORD] = dictionary.acquire(url.getPassword());
+    record[HOST] = dictionary.acquire(url.getHost());
+    record[PORT] = url.getPort();
+    record[PATH] = dictionary.acquire(url.getPath());
+    int i = PARAMETERS;
+    for (Map.Entry<String, String> entry : parameters.entrySet()) {
+      record[i++] = dictionary.acquire(entry.getKey());
+      record[i++] = dictionary.acquire(entry.getValue());
+    }
+    return record;
+  }
+
+  private static void release(UrlDictionary dictionary, int[] record) {
+    for (int i = 0; i < record.length; i++) {
+      if (i != PORT) {
+        dictionary.release(record[i]);
+      }
+    }
+  }
+
+  private static URL decode(UrlDictionary dictionary, int[] record) {
+    Map<String, String> parameters = new HashMap<>((record.length - PARAMETERS) / 2 * 4 / 3 + 1);
+    for (int i = PARAMETERS; i < record.length; i += 2) {
+      parameters.put(dictionary.get(record[i]), dictionary.get(record[i + 1]));
+    }
+    return new URL(
+        dictionary.get(record[PROTOCOL]),
+        dictionary.get(record[USERNAME]),
+        dictionary.get(record[PASSWORD]),
+        dictionary.get(record[HOST]),
+        record[PORT],
+        dictionary.get(record[PATH]),
+        parameters);
+  }
+
+  /** Read-only Map<id, URL> over encoded records, sorted by id. */
+  static final class CompactUrlMap extends AbstractMap<String, URL> {
+    private final UrlDictionary dictionary;
+    private final String[] ids;
+    private final int[][] records;
+
+    CompactUrlMap(UrlDictionary dictionary, String[] ids, int[][] records) {
+      this.dictionary = dictionary;
+      this.ids = ids;
+      this.records = records;
+    }
+
+    int[] record(Object id) {
+      if (!(id instanceof String)) {
+        return null;
+      }
+      int i = Arrays.binarySearch(ids, id);
+      return i < 0 ? null : records[i];
+    }
+
+    @Override
+    public URL get(Object key) {
+      int[] record = record(key);
+      return record == null ? null : decode(dictionary, record);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return record(key) != null;
+    }
+
+    @Override
+    public int size() {
+      return ids.length;
+    }
+
+    @Override
+    public Set<Entry<String, URL>> entrySet() {
+      return new AbstractSet<Entry<String, URL>>() {
+        @Override
+        public Iterator<Entry<String, URL>> iterator() {
+          return new Iterator<Entry<String, URL>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+              return next < ids.length;
+            }
+
+            @Override
+            public Entry<String, URL> next() {
+              if (next >= ids.length) {
+                throw new NoSuchElementException();
+              }
+              int i = next++;
+              return new SimpleImmutableEntry<>(ids[i], decode(dictionary, records[i]));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return ids.length;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.common.URL;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.apache.dubbo.common.constants.CommonConstants.PID_KEY;
+import static org.apache.dubbo.common.constants.CommonConstants.TIMESTAMP_KEY;
+
+/**
+ * Consumers of a service collapsed into one URL per application.
+ *
+ * <p>The aggregate is the URL of one of the instances without what only belongs to that instance,
+ * plus the number of instances and their sorted addresses. It is the same for the same instances,
+ * so it gets the same id and digest on every notification and admin node.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ConsumerAggregates {
+  /** number of instances an aggregate stands for */
+  public static final String INSTANCES_KEY = "instances";
+
+  /** comma separated host:port of the instances an aggregate stands for */
+  public static final String ADDRESSES_KEY = "addresses";
+
+  private static final String SEPARATOR = ",";
+
+  private static final Comparator<URL> ORDER =
+      Comparator.comparing(URL::getAddress).thenComparing(url -> url.toFullString());
+
+  /**
+   * @param urls notified URLs of any category
+   * @return the same URLs with the consumers of every service and application collapsed
+   */
+  public static List<URL> aggregate(List<URL> urls) {
+    if (urls == null) {
+      return null;
+    }
+    // Map<source/service/application, consumers>
+    Map<String, List<URL>> consumers = null;
+    List<URL> ret = new ArrayList<>(urls.size());
+    for (URL url : urls) {
+      if (!isConsumer(url) || isAggregate(url)) {
+        ret.add(url);
+        continue;
+      }
+      if (consumers == null) {
+        consumers = new LinkedHashMap<>();
+      }
+      String key =
+          String.join(
+              Constants.PATH_SEPARATOR,
+              url.getParameter(RegistrySources.SOURCE_KEY, ""),
+              url.getServiceKey(),
+              url.getParameter(Constants.APPLICATION, ""));
+      consumers.computeIfAbsent(key, k -> new ArrayList<>()).add(url);
+    }
+    if (consumers == null) {
+      return urls;
+    }
+    for (List<URL> instances : consumers.values()) {
+      ret.add(merge(instances));
+    }
+    return ret;
+  }
+
+  private static URL merge(List<URL> instances) {
+    instances.sort(ORDER);
+    TreeSet<String> addresses = new TreeSet<>();
+    for (URL url : instances) {
+      addresses.add(url.getAddress());
+    }
+    return instances
+        .get(0)
+        .removeParameters(TIMESTAMP_KEY, PID_KEY)
+        .addParameter(INSTANCES_KEY, instances.size())
+        .addParameter(ADDRESSES_KEY, String.join(SEPARATOR, addresses));
+  }
+
+  private static boolean isConsumer(URL url) {
+    return !Constants.EMPTY_PROTOCOL.equalsIgnoreCase(url.getProtocol())
+        && Constants.CONSUMERS_CATEGORY.equals(
+            url.getParameter(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY));
+  }
+
+  public static boolean isAggregate(URL url) {
+    return url.hasParameter(ADDRESSES_KEY);
+  }
+
+  /** @return number of instances a URL stands for, 1 unless it is an aggregate */
+  public static int getInstances(URL url) {
+    return isAggregate(url) ? url.getParameter(INSTANCES_KEY, 1) : 1;
+  }
+
+  /** @return host:port of every instance a URL stands for */
+  public static List<String> getAddresses(URL url) {
+    if (!isAggregate(url)) {
+      return url.getAddress() == null
+          ? Collections.emptyList()
+          : Collections.singletonList(url.getAddress());
+    }
+    return Arrays.asList(url.getParameter(ADDRESSES_KEY).split(SEPARATOR));
+  }
+
+  /**
+   * @param address host:port as {@link URL#getAddress()}
+   * @return the host
+   */
+  public static String getHost(String address) {
+    int colon = address.lastIndexOf(':');
+    return colon < 0 ? address : address.substring(0, colon);
+  }
+}
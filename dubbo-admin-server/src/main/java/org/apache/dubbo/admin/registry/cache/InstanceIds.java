@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.dubbo.common.URL;
+
+/**
+ * Ids of registered instances.
+ *
+ * <p>An id is the 64-bit murmur3 hash of {@link URL#toFullString()}, so the same URL gets the same
+ * id across notifications, restarts and admin nodes without remembering anything. It is exposed as
+ * 16 upper-case hex digits.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class InstanceIds {
+  private static final char[] HEX_CODE = "0123456789ABCDEF".toCharArray();
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  public static long hash(URL url) {
+    return HASH.hashUnencodedChars(url.toFullString()).asLong();
+  }
+
+  /**
+   * Hash of the URL salted with a round, for when its id is taken by a different URL.
+   *
+   * @param round how many of its ids were taken already, 0 for {@link #hash(URL)}
+   */
+  public static long hash(URL url, int round) {
+    if (round == 0) {
+      return hash(url);
+    }
+    return HASH.newHasher().putUnencodedChars(url.toFullString()).putInt(round).hash().asLong();
+  }
+
+  public static String toHex(long id) {
+    char[] chars = new char[16];
+    for (int i = 15; i >= 0; i--) {
+      chars[i] = HEX_CODE[(int) (id & 0xF)];
+      id >>>= 4;
+    }
+    return new String(chars);
+  }
+
+  /**
+   * The hash an id was made of, ids are summed into the digests of {@link RegistryIndex}.
+   *
+   * @param id id as returned by {@link #toHex(long)}, anything else is hashed
+   */
+  public static long digest(String id) {
+    if (id.length() == 16) {
+      long value = 0;
+      for (int i = 0; i < 16; i++) {
+        int digit = Character.digit(id.charAt(i), 16);
+        if (digit < 0) {
+          return HASH.hashUnencodedChars(id).asLong();
+        }
+        value = value << 4 | digit;
+      }
+      return value;
+    }
+    return HASH.hashUnencodedChars(id).asLong();
+  }
+}
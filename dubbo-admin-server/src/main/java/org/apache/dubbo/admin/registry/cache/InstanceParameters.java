@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.dubbo.common.constants.CommonConstants.PID_KEY;
+import static org.apache.dubbo.common.constants.CommonConstants.TIMESTAMP_KEY;
+
+/**
+ * Inverted index from (parameter, value) to the instances of one category.
+ *
+ * <p>Every instance gets an ordinal that stays the same as long as it is registered, the ordinals
+ * of removed instances are handed out again. Every value of a parameter, and every address, has a
+ * {@link PersistentBitmap} of the ordinals having it, so a boolean query over the whole category
+ * is a few bitwise operations whatever the number of services. The values of a parameter are also
+ * kept sorted for the prefix lookups.
+ *
+ * <p>The index is immutable and belongs to a {@link RegistryIndex}; what the lookups return is a
+ * copy the caller owns.
+ */
+public final class InstanceParameters {
+  static final InstanceParameters EMPTY =
+      new InstanceParameters(
+          PersistentHashMap.empty(),
+          PersistentBitmap.EMPTY,
+          null,
+          0,
+          PersistentHashMap.empty(),
+          Postings.EMPTY,
+          0L);
+
+  /** parameters with a different value on every instance, not worth indexing */
+  private static final Set<String> UNINDEXED =
+      new HashSet<>(Arrays.asList(TIMESTAMP_KEY, PID_KEY, ConsumerAggregates.ADDRESSES_KEY));
+
+  /** Map<ordinal, Instance> */
+  private final PersistentHashMap<Integer, Instance> instances;
+
+  /** ordinals of the registered instances */
+  private final PersistentBitmap live;
+
+  /** ordinals of removed instances, handed out first */
+  private final FreeOrdinal free;
+
+  /** every ordinal is lower */
+  private final int capacity;
+
+  /** Map<parameter, Postings> */
+  private final PersistentHashMap<String, Postings> parameters;
+
+  /** host:port of every instance, all of them for an aggregate */
+  private final Postings addresses;
+
+  /** number of (parameter, value) and address bitmaps */
+  private final long entries;
+
+  private InstanceParameters(
+      PersistentHashMap<Integer, Instance> instances,
+      PersistentBitmap live,
+      FreeOrdinal free,
+      int capacity,
+      PersistentHashMap<String, Postings> parameters,
+      Postings addresses,
+      long entries) {
+    this.instances = instances;
+    this.live = live;
+    this.free = free;
+    this.capacity = capacity;
+    this.parameters = parameters;
+    this.addresses = addresses;
+    this.entries = entries;
+  }
+
+  /** @return number of instances */
+  public int size() {
+    return live.cardinality();
+  }
+
+  /** @return a bound of the ordinals, every one of them is lower */
+  public int capacity() {
+    return capacity;
+  }
+
+  /** @return service of the instance with this ordinal, null when there is none */
+  public String getService(int ordinal) {
+    Instance instance = instances.get(ordinal);
+    return instance == null ? null : instance.service;
+  }
+
+  /** @return id of the instance with this ordinal, null when there is none */
+  public String getId(int ordinal) {
+    Instance instance = instances.get(ordinal);
+    return instance == null ? null : instance.id;
+  }
+
+  /** @return every ordinal */
+  public BitSet all() {
+    return live.toBitSet();
+  }
+
+  /** @return ordinals of the instances with this value of the parameter */
+  public BitSet get(String key, String value) {
+    Postings postings = parameters.get(key);
+    return postings == null ? new BitSet() : postings.get(value);
+  }
+
+  /** @return ordinals of the instances with a value of the parameter starting with the prefix */
+  public BitSet getByPrefix(String key, String prefix) {
+    Postings postings = parameters.get(key);
+    return postings == null ? new BitSet() : postings.getByPrefix(prefix);
+  }
+
+  /**
+   * @param exact whether the address must be equal to the prefix
+   * @return ordinals of the instances with an address starting with the prefix
+   */
+  public BitSet getByAddress(String prefix, boolean exact) {
+    return exact ? addresses.get(prefix) : addresses.getByPrefix(prefix);
+  }
+
+  /** @return number of (parameter, value) and address bitmaps */
+  long indexEntries() {
+    return entries;
+  }
+
+  Editor edit() {
+    return new Editor(this);
+  }
+
+  /** Adds and removes instances, the index is only derived once they are all applied. */
+  static final class Editor {
+    private PersistentHashMap<Integer, Instance> instances;
+    private PersistentBitmap live;
+    private FreeOrdinal free;
+    private int capacity;
+    private PersistentHashMap<String, Postings> parameters;
+    private Postings addresses;
+    private long entries;
+
+    private final InstanceParameters base;
+
+    private Editor(InstanceParameters base) {
+      this.base = base;
+      instances = base.instances;
+      live = base.live;
+      free = base.free;
+      capacity = base.capacity;
+      parameters = base.parameters;
+      addresses = base.addresses;
+      entries = base.entries;
+    }
+
+    /** @return ordinal of the added instance */
+    int add(String service, String id, URL url) {
+      int ordinal;
+      if (free != null) {
+        ordinal = free.ordinal;
+        free = free.next;
+      } else {
+        ordinal = capacity++;
+      }
+      List<String> indexed = new ArrayList<>();
+      for (Map.Entry<String, String> parameter : url.getParameters().entrySet()) {
+        if (UNINDEXED.contains(parameter.getKey())) {
+          continue;
+        }
+        Postings postings = parameters.get(parameter.getKey());
+        if (postings == null) {
+          postings = Postings.EMPTY;
+        }
+        Postings updated = postings.with(parameter.getValue(), ordinal);
+        entries += updated.size() - postings.size();
+        parameters = parameters.plus(parameter.getKey(), updated);
+        indexed.add(parameter.getKey());
+        // the stored value is shared with the postings rather than the URL
+        indexed.add(updated.canonical(parameter.getValue()));
+      }
+      List<String> instanceAddresses = ConsumerAggregates.getAddresses(url);
+      for (String address : instanceAddresses) {
+        Postings updated = addresses.with(address, ordinal);
+        entries += updated.size() - addresses.size();
+        addresses = updated;
+      }
+      instances =
+          instances.plus(
+              ordinal,
+              new Instance(
+                  service,
+                  id,
+                  indexed.toArray(new String[0]),
+                  instanceAddresses.toArray(new String[0])));
+      live = live.with(ordinal);
+      return ordinal;
+    }
+
+    void remove(int ordinal) {
+      Instance instance = instances.get(ordinal);
+      if (instance == null) {
+        return;
+      }
+      for (int i = 0; i < instance.parameters.length; i += 2) {
+        Postings postings = parameters.get(instance.parameters[i]);
+        Postings updated = postings.without(instance.parameters[i + 1], ordinal);
+        entries += updated.size() - postings.size();
+        parameters =
+            updated.size() == 0
+                ? parameters.minus(instance.parameters[i])
+                : parameters.plus(instance.parameters[i], updated);
+      }
+      for (String address : instance.addresses) {
+        Postings updated = addresses.without(address, ordinal);
+        entries += updated.size() - addresses.size();
+        addresses = updated;
+      }
+      instances = instances.minus(ordinal);
+      live = live.without(ordinal);
+      free = new FreeOrdinal(ordinal, free);
+    }
+
+    InstanceParameters build() {
+      if (instances == base.instances) {
+        return base;
+      }
+      if (instances.isEmpty()) {
+        return EMPTY;
+      }
+      return new InstanceParameters(
+          instances, live, free, capacity, parameters, addresses, entries);
+    }
+  }
+
+  /** What an instance was indexed under, to take it out again. */
+  private static final class Instance {
+    final String service;
+
+    final String id;
+
+    /** parameter, value, parameter, value... */
+    final String[] parameters;
+
+    final String[] addresses;
+
+    Instance(String service, String id, String[] parameters, String[] addresses) {
+      this.service = service;
+      this.id = id;
+      this.parameters = parameters;
+      this.addresses = addresses;
+    }
+  }
+
+  /** Immutable stack of the ordinals to hand out again. */
+  private static final class FreeOrdinal {
+    final int ordinal;
+
+    final FreeOrdinal next;
+
+    FreeOrdinal(int ordinal, FreeOrdinal next) {
+      this.ordinal = ordinal;
+      this.next = next;
+    }
+  }
+
+  /** Bitmaps of the values of one parameter. */
+  private static final class Postings {
+    static final Postings EMPTY = new Postings(PersistentHashMap.empty(), new String[0]);
+
+    /** Map<value, ordinals> */
+    final PersistentHashMap<String, PersistentBitmap> values;
+
+    /** the values sorted, for {@link #getByPrefix} */
+    final String[] sorted;
+
+    Postings(PersistentHashMap<String, PersistentBitmap> values, String[] sorted) {
+      this.values = values;
+      this.sorted = sorted;
+    }
+
+    int size() {
+      return sorted.length;
+    }
+
+    BitSet get(String value) {
+      PersistentBitmap ordinals = values.get(value);
+      return ordinals == null ? new BitSet() : ordinals.toBitSet();
+    }
+
+    BitSet getByPrefix(String prefix) {
+      int from = Arrays.binarySearch(sorted, prefix);
+      if (from < 0) {
+        from = -from - 1;
+      }
+      int words = 0;
+      int to = from;
+      while (to < sorted.length && sorted[to].startsWith(prefix)) {
+        words = Math.max(words, values.get(sorted[to]).words());
+        to++;
+      }
+      long[] ret = new long[words];
+      for (int i = from; i < to; i++) {
+        values.get(sorted[i]).or(ret);
+      }
+      return BitSet.valueOf(ret);
+    }
+
+    /** @return the equal value kept by these postings */
+    String canonical(String value) {
+      int index = Arrays.binarySearch(sorted, value);
+      return index >= 0 ? sorted[index] : value;
+    }
+
+    Postings with(String value, int ordinal) {
+      PersistentBitmap ordinals = values.get(value);
+      if (ordinals != null) {
+        return new Postings(values.plus(value, ordinals.with(ordinal)), sorted);
+      }
+      int index = -Arrays.binarySearch(sorted, value) - 1;
+      String[] newSorted = new String[sorted.length + 1];
+      System.arraycopy(sorted, 0, newSorted, 0, index);
+      System.arraycopy(sorted, index, newSorted, index + 1, sorted.length - index);
+      newSorted[index] = value;
+      return new Postings(values.plus(value, PersistentBitmap.EMPTY.with(ordinal)), newSorted);
+    }
+
+    Postings without(String value, int ordinal) {
+      PersistentBitmap ordinals = values.get(value);
+      if (ordinals == null) {
+        return this;
+      }
+      ordinals = ordinals.without(ordinal);
+      if (!ordinals.isEmpty()) {
+        return new Postings(values.plus(value, ordinals), sorted);
+      }
+      int index = Arrays.binarySearch(sorted, value);
+      String[] newSorted = new String[sorted.length - 1];
+      System.arraycopy(sorted, 0, newSorted, 0, index);
+      System.arraycopy(sorted, index + 1, newSorted, index, newSorted.length - index);
+      return new Postings(values.minus(value), newSorted);
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.admin.common.exception.ParamValidationException;
+import org.apache.dubbo.admin.common.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Boolean query over the instances of the registry cache.
+ *
+ * <p>A query combines terms with {@code AND}, {@code OR}, {@code NOT} and parentheses, adjacent
+ * terms meaning {@code AND}:
+ *
+ * <pre>
+ * category=providers AND dubbo=2.6.* AND application=foo AND NOT address=10.0.*
+ * </pre>
+ *
+ * <ul>
+ *   <li>{@code key=value} instances with this value of the URL parameter, a trailing {@code *}
+ *       matches every value starting with what comes before it and {@code key=*} any value
+ *   <li>{@code key!=value} the opposite
+ *   <li>{@code address=host:port} instances at this address, or any address starting with what
+ *       comes before a trailing {@code *}
+ *   <li>{@code category=providers} instances of this category
+ * </ul>
+ *
+ * A query is parsed once and evaluated against the {@link InstanceParameters} of every category.
+ */
+public abstract class InstanceQuery {
+  public static final String ADDRESS = "address";
+
+  private static final String WILDCARD = "*";
+
+  /**
+   * @param category category of the instances
+   * @param parameters index of the category's instances
+   * @return ordinals of the matching instances, owned by the caller
+   */
+  public abstract BitSet match(String category, InstanceParameters parameters);
+
+  /** @throws ParamValidationException when the query is malformed */
+  public static InstanceQuery parse(String query) {
+    if (query == null || query.trim().isEmpty()) {
+      throw new ParamValidationException("Query is empty");
+    }
+    Parser parser = new Parser(tokenize(query));
+    InstanceQuery ret = parser.or();
+    if (parser.peek() != null) {
+      throw new ParamValidationException("Unexpected '" + parser.peek() + "' in query");
+    }
+    return ret;
+  }
+
+  private static List<String> tokenize(String query) {
+    List<String> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < query.length()) {
+      char c = query.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '(' || c == ')') {
+        tokens.add(String.valueOf(c));
+        i++;
+      } else {
+        int start = i;
+        while (i < query.length()
+            && !Character.isWhitespace(query.charAt(i))
+            && query.charAt(i) != '('
+            && query.charAt(i) != ')') {
+          i++;
+        }
+        tokens.add(query.substring(start, i));
+      }
+    }
+    return tokens;
+  }
+
+  private static InstanceQuery term(String token) {
+    int index = token.indexOf('=');
+    if (index <= 0) {
+      throw new ParamValidationException("Expected key=value instead of '" + token + "'");
+    }
+    boolean negate = token.charAt(index - 1) == '!';
+    String key = token.substring(0, negate ? index - 1 : index);
+    String value = token.substring(index + 1);
+    if (key.isEmpty() || value.isEmpty()) {
+      throw new ParamValidationException("Expected key=value instead of '" + token + "'");
+    }
+    InstanceQuery ret;
+    if (Constants.CATEGORY_KEY.equals(key)) {
+      ret = new Category(value);
+    } else if (ADDRESS.equals(key)) {
+      ret = new Address(value);
+    } else {
+      ret = new Parameter(key, value);
+    }
+    return negate ? new Not(ret) : ret;
+  }
+
+  private static final class Parser {
+    private final List<String> tokens;
+
+    private int position;
+
+    Parser(List<String> tokens) {
+      this.tokens = tokens;
+    }
+
+    String peek() {
+      return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    boolean accept(String keyword) {
+      if (keyword.equalsIgnoreCase(peek())) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    InstanceQuery or() {
+      InstanceQuery ret = and();
+      while (accept("OR")) {
+        ret = new Or(ret, and());
+      }
+      return ret;
+    }
+
+    InstanceQuery and() {
+      InstanceQuery ret = not();
+      while (true) {
+        String next = peek();
+        if (next == null || ")".equals(next) || "OR".equalsIgnoreCase(next)) {
+          return ret;
+        }
+        accept("AND");
+        ret = new And(ret, not());
+      }
+    }
+
+    InstanceQuery not() {
+      if (accept("NOT")) {
+        return new Not(not());
+      }
+      String token = peek();
+      if (token == null) {
+        throw new ParamValidationException("Unexpected end of query");
+      }
+      position++;
+      if ("(".equals(token)) {
+        InstanceQuery ret = or();
+        if (!accept(")")) {
+          throw new ParamValidationException("Missing ')' in query");
+        }
+        return ret;
+      }
+      if (")".equals(token) || "AND".equalsIgnoreCase(token) || "OR".equalsIgnoreCase(token)) {
+        throw new ParamValidationException("Unexpected '" + token + "' in query");
+      }
+      return term(token);
+    }
+  }
+
+  private static final class Parameter extends InstanceQuery {
+    private final String key;
+
+    private final String value;
+
+    private final boolean prefix;
+
+    Parameter(String key, String value) {
+      this.key = key;
+      this.prefix = value.endsWith(WILDCARD);
+      this.value = prefix ? value.substring(0, value.length() - 1) : value;
+    }
+
+    @Override
+    public BitSet match(String category, InstanceParameters parameters) {
+      return prefix ? parameters.getByPrefix(key, value) : parameters.get(key, value);
+    }
+  }
+
+  private static final class Address extends InstanceQuery {
+    private final String value;
+
+    private final boolean prefix;
+
+    Address(String value) {
+      this.prefix = value.endsWith(WILDCARD);
+      this.value = prefix ? value.substring(0, value.length() - 1) : value;
+    }
+
+    @Override
+    public BitSet match(String category, InstanceParameters parameters) {
+      return parameters.getByAddress(value, !prefix);
+    }
+  }
+
+  private static final class Category extends InstanceQuery {
+    private final String value;
+
+    Category(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public BitSet match(String category, InstanceParameters parameters) {
+      return value.equals(category) ? parameters.all() : new BitSet();
+    }
+  }
+
+  private static final class And extends InstanceQuery {
+    private final InstanceQuery left;
+
+    private final InstanceQuery right;
+
+    And(InstanceQuery left, InstanceQuery right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public BitSet match(String category, InstanceParameters parameters) {
+      BitSet ret = left.match(category, parameters);
+      if (!ret.isEmpty()) {
+        ret.and(right.match(category, parameters));
+      }
+      return ret;
+    }
+  }
+
+  private static final class Or extends InstanceQuery {
+    private final InstanceQuery left;
+
+    private final InstanceQuery right;
+
+    Or(InstanceQuery left, InstanceQuery right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public BitSet match(String category, InstanceParameters parameters) {
+      BitSet ret = left.match(category, parameters);
+      ret.or(right.match(category, parameters));
+      return ret;
+    }
+  }
+
+  private static final class Not extends InstanceQuery {
+    private final InstanceQuery query;
+
+    Not(InstanceQuery query) {
+      this.query = query;
+    }
+
+    @Override
+    public BitSet match(String category, InstanceParameters parameters) {
+      BitSet ret = query.match(category, parameters);
+      ret.flip(0, parameters.capacity());
+      // ordinals left by removed instances match nothing
+      ret.and(parameters.all());
+      return ret;
+    }
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Moves registry notifications off the registry client's callback thread.
+ *
+ * <p>Every notification is a full URL list for its key (interface and categories), so only the
+ * latest pending list of a key needs to be applied: a newer one simply replaces it. Workers take up
+ * to {@code batchSize} keys at a time and hand their lists to the applier in one call. A key is
+ * never handed to two workers at once, so lists of the same key are applied in arrival order.
+ *
+ * <p>At most {@code capacity} keys can be pending; {@link #offer} blocks when a new key does not
+ * fit.
+ *
+ * <p>When the applier fails, the keys of the batch are pending again with their lists, unless a
+ * newer list arrived meanwhile, and retried after a backoff doubling from {@code 1s} up to {@code
+ * 64s}, as Dubbo's failback registry would have retried the notification.
+ */
+@Slf4j
+public class NotifyPipeline {
+  private static final long RETRY_MILLIS = 1000L;
+
+  private static final int MAX_RETRY_SHIFT = 6;
+
+  private final int capacity;
+
+  private final int batchSize;
+
+  private final Consumer<List<List<URL>>> applier;
+
+  private final ExecutorService workers;
+
+  private final int workerCount;
+
+  /** Map<key, latest URL list> waiting to be applied */
+  private final Map<String, List<URL>> pending = new HashMap<>();
+
+  /** pending keys which are not in flight, in arrival order */
+  private final Queue<String> ready = new ArrayDeque<>();
+
+  private final Set<String> inFlight = new HashSet<>();
+
+  /** Map<key, System.nanoTime() to retry at> of the pending keys which failed to apply */
+  private final Map<String, Long> retryAt = new HashMap<>();
+
+  /** Map<key, failed attempts in a row> */
+  private final Map<String, Integer> attempts = new HashMap<>();
+
+  private boolean running = true;
+
+  private final LongAdder received = new LongAdder();
+
+  private final LongAdder coalesced = new LongAdder();
+
+  private final LongAdder applied = new LongAdder();
+
+  private final LongAdder batches = new LongAdder();
+
+  private final LongAdder failures = new LongAdder();
+
+  private final LongAdder applyNanos = new LongAdder();
+
+  private final AtomicLong maxApplyNanos = new AtomicLong();
+
+  /**
+   * @param capacity max number of pending keys
+   * @param workers number of worker threads
+   * @param batchSize max number of keys applied in one call
+   * @param applier applies a batch of full URL lists, called from worker threads
+   */
+  public NotifyPipeline(
+      int capacity, int workers, int batchSize, Consumer<List<List<URL>>> applier) {
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.applier = applier;
+    this.workerCount = workers;
+    this.workers =
+        Executors.newFixedThreadPool(workers, new NamedThreadFactory("RegistryNotify", true));
+  }
+
+  public void start() {
+    for (int i = 0; i < workerCount; i++) {
+      workers.execute(this::work);
+    }
+  }
+
+  public void shutdown() {
+    synchronized (this) {
+      running = false;
+      notifyAll();
+    }
+    workers.shutdownNow();
+  }
+
+  /**
+   * Queue the full URL list of a key, replacing the one still waiting for the same key.
+   *
+   * @return false when the pipeline was shut down and nothing was queued
+   */
+  public synchronized boolean offer(String key, List<URL> urls) throws InterruptedException {
+    while (running && !pending.containsKey(key) && pending.size() >= capacity) {
+      wait();
+    }
+    if (!running) {
+      return false;
+    }
+    received.increment();
+    if (pending.put(key, urls) != null) {
+      coalesced.increment();
+    } else if (!inFlight.contains(key)) {
+      ready.add(key);
+      notifyAll();
+    }
+    return true;
+  }
+
+  public synchronized int getQueueDepth() {
+    return pending.size();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getReceived() {
+    return received.sum();
+  }
+
+  /** @return notifications replaced by a newer one before being applied */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public long getApplied() {
+    return applied.sum();
+  }
+
+  public long getBatches() {
+    return batches.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  /** @return total time spent in the applier */
+  public long getApplyNanos() {
+    return applyNanos.sum();
+  }
+
+  /** @return the slowest batch so far */
+  public long getMaxApplyNanos() {
+    return maxApplyNanos.get();
+  }
+
+  private void work() {
+    List<String> keys = new ArrayList<>(batchSize);
+    List<List<URL>> lists = new ArrayList<>(batchSize);
+    while (take(keys, lists)) {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        applier.accept(lists);
+        applied.add(lists.size());
+        failed = false;
+      } catch (Exception e) {
+        failures.increment();
+        log.error("Failed to apply registry notifications of " + keys + ", will retry", e);
+      } finally {
+        long elapsed = System.nanoTime() - start;
+        batches.increment();
+        applyNanos.add(elapsed);
+        maxApplyNanos.accumulateAndGet(elapsed, Math::max);
+        done(keys, failed ? lists : null);
+        keys.clear();
+        lists.clear();
+      }
+    }
+  }
+
+  private synchronized boolean take(List<String> keys, List<List<URL>> lists) {
+    try {
+      while (running && ready.isEmpty()) {
+        long next = retryDue();
+        if (next == Long.MAX_VALUE) {
+          wait();
+        } else if (next > 0) {
+          TimeUnit.NANOSECONDS.timedWait(this, next);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    if (!running) {
+      return false;
+    }
+    while (keys.size() < batchSize && !ready.isEmpty()) {
+      String key = ready.poll();
+      keys.add(key);
+      lists.add(pending.remove(key));
+      inFlight.add(key);
+    }
+    // room for new keys
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Make the keys whose retry is due ready.
+   *
+   * @return nanoseconds until the next retry, {@link Long#MAX_VALUE} when there is none
+   */
+  private long retryDue() {
+    long now = System.nanoTime();
+    long next = Long.MAX_VALUE;
+    for (Iterator<Map.Entry<String, Long>> it = retryAt.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<String, Long> entry = it.next();
+      long left = entry.getValue() - now;
+      if (left <= 0) {
+        it.remove();
+        ready.add(entry.getKey());
+        next = 0;
+      } else {
+        next = Math.min(next, left);
+      }
+    }
+    return next;
+  }
+
+  /** @param failed lists of the keys when they failed to apply, null when they were applied */
+  private synchronized void done(List<String> keys, List<List<URL>> failed) {
+    long now = System.nanoTime();
+    for (int i = 0; i < keys.size(); i++) {
+      String key = keys.get(i);
+      inFlight.remove(key);
+      if (failed != null) {
+        // a newer list of the key wins over the failed one
+        pending.putIfAbsent(key, failed.get(i));
+        int attempt = attempts.merge(key, 1, Integer::sum);
+        long backoff = RETRY_MILLIS << Math.min(attempt - 1, MAX_RETRY_SHIFT);
+        retryAt.put(key, now + TimeUnit.MILLISECONDS.toNanos(backoff));
+      } else {
+        attempts.remove(key);
+        if (pending.containsKey(key)) {
+          ready.add(key);
+        }
+      }
+    }
+    notifyAll();
+  }
+
+  /** @return keys waiting to be retried after they failed to apply */
+  public synchronized int getRetrying() {
+    return retryAt.size();
+  }
+
+  /**
+   * Wait until nothing is pending or in flight, but the keys waiting to be retried, mostly for
+   * tests.
+   */
+  public synchronized boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (pending.size() > retryAt.size() || !inFlight.isEmpty()) {
+      long left = deadline - System.nanoTime();
+      if (left <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, left);
+    }
+    return true;
+  }
+}
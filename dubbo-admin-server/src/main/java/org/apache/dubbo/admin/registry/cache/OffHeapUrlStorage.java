@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Off-heap URL storage, for registries large enough for the cached URLs to hurt garbage collection.
+ *
+ * <p>Every instance is serialized into direct {@link ByteBuffer} slabs, and a service only keeps two
+ * sorted primitive arrays on heap: the instance ids as longs and the addresses of their records.
+ * Records are decoded on read. Layout of a record, lengths in bytes:
+ *
+ * <pre>
+ * int length, string protocol, string username, string password, string host, int port,
+ * string path, int parameters, parameters * (string key, string value)
+ * </pre>
+ *
+ * where a string is an int length, -1 for null, followed by its UTF-8 bytes.
+ *
+ * <p>Slabs are only appended to, so a record stays readable for as long as an old snapshot refers
+ * to it. Records of an instance notified again unchanged are reused. Once more than half of the
+ * slabs is garbage, {@link #compact()} starts new slabs and every stored map is written again, the
+ * old slabs are freed with the last map referring to them.
+ *
+ * <p>Ids which are not {@link InstanceIds} hex ids can not be kept as longs, such services stay on
+ * heap.
+ */
+public class OffHeapUrlStorage implements UrlStorage {
+  static final int SLAB_SIZE = 16 * 1024 * 1024;
+
+  /** Do not bother starting new slabs for less garbage than this */
+  private static final long MIN_GARBAGE = SLAB_SIZE;
+
+  private volatile Slabs slabs = new Slabs();
+
+  @Override
+  public Map<String, URL> store(Map<String, URL> urls, Map<String, URL> previous) {
+    long[] ids = new long[urls.size()];
+    int n = 0;
+    for (String id : urls.keySet()) {
+      if (!isHexId(id)) {
+        return Collections.unmodifiableMap(urls);
+      }
+      ids[n++] = Long.parseUnsignedLong(id, 16);
+    }
+    Slabs current = slabs;
+    OffHeapUrlMap old =
+        previous instanceof OffHeapUrlMap && ((OffHeapUrlMap) previous).slabs == current
+            ? (OffHeapUrlMap) previous
+            : null;
+    Arrays.sort(ids);
+    long[] addresses = new long[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      long address = old == null ? -1L : old.address(ids[i]);
+      addresses[i] =
+          address == -1L ? current.write(urls.get(InstanceIds.toHex(ids[i]))) : address;
+    }
+    if (old != null) {
+      for (int i = 0; i < old.ids.length; i++) {
+        if (Arrays.binarySearch(ids, old.ids[i]) < 0) {
+          current.release(old.addresses[i]);
+        }
+      }
+    }
+    return new OffHeapUrlMap(current, ids, addresses);
+  }
+
+  @Override
+  public void release(Map<String, URL> stored) {
+    if (stored instanceof OffHeapUrlMap && ((OffHeapUrlMap) stored).slabs == slabs) {
+      for (long address : ((OffHeapUrlMap) stored).addresses) {
+        slabs.release(address);
+      }
+    }
+  }
+
+  @Override
+  public boolean compact() {
+    Slabs current = slabs;
+    if (current.garbage < MIN_GARBAGE || current.garbage * 2 < current.used) {
+      return false;
+    }
+    slabs = new Slabs();
+    return true;
+  }
+
+  /** Only the on-heap part, the records are counted by {@link #getSharedBytes()}. */
+  @Override
+  public long estimate(Map<String, URL> stored) {
+    if (!(stored instanceof OffHeapUrlMap)) {
+      return CacheSizes.estimate(stored);
+    }
+    OffHeapUrlMap map = (OffHeapUrlMap) stored;
+    return CacheSizes.OBJECT_HEADER
+        + 3 * CacheSizes.REFERENCE
+        + 2 * (CacheSizes.ARRAY_HEADER + 8L * map.ids.length);
+  }
+
+  /** @return bytes of direct memory held by the slabs, not heap */
+  @Override
+  public long getSharedBytes() {
+    return slabs.allocated;
+  }
+
+  private static boolean isHexId(String id) {
+    if (id.length() != 16) {
+      return false;
+    }
+    for (int i = 0; i < 16; i++) {
+      char c = id.charAt(i);
+      if (!(c >= '0' && c <= '9' || c >= 'A' && c <= 'F')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Direct buffers records are appended to. An address is the slab index in the high 32 bits and
+   * the offset of the record in the low ones. Written by the single writer of the registry cache,
+   * read by anyone.
+   */
+  static final class Slabs {
+    private volatile ByteBuffer[] buffers = new ByteBuffer[0];
+
+    /** position in the last slab */
+    private int position;
+
+    /** bytes allocated, used and no longer referenced, only touched by the writer */
+    private long allocated;
+
+    private long used;
+
+    private long garbage;
+
+    long write(URL url) {
+      byte[] record = encode(url);
+      ByteBuffer[] current = buffers;
+      if (current.length == 0 || position + record.length > current[current.length - 1].capacity()) {
+        // a record larger than a slab gets a slab of its own
+        ByteBuffer slab = ByteBuffer.allocateDirect(Math.max(SLAB_SIZE, record.length));
+        current = Arrays.copyOf(current, current.length + 1);
+        current[current.length - 1] = slab;
+        allocated += slab.capacity();
+        position = 0;
+      }
+      int slab = current.length - 1;
+      ByteBuffer buffer = current[slab].duplicate();
+      buffer.position(position);
+      buffer.put(record);
+      long address = (long) slab << 32 | position;
+      position += record.length;
+      used += record.length;
+      // publish the new slab only once the record is written
+      buffers = current;
+      return address;
+    }
+
+    void release(long address) {
+      garbage += buffers[(int) (address >>> 32)].getInt((int) address);
+    }
+
+    URL read(long address) {
+      ByteBuffer buffer = buffers[(int) (address >>> 32)].duplicate();
+      buffer.position((int) address + 4);
+      String protocol = readString(buffer);
+      String username = readString(buffer);
+      String password = readString(buffer);
+      String host = readString(buffer);
+      int port = buffer.getInt();
+      String path = readString(buffer);
+      int count = buffer.getInt();
+      Map<String, String> parameters = new HashMap<>(count * 4 / 3 + 1);
+      for (int i = 0; i < count; i++) {
+        parameters.put(readString(buffer), readString(buffer));
+      }
+      return new URL(protocol, username, password, host, port, path, parameters);
+    }
+
+    private static byte[] encode(URL url) {
+      Map<String, String> parameters = url.getParameters();
+      byte[][] strings = new byte[5 + parameters.size() * 2][];
+      strings[0] = bytes(url.getProtocol());
+      strings[1] = bytes(url.getUsername());
+      strings[2] = bytes(url.getPassword());
+      strings[3] = bytes(url.getHost());
+      strings[4] = bytes(url.getPath());
+      int i = 5;
+      for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+        strings[i++] = bytes(parameter.getKey());
+        strings[i++] = bytes(parameter.getValue());
+      }
+      // length, port, parameter count and the length of every string
+      int length = 12 + 4 * strings.length;
+      for (byte[] string : strings) {
+        length += string == null ? 0 : string.length;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      buffer.putInt(length);
+      for (i = 0; i < 4; i++) {
+        putString(buffer, strings[i]);
+      }
+      buffer.putInt(url.getPort());
+      putString(buffer, strings[4]);
+      buffer.putInt(parameters.size());
+      for (i = 5; i < strings.length; i++) {
+        putString(buffer, strings[i]);
+      }
+      return buffer.array();
+    }
+
+    private static byte[] bytes(String value) {
+      return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+      if (bytes == null) {
+        buffer.putInt(-1);
+      } else {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+      }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+      int length = buffer.getInt();
+      if (length < 0) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** Read-only Map<id, URL> over off-heap records, sorted by id. */
+  static final class OffHeapUrlMap extends AbstractMap<String, URL> {
+    private final Slabs slabs;
+    private final long[] ids;
+    private final long[] addresses;
+
+    OffHeapUrlMap(Slabs slabs, long[] ids, long[] addresses) {
+      this.slabs = slabs;
+      this.ids = ids;
+      this.addresses = addresses;
+    }
+
+    /** @return address of the record of an id, -1 when there is none */
+    long address(long id) {
+      int i = Arrays.binarySearch(ids, id);
+      return i < 0 ? -1L : addresses[i];
+    }
+
+    private long address(Object key) {
+      if (!(key instanceof String) || !isHexId((String) key)) {
+        return -1L;
+      }
+      return address(Long.parseUnsignedLong((String) key, 16));
+    }
+
+    @Override
+    public URL get(Object key) {
+      long address = address(key);
+      return address == -1L ? null : slabs.read(address);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return address(key) != -1L;
+    }
+
+    @Override
+    public int size() {
+      return ids.length;
+    }
+
+    @Override
+    public Set<Entry<String, URL>> entrySet() {
+      return new AbstractSet<Entry<String, URL>>() {
+        @Override
+        public Iterator<Entry<String, URL>> iterator() {
+          return new Iterator<Entry<String, URL>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+              return next < ids.length;
+            }
+
+            @Override
+            public Entry<String, URL> next() {
+              if (next >= ids.length) {
+                throw new NoSuchElementException();
+              }
+              int i = next++;
+              return new SimpleImmutableEntry<>(
+                  InstanceIds.toHex(ids[i]), slabs.read(addresses[i]));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return ids.length;
+        }
+      };
+    }
+  }
+}
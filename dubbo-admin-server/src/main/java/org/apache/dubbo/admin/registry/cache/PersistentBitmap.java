@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable sparse bitmap.
+ *
+ * <p>Bits are kept in chunks of 1024, only the chunks with a bit set are allocated. {@link #with}
+ * and {@link #without} copy the one chunk they touch and share every other one with this bitmap,
+ * so a snapshot of the registry cache can keep its bitmaps while the next one changes a few bits.
+ */
+public final class PersistentBitmap {
+  public static final PersistentBitmap EMPTY = new PersistentBitmap(new int[0], new long[0][], 0);
+
+  /** bits per chunk, as a shift */
+  private static final int CHUNK_SHIFT = 10;
+
+  private static final int CHUNK_WORDS = (1 << CHUNK_SHIFT) / Long.SIZE;
+
+  /** sorted indexes of the allocated chunks */
+  private final int[] keys;
+
+  private final long[][] chunks;
+
+  private final int cardinality;
+
+  private PersistentBitmap(int[] keys, long[][] chunks, int cardinality) {
+    this.keys = keys;
+    this.chunks = chunks;
+    this.cardinality = cardinality;
+  }
+
+  /** @return a bitmap with the bit set, or this bitmap when it already is */
+  public PersistentBitmap with(int bit) {
+    int key = bit >>> CHUNK_SHIFT;
+    int word = (bit >>> 6) & (CHUNK_WORDS - 1);
+    long mask = 1L << bit;
+    int index = Arrays.binarySearch(keys, key);
+    if (index >= 0) {
+      if ((chunks[index][word] & mask) != 0) {
+        return this;
+      }
+      long[][] newChunks = chunks.clone();
+      newChunks[index] = chunks[index].clone();
+      newChunks[index][word] |= mask;
+      return new PersistentBitmap(keys, newChunks, cardinality + 1);
+    }
+    int insert = -index - 1;
+    int[] newKeys = new int[keys.length + 1];
+    long[][] newChunks = new long[chunks.length + 1][];
+    System.arraycopy(keys, 0, newKeys, 0, insert);
+    System.arraycopy(chunks, 0, newChunks, 0, insert);
+    System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+    System.arraycopy(chunks, insert, newChunks, insert + 1, chunks.length - insert);
+    newKeys[insert] = key;
+    newChunks[insert] = new long[CHUNK_WORDS];
+    newChunks[insert][word] = mask;
+    return new PersistentBitmap(newKeys, newChunks, cardinality + 1);
+  }
+
+  /** @return a bitmap with the bit cleared, or this bitmap when it already is */
+  public PersistentBitmap without(int bit) {
+    int index = Arrays.binarySearch(keys, bit >>> CHUNK_SHIFT);
+    int word = (bit >>> 6) & (CHUNK_WORDS - 1);
+    long mask = 1L << bit;
+    if (index < 0 || (chunks[index][word] & mask) == 0) {
+      return this;
+    }
+    if (cardinality == 1) {
+      return EMPTY;
+    }
+    long[] chunk = chunks[index].clone();
+    chunk[word] &= ~mask;
+    if (!isEmpty(chunk)) {
+      long[][] newChunks = chunks.clone();
+      newChunks[index] = chunk;
+      return new PersistentBitmap(keys, newChunks, cardinality - 1);
+    }
+    int[] newKeys = new int[keys.length - 1];
+    long[][] newChunks = new long[chunks.length - 1][];
+    System.arraycopy(keys, 0, newKeys, 0, index);
+    System.arraycopy(chunks, 0, newChunks, 0, index);
+    System.arraycopy(keys, index + 1, newKeys, index, newKeys.length - index);
+    System.arraycopy(chunks, index + 1, newChunks, index, newChunks.length - index);
+    return new PersistentBitmap(newKeys, newChunks, cardinality - 1);
+  }
+
+  public boolean contains(int bit) {
+    int index = Arrays.binarySearch(keys, bit >>> CHUNK_SHIFT);
+    return index >= 0 && (chunks[index][(bit >>> 6) & (CHUNK_WORDS - 1)] & (1L << bit)) != 0;
+  }
+
+  /** @return number of bits set */
+  public int cardinality() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  /** @return number of words {@link #or} writes to at most */
+  public int words() {
+    return keys.length == 0 ? 0 : (keys[keys.length - 1] + 1) * CHUNK_WORDS;
+  }
+
+  /**
+   * Set the bits of this bitmap in an array of words laid out as {@link BitSet#toLongArray()}.
+   *
+   * @param words at least {@link #words()} long
+   */
+  public void or(long[] words) {
+    for (int i = 0; i < keys.length; i++) {
+      int offset = keys[i] * CHUNK_WORDS;
+      long[] chunk = chunks[i];
+      for (int j = 0; j < CHUNK_WORDS; j++) {
+        words[offset + j] |= chunk[j];
+      }
+    }
+  }
+
+  /** @return a copy the caller owns */
+  public BitSet toBitSet() {
+    long[] words = new long[words()];
+    or(words);
+    return BitSet.valueOf(words);
+  }
+
+  private static boolean isEmpty(long[] chunk) {
+    for (long word : chunk) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,446 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable hash array mapped trie.
+ *
+ * <p>{@link #plus} and {@link #minus} return a new map sharing every untouched branch with this
+ * one, so publishing a changed copy costs O(log32 n) instead of a full copy. Null keys and values
+ * are not supported.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+  private final Node root;
+  private final int size;
+
+  private PersistentHashMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+    PersistentHashMap<K, V> ret = empty();
+    for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      ret = ret.plus(entry.getKey(), entry.getValue());
+    }
+    return ret;
+  }
+
+  /**
+   * @return a map with the key bound to the value, or this map when nothing changed
+   */
+  public PersistentHashMap<K, V> plus(K key, V value) {
+    if (key == null || value == null) {
+      throw new NullPointerException();
+    }
+    boolean[] added = new boolean[1];
+    Node newRoot = put(root, 0, hash(key), key, value, added);
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * @return a map without the key, or this map when the key was absent
+   */
+  public PersistentHashMap<K, V> minus(Object key) {
+    if (key == null || root == null) {
+      return this;
+    }
+    Node newRoot = remove(root, 0, hash(key), key);
+    if (newRoot == root) {
+      return this;
+    }
+    return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    if (key == null) {
+      return null;
+    }
+    int hash = hash(key);
+    Node node = root;
+    int shift = 0;
+    while (node != null) {
+      if (node instanceof Branch) {
+        Branch branch = (Branch) node;
+        int bit = bit(hash, shift);
+        if ((branch.bitmap & bit) == 0) {
+          return null;
+        }
+        node = branch.children[branch.index(bit)];
+        shift += BITS;
+      } else if (node instanceof Leaf) {
+        Leaf leaf = (Leaf) node;
+        return leaf.hash == hash && leaf.key.equals(key) ? (V) leaf.value : null;
+      } else {
+        Collision collision = (Collision) node;
+        int i = collision.indexOf(hash, key);
+        return i < 0 ? null : (V) collision.values[i];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator<>(root);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  private static Node put(Node node, int shift, int hash, Object key, Object value, boolean[] added) {
+    if (node == null) {
+      added[0] = true;
+      return new Leaf(hash, key, value);
+    }
+    if (node instanceof Branch) {
+      Branch branch = (Branch) node;
+      int bit = bit(hash, shift);
+      int idx = branch.index(bit);
+      if ((branch.bitmap & bit) == 0) {
+        added[0] = true;
+        Node[] children = new Node[branch.children.length + 1];
+        System.arraycopy(branch.children, 0, children, 0, idx);
+        children[idx] = new Leaf(hash, key, value);
+        System.arraycopy(branch.children, idx, children, idx + 1, branch.children.length - idx);
+        return new Branch(branch.bitmap | bit, children);
+      }
+      Node child = branch.children[idx];
+      Node newChild = put(child, shift + BITS, hash, key, value, added);
+      if (newChild == child) {
+        return branch;
+      }
+      Node[] children = branch.children.clone();
+      children[idx] = newChild;
+      return new Branch(branch.bitmap, children);
+    }
+    if (node instanceof Leaf) {
+      Leaf leaf = (Leaf) node;
+      if (leaf.hash == hash) {
+        if (leaf.key.equals(key)) {
+          return leaf.value == value ? leaf : new Leaf(hash, key, value);
+        }
+        added[0] = true;
+        return new Collision(hash, new Object[] {leaf.key, key}, new Object[] {leaf.value, value});
+      }
+      added[0] = true;
+      return merge(shift, leaf, leaf.hash, new Leaf(hash, key, value), hash);
+    }
+    Collision collision = (Collision) node;
+    if (collision.hash != hash) {
+      added[0] = true;
+      return merge(shift, collision, collision.hash, new Leaf(hash, key, value), hash);
+    }
+    int i = collision.indexOf(hash, key);
+    if (i >= 0) {
+      if (collision.values[i] == value) {
+        return collision;
+      }
+      Object[] values = collision.values.clone();
+      values[i] = value;
+      return new Collision(hash, collision.keys, values);
+    }
+    added[0] = true;
+    int n = collision.keys.length;
+    Object[] keys = new Object[n + 1];
+    Object[] values = new Object[n + 1];
+    System.arraycopy(collision.keys, 0, keys, 0, n);
+    System.arraycopy(collision.values, 0, values, 0, n);
+    keys[n] = key;
+    values[n] = value;
+    return new Collision(hash, keys, values);
+  }
+
+  /** Join two nodes with different hashes under as many branches as their hashes share. */
+  private static Node merge(int shift, Node a, int hashA, Node b, int hashB) {
+    int ia = (hashA >>> shift) & MASK;
+    int ib = (hashB >>> shift) & MASK;
+    if (ia == ib) {
+      return new Branch(1 << ia, new Node[] {merge(shift + BITS, a, hashA, b, hashB)});
+    }
+    Node[] children = ia < ib ? new Node[] {a, b} : new Node[] {b, a};
+    return new Branch((1 << ia) | (1 << ib), children);
+  }
+
+  private static Node remove(Node node, int shift, int hash, Object key) {
+    if (node instanceof Branch) {
+      Branch branch = (Branch) node;
+      int bit = bit(hash, shift);
+      if ((branch.bitmap & bit) == 0) {
+        return branch;
+      }
+      int idx = branch.index(bit);
+      Node child = branch.children[idx];
+      Node newChild = remove(child, shift + BITS, hash, key);
+      if (newChild == child) {
+        return branch;
+      }
+      if (newChild == null) {
+        if (branch.children.length == 1) {
+          return null;
+        }
+        Node[] children = new Node[branch.children.length - 1];
+        System.arraycopy(branch.children, 0, children, 0, idx);
+        System.arraycopy(branch.children, idx + 1, children, idx, children.length - idx);
+        if (children.length == 1 && !(children[0] instanceof Branch)) {
+          return children[0];
+        }
+        return new Branch(branch.bitmap ^ bit, children);
+      }
+      if (branch.children.length == 1 && !(newChild instanceof Branch)) {
+        return newChild;
+      }
+      Node[] children = branch.children.clone();
+      children[idx] = newChild;
+      return new Branch(branch.bitmap, children);
+    }
+    if (node instanceof Leaf) {
+      Leaf leaf = (Leaf) node;
+      return leaf.hash == hash && leaf.key.equals(key) ? null : leaf;
+    }
+    Collision collision = (Collision) node;
+    int i = collision.indexOf(hash, key);
+    if (i < 0) {
+      return collision;
+    }
+    int n = collision.keys.length;
+    if (n == 2) {
+      return new Leaf(hash, collision.keys[1 - i], collision.values[1 - i]);
+    }
+    Object[] keys = new Object[n - 1];
+    Object[] values = new Object[n - 1];
+    System.arraycopy(collision.keys, 0, keys, 0, i);
+    System.arraycopy(collision.keys, i + 1, keys, i, n - i - 1);
+    System.arraycopy(collision.values, 0, values, 0, i);
+    System.arraycopy(collision.values, i + 1, values, i, n - i - 1);
+    return new Collision(hash, keys, values);
+  }
+
+  private abstract static class Node {}
+
+  private static final class Leaf extends Node implements Entry<Object, Object> {
+    final int hash;
+    final Object key;
+    final Object value;
+
+    Leaf(int hash, Object key, Object value) {
+      this.hash = hash;
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValue() {
+      return value;
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry<?, ?> e = (Entry<?, ?>) o;
+      return key.equals(e.getKey()) && value.equals(e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return key.hashCode() ^ value.hashCode();
+    }
+  }
+
+  /** Entries whose full 32 bit hashes are equal. */
+  private static final class Collision extends Node {
+    final int hash;
+    final Object[] keys;
+    final Object[] values;
+
+    Collision(int hash, Object[] keys, Object[] values) {
+      this.hash = hash;
+      this.keys = keys;
+      this.values = values;
+    }
+
+    int indexOf(int hash, Object key) {
+      if (this.hash != hash) {
+        return -1;
+      }
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i].equals(key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  private static final class Branch extends Node {
+    final int bitmap;
+    final Node[] children;
+
+    Branch(int bitmap, Node[] children) {
+      this.bitmap = bitmap;
+      this.children = children;
+    }
+
+    int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+  }
+
+  /** Depth first walk, the trie is at most 7 branches deep. */
+  private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+    private final Branch[] branches = new Branch[8];
+    private final int[] positions = new int[8];
+    private int depth = -1;
+    private Collision collision;
+    private int collisionPosition;
+    private Entry<K, V> next;
+
+    EntryIterator(Node root) {
+      if (root != null) {
+        descend(root);
+        if (next == null) {
+          advance();
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Entry<K, V> ret = next;
+      next = null;
+      advance();
+      return ret;
+    }
+
+    /** Push branches down to the first entry below node. */
+    @SuppressWarnings("unchecked")
+    private void descend(Node node) {
+      while (node instanceof Branch) {
+        depth++;
+        branches[depth] = (Branch) node;
+        positions[depth] = 0;
+        node = ((Branch) node).children[0];
+      }
+      if (node instanceof Leaf) {
+        next = (Entry<K, V>) node;
+      } else {
+        collision = (Collision) node;
+        collisionPosition = 0;
+        nextInCollision();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void nextInCollision() {
+      K key = (K) collision.keys[collisionPosition];
+      V value = (V) collision.values[collisionPosition];
+      collisionPosition++;
+      if (collisionPosition == collision.keys.length) {
+        collision = null;
+      }
+      next = new SimpleImmutableEntry<>(key, value);
+    }
+
+    private void advance() {
+      if (collision != null) {
+        nextInCollision();
+        return;
+      }
+      while (depth >= 0) {
+        Branch branch = branches[depth];
+        int position = ++positions[depth];
+        if (position < branch.children.length) {
+          descend(branch.children[position]);
+          return;
+        }
+        branches[depth] = null;
+        depth--;
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+
+import java.util.Collections;
+import java.util.Map;
+
+/** Keeps the notified URLs as they are. */
+public class PlainUrlStorage implements UrlStorage {
+  @Override
+  public Map<String, URL> store(Map<String, URL> urls, Map<String, URL> previous) {
+    return Collections.unmodifiableMap(urls);
+  }
+
+  @Override
+  public void release(Map<String, URL> stored) {}
+
+  @Override
+  public boolean compact() {
+    return false;
+  }
+
+  @Override
+  public long estimate(Map<String, URL> stored) {
+    return CacheSizes.estimate(stored);
+  }
+
+  @Override
+  public long getSharedBytes() {
+    return 0;
+  }
+}
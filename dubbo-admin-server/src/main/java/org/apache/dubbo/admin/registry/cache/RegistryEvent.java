@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.common.URL;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What one notification changed in the instances of a service.
+ *
+ * <p>An instance whose URL changed while keeping its address (a new weight, a restart with a new
+ * timestamp...) is reported as {@link Change} rather than as a removal plus an addition.
+ */
+@Getter
+public final class RegistryEvent {
+  private final long sequence;
+
+  /** epoch of the snapshot the change was published in */
+  private final long epoch;
+
+  private final long timestamp;
+
+  private final String category;
+
+  private final String service;
+
+  /** applications of every instance involved */
+  private final Set<String> applications;
+
+  /** Map<id, URL> */
+  private final Map<String, String> added;
+
+  /** Map<id, URL> */
+  private final Map<String, String> removed;
+
+  private final List<Change> changed;
+
+  /** Also how replicating followers read the events of the leader back. */
+  @JsonCreator
+  private RegistryEvent(
+      @JsonProperty("sequence") long sequence,
+      @JsonProperty("epoch") long epoch,
+      @JsonProperty("timestamp") long timestamp,
+      @JsonProperty("category") String category,
+      @JsonProperty("service") String service,
+      @JsonProperty("applications") Set<String> applications,
+      @JsonProperty("added") Map<String, String> added,
+      @JsonProperty("removed") Map<String, String> removed,
+      @JsonProperty("changed") List<Change> changed) {
+    this.sequence = sequence;
+    this.epoch = epoch;
+    this.timestamp = timestamp;
+    this.category = category;
+    this.service = service;
+    this.applications = applications;
+    this.added = added;
+    this.removed = removed;
+    this.changed = changed;
+  }
+
+  /**
+   * Compare two versions of a service. The event is numbered once appended to the log.
+   *
+   * @param before Map<id, URL>, null when the service was unknown
+   * @param after Map<id, URL>, null when the service is gone
+   * @return the event, or null when nothing changed
+   */
+  public static RegistryEvent diff(
+      String category, String service, Map<String, URL> before, Map<String, URL> after) {
+    if (before == null) {
+      before = Collections.emptyMap();
+    }
+    if (after == null) {
+      after = Collections.emptyMap();
+    }
+    // Map<address, id> of the instances which are gone
+    Map<String, String> removedAddresses = new HashMap<>();
+    Map<String, URL> removedUrls = new HashMap<>();
+    for (Map.Entry<String, URL> entry : before.entrySet()) {
+      if (!after.containsKey(entry.getKey())) {
+        removedUrls.put(entry.getKey(), entry.getValue());
+        removedAddresses.put(entry.getValue().getAddress(), entry.getKey());
+      }
+    }
+    Set<String> applications = new HashSet<>();
+    Map<String, String> added = new LinkedHashMap<>();
+    List<Change> changed = new ArrayList<>();
+    for (Map.Entry<String, URL> entry : after.entrySet()) {
+      if (before.containsKey(entry.getKey())) {
+        continue;
+      }
+      URL url = entry.getValue();
+      addApplication(applications, url);
+      String oldId = removedAddresses.remove(url.getAddress());
+      if (oldId == null) {
+        added.put(entry.getKey(), url.toFullString());
+      } else {
+        addApplication(applications, removedUrls.remove(oldId));
+        changed.add(new Change(oldId, entry.getKey(), url.toFullString()));
+      }
+    }
+    Map<String, String> removed = new LinkedHashMap<>();
+    for (Map.Entry<String, URL> entry : removedUrls.entrySet()) {
+      addApplication(applications, entry.getValue());
+      removed.put(entry.getKey(), entry.getValue().toFullString());
+    }
+    if (added.isEmpty() && removed.isEmpty() && changed.isEmpty()) {
+      return null;
+    }
+    return new RegistryEvent(
+        0L,
+        0L,
+        System.currentTimeMillis(),
+        category,
+        service,
+        Collections.unmodifiableSet(applications),
+        Collections.unmodifiableMap(added),
+        Collections.unmodifiableMap(removed),
+        Collections.unmodifiableList(changed));
+  }
+
+  /** @return this event numbered by the {@link RegistryEventLog} */
+  RegistryEvent sequenced(long sequence, long epoch) {
+    return new RegistryEvent(
+        sequence, epoch, timestamp, category, service, applications, added, removed, changed);
+  }
+
+  private static void addApplication(Set<String> applications, URL url) {
+    String application = url.getParameter(Constants.APPLICATION);
+    if (application != null) {
+      applications.add(application);
+    }
+  }
+
+  /** An instance replaced by another one on the same address. */
+  @Getter
+  public static final class Change {
+    private final String oldId;
+    private final String id;
+    private final String url;
+
+    @JsonCreator
+    Change(
+        @JsonProperty("oldId") String oldId,
+        @JsonProperty("id") String id,
+        @JsonProperty("url") String url) {
+      this.oldId = oldId;
+      this.id = id;
+      this.url = url;
+    }
+  }
+}
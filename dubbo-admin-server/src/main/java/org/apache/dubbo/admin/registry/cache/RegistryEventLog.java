@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory log of {@link RegistryEvent}s.
+ *
+ * <p>Events are numbered from 1 without gaps. Only the last {@code capacity} events are kept, a
+ * reader asking for older ones has to start over from the current state.
+ */
+public class RegistryEventLog {
+  private final RegistryEvent[] ring;
+
+  /** sequence of the last appended event, 0 when empty */
+  private long last;
+
+  /** told after every append, outside of the log's lock */
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+  /** @param capacity number of events kept, at least 1 */
+  public RegistryEventLog(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("event log capacity must be at least 1: " + capacity);
+    }
+    this.ring = new RegistryEvent[capacity];
+  }
+
+  /**
+   * Number and keep the events of one published snapshot.
+   *
+   * @return the numbered events
+   */
+  public List<RegistryEvent> append(List<RegistryEvent> events, long epoch) {
+    if (events.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<RegistryEvent> ret = new ArrayList<>(events.size());
+    synchronized (this) {
+      for (RegistryEvent event : events) {
+        RegistryEvent sequenced = event.sequenced(++last, epoch);
+        ring[(int) (last % ring.length)] = sequenced;
+        ret.add(sequenced);
+      }
+      notifyAll();
+    }
+    for (Runnable listener : listeners) {
+      listener.run();
+    }
+    return ret;
+  }
+
+  /** @param listener told whenever events are appended, it must not block */
+  public void addListener(Runnable listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Runnable listener) {
+    listeners.remove(listener);
+  }
+
+  public synchronized long getLastSequence() {
+    return last;
+  }
+
+  /** @return sequence of the oldest event still kept */
+  public synchronized long getFirstSequence() {
+    return Math.max(1, last - ring.length + 1);
+  }
+
+  /**
+   * Events after a sequence, oldest first.
+   *
+   * @param after last sequence seen, 0 for everything kept
+   * @param limit max number of events returned
+   * @return the events, or null when some of them are no longer kept or the sequence is unknown
+   */
+  public synchronized List<RegistryEvent> getEvents(long after, int limit) {
+    if (after < getFirstSequence() - 1 || after > last) {
+      return null;
+    }
+    long to = Math.min(last, after + limit);
+    List<RegistryEvent> ret = new ArrayList<>((int) Math.max(0, to - after));
+    for (long seq = after + 1; seq <= to; seq++) {
+      ret.add(ring[(int) (seq % ring.length)]);
+    }
+    return ret;
+  }
+
+  /**
+   * Wait until an event after the given sequence is appended.
+   *
+   * @return the last sequence
+   */
+  public synchronized long await(long after, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (last <= after) {
+      long left = deadline - System.nanoTime();
+      if (left <= 0) {
+        break;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, left);
+    }
+    return last;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Recent snapshots of the registry cache, to answer what was registered at some point in time.
+ *
+ * <p>A snapshot is kept at most every {@code interval} milliseconds, so an answer may be up to one
+ * interval late. As snapshots share every untouched service with each other, keeping one only
+ * costs the services replaced until the next one is kept. That cost is estimated from the {@link
+ * RegistryIndex} sizes, and the oldest snapshots are dropped once older than the retention or
+ * costing more than the budget.
+ */
+public final class RegistryHistory {
+  /** time a query is made for, set by the web layer for the duration of a request */
+  private static final ThreadLocal<Long> QUERY_TIME = new ThreadLocal<>();
+
+  private final long interval;
+
+  private final long retention;
+
+  private final long maxBytes;
+
+  /** Map<time kept, Point> */
+  private final ConcurrentSkipListMap<Long, Point> points = new ConcurrentSkipListMap<>();
+
+  /** bytes replaced since the last kept snapshot, only touched by the writer */
+  private long pendingBytes;
+
+  private volatile long totalBytes;
+
+  /** when the current snapshot was published */
+  private volatile long lastPublished;
+
+  /**
+   * @param interval minimum milliseconds between two kept snapshots
+   * @param retention milliseconds a snapshot is kept for, 0 to keep none
+   * @param maxBytes estimated bytes all kept snapshots may retain on top of the current one
+   */
+  public RegistryHistory(long interval, long retention, long maxBytes) {
+    this.interval = interval;
+    this.retention = retention;
+    this.maxBytes = maxBytes;
+  }
+
+  /** @return the time of the current request, null for now */
+  public static Long getQueryTime() {
+    return QUERY_TIME.get();
+  }
+
+  /** @param time milliseconds since the epoch, null for now */
+  public static void setQueryTime(Long time) {
+    if (time == null) {
+      QUERY_TIME.remove();
+    } else {
+      QUERY_TIME.set(time);
+    }
+  }
+
+  /**
+   * A snapshot was published. Called by the single writer of the cache.
+   *
+   * @param snapshot the new current snapshot
+   * @param replacedBytes estimated bytes of the services it replaced
+   * @param now publication time
+   */
+  public synchronized void record(RegistrySnapshot snapshot, long replacedBytes, long now) {
+    lastPublished = now;
+    if (retention <= 0) {
+      return;
+    }
+    pendingBytes += replacedBytes;
+    Map.Entry<Long, Point> last = points.lastEntry();
+    if (last == null || now - last.getKey() >= interval) {
+      if (last != null) {
+        // what the previous snapshot retains, now that the next one is kept
+        last.getValue().bytes = pendingBytes;
+        totalBytes += pendingBytes;
+      }
+      pendingBytes = 0;
+      points.put(now, new Point(snapshot));
+    }
+    prune(now);
+  }
+
+  /**
+   * @param time milliseconds since the epoch
+   * @param current the current snapshot, returned for any time since it was published
+   * @return the snapshot at that time, null when older than the history
+   */
+  public RegistrySnapshot get(long time, RegistrySnapshot current) {
+    if (time >= lastPublished) {
+      return current;
+    }
+    Map.Entry<Long, Point> entry = points.floorEntry(time);
+    return entry == null ? null : entry.getValue().snapshot;
+  }
+
+  /** @return time of the oldest kept snapshot, null when there is none */
+  public Long getOldestTime() {
+    Map.Entry<Long, Point> first = points.firstEntry();
+    return first == null ? null : first.getKey();
+  }
+
+  public int size() {
+    return points.size();
+  }
+
+  /** @return estimated bytes retained by the kept snapshots on top of the current one */
+  public long getEstimatedBytes() {
+    return totalBytes + pendingBytes;
+  }
+
+  private void prune(long now) {
+    while (points.size() > 1) {
+      Map.Entry<Long, Point> first = points.firstEntry();
+      if (first.getKey() >= now - retention && totalBytes <= maxBytes) {
+        return;
+      }
+      points.remove(first.getKey());
+      totalBytes -= first.getValue().bytes;
+    }
+    Map.Entry<Long, Point> first = points.firstEntry();
+    if (first != null && first.getKey() < now - retention) {
+      points.clear();
+      totalBytes = 0;
+      pendingBytes = 0;
+    }
+  }
+
+  private static final class Point {
+    private final RegistrySnapshot snapshot;
+
+    /** estimated bytes of the services replaced after this snapshot, 0 while it is the last */
+    private long bytes;
+
+    private Point(RegistrySnapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+  }
+}
@@ -0,0 +1,648 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.admin.common.utils.SyncUtils;
+import org.apache.dubbo.admin.common.utils.Tool;
+import org.apache.dubbo.common.URL;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary indexes over one category of the registry cache.
+ *
+ * <p>The index is immutable and belongs to a {@link RegistrySnapshot}. {@link #update} derives the
+ * next index from the instances of one service, so lookups by application or address only touch
+ * the matching services instead of the whole cache.
+ */
+public final class RegistryIndex {
+  public static final RegistryIndex EMPTY = empty(SearchIndex.NONE);
+
+  /** empty index of the providers, the only category searched by name */
+  static final RegistryIndex SEARCHABLE = empty(SearchIndex.EMPTY);
+
+  /** Map<serviceName, ServiceEntry> what every service contributes to the indexes */
+  private final PersistentHashMap<String, ServiceEntry> services;
+
+  /** Map<interface, Set<serviceName>> every group and version of an interface */
+  private final PersistentHashMap<String, PersistentHashMap<String, Boolean>> interfaceServices;
+
+  /**
+   * Map<interface, digest> sum of the {@link InstanceIds#digest} of every instance of the
+   * interface, so a copy of the instances can be compared without looking at them one by one
+   */
+  private final PersistentHashMap<String, Long> interfaceDigests;
+
+  /** Map<application, Set<serviceName>> */
+  private final PersistentHashMap<String, PersistentHashMap<String, Boolean>> applicationServices;
+
+  /** Map<host:port, Set<serviceName>> */
+  private final PersistentHashMap<String, PersistentHashMap<String, Boolean>> addressServices;
+
+  /** Map<ip or ip:port, Set<serviceName>> */
+  private final PersistentHashMap<String, PersistentHashMap<String, Boolean>> ipServices;
+
+  /** Map<id, serviceName> only holds the instances currently registered */
+  private final PersistentHashMap<String, String> idServices;
+
+  /** Map<application, number of instances> */
+  private final PersistentHashMap<String, Integer> applicationInstances;
+
+  private final int instances;
+
+  /** estimated bytes retained by the instances, see {@link CacheSizes} */
+  private final long bytes;
+
+  /** number of (key, service) pairs in the indexes above */
+  private final long indexEntries;
+
+  /** service names, see {@link #searchServices} */
+  private final SearchIndex serviceSearch;
+
+  private final SearchIndex applicationSearch;
+
+  /** host:port */
+  private final SearchIndex addressSearch;
+
+  /** inverted index over the parameters of every instance */
+  private final InstanceParameters parameters;
+
+  /** applications sorted by name, computed on first use since the index never changes */
+  private volatile List<String> sortedApplications;
+
+  private RegistryIndex(
+      PersistentHashMap<String, ServiceEntry> services,
+      PersistentHashMap<String, PersistentHashMap<String, Boolean>> interfaceServices,
+      PersistentHashMap<String, Long> interfaceDigests,
+      PersistentHashMap<String, PersistentHashMap<String, Boolean>> applicationServices,
+      PersistentHashMap<String, PersistentHashMap<String, Boolean>> addressServices,
+      PersistentHashMap<String, PersistentHashMap<String, Boolean>> ipServices,
+      PersistentHashMap<String, String> idServices,
+      PersistentHashMap<String, Integer> applicationInstances,
+      int instances,
+      long bytes,
+      long indexEntries,
+      SearchIndex serviceSearch,
+      SearchIndex applicationSearch,
+      SearchIndex addressSearch,
+      InstanceParameters parameters) {
+    this.services = services;
+    this.interfaceServices = interfaceServices;
+    this.interfaceDigests = interfaceDigests;
+    this.applicationServices = applicationServices;
+    this.addressServices = addressServices;
+    this.ipServices = ipServices;
+    this.idServices = idServices;
+    this.applicationInstances = applicationInstances;
+    this.instances = instances;
+    this.bytes = bytes;
+    this.indexEntries = indexEntries;
+    this.serviceSearch = serviceSearch;
+    this.applicationSearch = applicationSearch;
+    this.addressSearch = addressSearch;
+    this.parameters = parameters;
+  }
+
+  private static RegistryIndex empty(SearchIndex search) {
+    return new RegistryIndex(
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        0,
+        0L,
+        0L,
+        search,
+        search,
+        search,
+        InstanceParameters.EMPTY);
+  }
+
+  /** @return the empty index of a category, only the providers are searchable by name */
+  static RegistryIndex empty(String category) {
+    return Constants.PROVIDERS_CATEGORY.equals(category) ? SEARCHABLE : EMPTY;
+  }
+
+  /**
+   * Replace everything indexed for a service with the given instances.
+   *
+   * @param service service key
+   * @param urls current instances of the service, null or empty when it is gone
+   * @return the updated index
+   */
+  public RegistryIndex update(String service, Map<String, URL> urls) {
+    return update(service, urls, urls == null ? 0L : CacheSizes.estimate(urls));
+  }
+
+  /**
+   * Replace everything indexed for a service with the given instances.
+   *
+   * @param service service key
+   * @param urls current instances of the service, null or empty when it is gone
+   * @param bytes estimated bytes the stored instances retain
+   * @return the updated index
+   */
+  public RegistryIndex update(String service, Map<String, URL> urls, long bytes) {
+    ServiceEntry old = services.get(service);
+    if (old == null) {
+      old = ServiceEntry.EMPTY;
+    }
+    if ((urls == null || urls.isEmpty()) && old == ServiceEntry.EMPTY) {
+      return this;
+    }
+    // an id is the hash of its URL, so an instance keeping its id is left as it is indexed
+    InstanceParameters.Editor parameterEditor = parameters.edit();
+    for (Map.Entry<String, Integer> ordinal : old.ordinals.entrySet()) {
+      if (urls == null || !urls.containsKey(ordinal.getKey())) {
+        parameterEditor.remove(ordinal.getValue());
+      }
+    }
+    ServiceEntry entry;
+    PersistentHashMap<String, ServiceEntry> newServices;
+    if (urls == null || urls.isEmpty()) {
+      entry = ServiceEntry.EMPTY;
+      newServices = services.minus(service);
+    } else {
+      Map<String, Integer> ordinals = new HashMap<>(urls.size() * 4 / 3 + 1);
+      for (Map.Entry<String, URL> url : urls.entrySet()) {
+        Integer ordinal = old.ordinals.get(url.getKey());
+        ordinals.put(
+            url.getKey(),
+            ordinal != null ? ordinal : parameterEditor.add(service, url.getKey(), url.getValue()));
+      }
+      entry = new ServiceEntry(urls, bytes, ordinals);
+      newServices = services.plus(service, entry);
+    }
+    InstanceParameters newParameters = parameterEditor.build();
+    String interfaceName = Tool.getInterface(service);
+    Set<String> interfaces = Collections.singleton(interfaceName);
+    PersistentHashMap<String, PersistentHashMap<String, Boolean>> newInterfaceServices =
+        reindex(
+            interfaceServices,
+            service,
+            old == ServiceEntry.EMPTY ? Collections.emptySet() : interfaces,
+            entry == ServiceEntry.EMPTY ? Collections.emptySet() : interfaces);
+    PersistentHashMap<String, Long> newInterfaceDigests;
+    if (newInterfaceServices.containsKey(interfaceName)) {
+      newInterfaceDigests =
+          interfaceDigests.plus(
+              interfaceName, getInterfaceDigest(interfaceName) - old.digest + entry.digest);
+    } else {
+      newInterfaceDigests = interfaceDigests.minus(interfaceName);
+    }
+    PersistentHashMap<String, PersistentHashMap<String, Boolean>> newApplicationServices =
+        reindex(
+            applicationServices, service, old.applications.keySet(), entry.applications.keySet());
+    PersistentHashMap<String, PersistentHashMap<String, Boolean>> newAddressServices =
+        reindex(addressServices, service, old.addresses, entry.addresses);
+    SearchIndex newServiceSearch =
+        entry == ServiceEntry.EMPTY ? serviceSearch.minus(service) : serviceSearch.plus(service);
+    SearchIndex newApplicationSearch =
+        research(
+            applicationSearch,
+            newApplicationServices,
+            old.applications.keySet(),
+            entry.applications.keySet());
+    SearchIndex newAddressSearch =
+        research(addressSearch, newAddressServices, old.addresses, entry.addresses);
+    return new RegistryIndex(
+        newServices,
+        newInterfaceServices,
+        newInterfaceDigests,
+        newApplicationServices,
+        newAddressServices,
+        reindex(ipServices, service, old.ips, entry.ips),
+        reindexIds(idServices, service, old.ids, entry.ids),
+        recount(applicationInstances, old.applicationInstances, entry.applicationInstances),
+        instances - old.instances + entry.instances,
+        this.bytes - old.bytes + entry.bytes,
+        indexEntries
+            - old.indexEntries()
+            + entry.indexEntries()
+            - searchEntries()
+            + newServiceSearch.indexEntries()
+            + newApplicationSearch.indexEntries()
+            + newAddressSearch.indexEntries()
+            - parameters.indexEntries()
+            + newParameters.indexEntries(),
+        newServiceSearch,
+        newApplicationSearch,
+        newAddressSearch,
+        newParameters);
+  }
+
+  public RegistryIndex remove(String service) {
+    return update(service, null);
+  }
+
+  /** @return number of services */
+  public int getServiceCount() {
+    return services.size();
+  }
+
+  /** @return number of instances of every service */
+  public int getInstanceCount() {
+    return instances;
+  }
+
+  /** @return number of instances of a service */
+  public int getInstanceCount(String service) {
+    ServiceEntry entry = services.get(service);
+    return entry == null ? 0 : entry.instances;
+  }
+
+  /** @return number of instances of an application, over every service */
+  public int getInstanceCountByApplication(String application) {
+    Integer count = application == null ? null : applicationInstances.get(application);
+    return count == null ? 0 : count;
+  }
+
+  /** @return estimated bytes retained by the instances of every service */
+  public long getEstimatedBytes() {
+    return bytes;
+  }
+
+  /** @return estimated bytes retained by the instances of a service */
+  public long getEstimatedBytes(String service) {
+    ServiceEntry entry = services.get(service);
+    return entry == null ? 0L : entry.bytes;
+  }
+
+  /** @return estimated bytes retained by this index */
+  public long getEstimatedIndexBytes() {
+    return (services.size() + indexEntries) * CacheSizes.PERSISTENT_MAP_ENTRY;
+  }
+
+  public Set<String> getApplications() {
+    return applicationServices.keySet();
+  }
+
+  /** @return every application, sorted by name */
+  public List<String> getSortedApplications() {
+    List<String> ret = sortedApplications;
+    if (ret == null) {
+      List<String> sorted = new ArrayList<>(applicationServices.keySet());
+      Collections.sort(sorted);
+      ret = Collections.unmodifiableList(sorted);
+      sortedApplications = ret;
+    }
+    return ret;
+  }
+
+  public Set<String> getAddresses() {
+    return addressServices.keySet();
+  }
+
+  /**
+   * Every group and version of an interface.
+   *
+   * @param interfaceName interface name, as {@link Tool#getInterface(String)}
+   * @return service keys
+   */
+  public Set<String> getServicesByInterface(String interfaceName) {
+    return lookup(interfaceServices, interfaceName);
+  }
+
+  public Set<String> getInterfaces() {
+    return interfaceServices.keySet();
+  }
+
+  /**
+   * Digest of every instance of an interface, whatever their group and version.
+   *
+   * @return sum of the {@link InstanceIds#digest} of the instance ids, 0 for an unknown interface
+   */
+  public long getInterfaceDigest(String interfaceName) {
+    Long digest = interfaceName == null ? null : interfaceDigests.get(interfaceName);
+    return digest == null ? 0L : digest;
+  }
+
+  /** @return sum of the {@link InstanceIds#digest} of the instance ids of a service */
+  public long getDigest(String service) {
+    ServiceEntry entry = services.get(service);
+    return entry == null ? 0L : entry.digest;
+  }
+
+  public Set<String> getServicesByApplication(String application) {
+    return lookup(applicationServices, application);
+  }
+
+  /**
+   * Services registered on an address
+   *
+   * @param address host:port, as {@link URL#getAddress()}
+   * @return service keys
+   */
+  public Set<String> getServicesByAddress(String address) {
+    return lookup(addressServices, address);
+  }
+
+  /**
+   * Services registered on an ip, with the same matching rule as {@link
+   * org.apache.dubbo.admin.common.utils.SyncUtils#ADDRESS_FILTER_KEY}
+   *
+   * @param ip ip or ip:port
+   * @return service keys
+   */
+  public Set<String> getServicesByIp(String ip) {
+    return lookup(ipServices, ip);
+  }
+
+  /**
+   * Service an instance belongs to.
+   *
+   * @param id instance id, see {@link InstanceIds}
+   * @return service key, or null when no such instance is registered
+   */
+  public String getServiceById(String id) {
+    return id == null ? null : idServices.get(id);
+  }
+
+  public Set<String> getApplicationsByService(String service) {
+    ServiceEntry entry = services.get(service);
+    return entry == null
+        ? Collections.emptySet()
+        : Collections.unmodifiableSet(entry.applications.keySet());
+  }
+
+  public List<String> getAddressesByApplication(String application) {
+    List<String> ret = new ArrayList<>();
+    for (String service : getServicesByApplication(application)) {
+      ServiceEntry entry = services.get(service);
+      if (entry != null && entry.applications.containsKey(application)) {
+        ret.addAll(entry.applications.get(application));
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Dubbo version of an application, taken from the {@link Constants#SPECIFICATION_VERSION_KEY}
+   * of any of its instances.
+   *
+   * @param application application name
+   * @return the version, or null when the application is unknown
+   */
+  public String getVersionByApplication(String application) {
+    for (String service : getServicesByApplication(application)) {
+      String version = getVersion(service, application);
+      if (version != null) {
+        return version;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Services with a name matching a glob, without looking at every service.
+   *
+   * @param glob see {@link SearchIndex#search}
+   * @return matching service keys, empty unless this is the index of the providers
+   */
+  public Set<String> searchServices(String glob) {
+    return serviceSearch.search(glob);
+  }
+
+  /** @return applications with a name matching the glob, see {@link #searchServices} */
+  public Set<String> searchApplications(String glob) {
+    return applicationSearch.search(glob);
+  }
+
+  /** @return host:port matching the glob, see {@link #searchServices} */
+  public Set<String> searchAddresses(String glob) {
+    return addressSearch.search(glob);
+  }
+
+  /** @return applications of a service's instances at an address */
+  public Set<String> getApplicationsByAddress(String service, String address) {
+    ServiceEntry entry = services.get(service);
+    if (entry == null) {
+      return Collections.emptySet();
+    }
+    Set<String> ret = new HashSet<>();
+    for (Map.Entry<String, List<String>> application : entry.applications.entrySet()) {
+      if (application.getValue().contains(address)) {
+        ret.add(application.getKey());
+      }
+    }
+    return ret;
+  }
+
+  /** @return inverted index over the parameters of every instance of the category */
+  public InstanceParameters getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Dubbo version of an application's instances of a service.
+   *
+   * @return the version, or null when the application does not provide this service
+   */
+  public String getVersion(String service, String application) {
+    ServiceEntry entry = services.get(service);
+    return entry == null ? null : entry.versions.get(application);
+  }
+
+  private static Set<String> lookup(
+      PersistentHashMap<String, PersistentHashMap<String, Boolean>> index, String key) {
+    if (key == null) {
+      return Collections.emptySet();
+    }
+    PersistentHashMap<String, Boolean> ret = index.get(key);
+    return ret == null ? Collections.emptySet() : ret.keySet();
+  }
+
+  private static PersistentHashMap<String, PersistentHashMap<String, Boolean>> reindex(
+      PersistentHashMap<String, PersistentHashMap<String, Boolean>> index,
+      String service,
+      Set<String> oldKeys,
+      Set<String> newKeys) {
+    for (String key : oldKeys) {
+      if (!newKeys.contains(key)) {
+        PersistentHashMap<String, Boolean> set = index.get(key);
+        if (set != null) {
+          set = set.minus(service);
+          index = set.isEmpty() ? index.minus(key) : index.plus(key, set);
+        }
+      }
+    }
+    for (String key : newKeys) {
+      if (!oldKeys.contains(key)) {
+        PersistentHashMap<String, Boolean> set = index.get(key);
+        if (set == null) {
+          set = PersistentHashMap.empty();
+        }
+        index = index.plus(key, set.plus(service, Boolean.TRUE));
+      }
+    }
+    return index;
+  }
+
+  /** Add the keys no service had before to the search, remove the ones no service has anymore. */
+  private static SearchIndex research(
+      SearchIndex search,
+      PersistentHashMap<String, PersistentHashMap<String, Boolean>> index,
+      Set<String> oldKeys,
+      Set<String> newKeys) {
+    for (String key : oldKeys) {
+      if (!index.containsKey(key)) {
+        search = search.minus(key);
+      }
+    }
+    for (String key : newKeys) {
+      search = search.plus(key);
+    }
+    return search;
+  }
+
+  private long searchEntries() {
+    return serviceSearch.indexEntries()
+        + applicationSearch.indexEntries()
+        + addressSearch.indexEntries();
+  }
+
+  private static PersistentHashMap<String, String> reindexIds(
+      PersistentHashMap<String, String> index,
+      String service,
+      Set<String> oldIds,
+      Set<String> newIds) {
+    for (String id : oldIds) {
+      if (!newIds.contains(id) && service.equals(index.get(id))) {
+        index = index.minus(id);
+      }
+    }
+    for (String id : newIds) {
+      index = index.plus(id, service);
+    }
+    return index;
+  }
+
+  private static PersistentHashMap<String, Integer> recount(
+      PersistentHashMap<String, Integer> counts,
+      Map<String, Integer> oldCounts,
+      Map<String, Integer> newCounts) {
+    for (Map.Entry<String, Integer> entry : oldCounts.entrySet()) {
+      int count = counts.get(entry.getKey()) - entry.getValue();
+      counts = count == 0 ? counts.minus(entry.getKey()) : counts.plus(entry.getKey(), count);
+    }
+    for (Map.Entry<String, Integer> entry : newCounts.entrySet()) {
+      Integer count = counts.get(entry.getKey());
+      counts =
+          counts.plus(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+    }
+    return counts;
+  }
+
+  /** What a single service contributes to the indexes, derived once per notification. */
+  private static final class ServiceEntry {
+    static final ServiceEntry EMPTY =
+        new ServiceEntry(Collections.emptyMap(), 0L, Collections.emptyMap());
+
+    /** Map<application, List<host:port>> one address per instance */
+    final Map<String, List<String>> applications = new HashMap<>();
+
+    /** Map<application, dubbo version> */
+    final Map<String, String> versions = new HashMap<>();
+
+    final Set<String> addresses = new HashSet<>();
+
+    final Set<String> ips = new HashSet<>();
+
+    final Set<String> ids;
+
+    /** Map<application, number of instances> */
+    final Map<String, Integer> applicationInstances = new HashMap<>();
+
+    /** number of instances, an aggregate counts for every instance it stands for */
+    final int instances;
+
+    /** Map<id, ordinal> see {@link InstanceParameters} */
+    final Map<String, Integer> ordinals;
+
+    final long bytes;
+
+    /** sum of the instance id digests */
+    final long digest;
+
+    ServiceEntry(Map<String, URL> urls, long bytes, Map<String, Integer> ordinals) {
+      this.bytes = bytes;
+      this.ordinals = ordinals;
+      ids = new HashSet<>(urls.keySet());
+      long sum = 0;
+      for (String id : ids) {
+        sum += InstanceIds.digest(id);
+      }
+      digest = sum;
+      int count = 0;
+      for (URL url : urls.values()) {
+        int urlInstances = ConsumerAggregates.getInstances(url);
+        count += urlInstances;
+        String application = url.getParameter(Constants.APPLICATION);
+        if (application != null) {
+          applicationInstances.merge(application, urlInstances, Integer::sum);
+          applications
+              .computeIfAbsent(application, k -> new ArrayList<>())
+              .addAll(ConsumerAggregates.getAddresses(url));
+          versions.putIfAbsent(
+              application,
+              url.getParameter(
+                  Constants.SPECIFICATION_VERSION_KEY, Constants.OLD_DUBBO_VERSION));
+        }
+        if (ConsumerAggregates.isAggregate(url)) {
+          // the addresses of the aggregated instances are already resolved
+          for (String address : ConsumerAggregates.getAddresses(url)) {
+            addresses.add(address);
+            String host = ConsumerAggregates.getHost(address);
+            ips.add(host);
+            ips.add(host.equals(address) ? host + SyncUtils.COLON + 0 : address);
+          }
+          continue;
+        }
+        String address = url.getAddress();
+        if (address != null) {
+          addresses.add(address);
+        }
+        String ip = url.getIp();
+        if (ip != null) {
+          ips.add(ip);
+          ips.add(ip + SyncUtils.COLON + url.getPort());
+        }
+      }
+      instances = count;
+    }
+
+    /** @return number of (key, service) pairs this service adds to the indexes */
+    long indexEntries() {
+      if (ids.isEmpty()) {
+        return 0;
+      }
+      // the interface plus every application, address, ip and id
+      return 1L + applications.size() + addresses.size() + ips.size() + ids.size();
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the whole registry cache at one epoch.
+ *
+ * <p>A snapshot is never changed after it is published: every notification builds the next one
+ * through an {@link Editor}, sharing all untouched categories, services and index branches with
+ * its predecessor. Readers holding a snapshot always see a fully applied notification, and the
+ * epoch can be used as a cache key for anything derived from it.
+ */
+public final class RegistrySnapshot {
+  public static final RegistrySnapshot EMPTY =
+      new RegistrySnapshot(
+          0L,
+          PersistentHashMap.empty(),
+          PersistentHashMap.empty(),
+          PersistentHashMap.empty(),
+          PersistentHashMap.empty());
+
+  private static final UrlStorage PLAIN = new PlainUrlStorage();
+
+  private final long epoch;
+
+  /** Map<category, Map<serviceName, Map<id, URL>>> */
+  private final PersistentHashMap<String, PersistentHashMap<String, Map<String, URL>>> categories;
+
+  /** Map<category, RegistryIndex> */
+  private final PersistentHashMap<String, RegistryIndex> indexes;
+
+  /** Map<category, epoch> of the last change to any service of the category */
+  private final PersistentHashMap<String, Long> categoryEpochs;
+
+  /** Map<category, Map<serviceName, epoch>> of the last change to each service present */
+  private final PersistentHashMap<String, PersistentHashMap<String, Long>> serviceEpochs;
+
+  private RegistrySnapshot(
+      long epoch,
+      PersistentHashMap<String, PersistentHashMap<String, Map<String, URL>>> categories,
+      PersistentHashMap<String, RegistryIndex> indexes,
+      PersistentHashMap<String, Long> categoryEpochs,
+      PersistentHashMap<String, PersistentHashMap<String, Long>> serviceEpochs) {
+    this.epoch = epoch;
+    this.categories = categories;
+    this.indexes = indexes;
+    this.categoryEpochs = categoryEpochs;
+    this.serviceEpochs = serviceEpochs;
+  }
+
+  public long getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * @return epoch of the last snapshot that changed a service of the category, 0 when none did;
+   *     anything derived from the category only is valid as long as it stays the same
+   */
+  public long getEpoch(String category) {
+    Long ret = categoryEpochs.get(category);
+    return ret == null ? 0L : ret;
+  }
+
+  /**
+   * @return epoch of the last snapshot that put the service, 0 when it is not there; anything
+   *     derived from the service only is valid as long as it stays the same
+   */
+  public long getEpoch(String category, String service) {
+    PersistentHashMap<String, Long> epochs = serviceEpochs.get(category);
+    Long ret = epochs == null ? null : epochs.get(service);
+    return ret == null ? 0L : ret;
+  }
+
+  /** @return Map<category, Map<serviceName, Map<id, URL>>> */
+  public Map<String, Map<String, Map<String, URL>>> getRegistryCache() {
+    return Collections.unmodifiableMap(categories);
+  }
+
+  /** @return Map<serviceName, Map<id, URL>> of a category, empty when nothing was notified */
+  public Map<String, Map<String, URL>> getServices(String category) {
+    Map<String, Map<String, URL>> services = categories.get(category);
+    return services == null ? Collections.emptyMap() : services;
+  }
+
+  public RegistryIndex getIndex(String category) {
+    RegistryIndex index = indexes.get(category);
+    return index == null ? RegistryIndex.EMPTY : index;
+  }
+
+  public Editor edit() {
+    return edit(PLAIN);
+  }
+
+  /** @param storage how the instances of changed services are stored */
+  public Editor edit(UrlStorage storage) {
+    return new Editor(this, storage);
+  }
+
+  /** Collects the changes of one notification and publishes them as the next snapshot. */
+  public static final class Editor {
+    private final RegistrySnapshot base;
+    private final UrlStorage storage;
+
+    /** Map<category, Set<serviceName>> put or removed through this editor */
+    private final Map<String, Set<String>> changed = new HashMap<>();
+
+    private PersistentHashMap<String, PersistentHashMap<String, Map<String, URL>>> categories;
+    private PersistentHashMap<String, RegistryIndex> indexes;
+
+    private boolean compacted;
+
+    private Editor(RegistrySnapshot base, UrlStorage storage) {
+      this.base = base;
+      this.storage = storage;
+      this.categories = base.categories;
+      this.indexes = base.indexes;
+    }
+
+    public Map<String, Map<String, URL>> getServices(String category) {
+      Map<String, Map<String, URL>> services = categories.get(category);
+      return services == null ? Collections.emptyMap() : services;
+    }
+
+    /**
+     * Bind a service to its complete set of instances.
+     *
+     * @param urls Map<id, URL>, must not be changed afterwards
+     */
+    public Editor put(String category, String service, Map<String, URL> urls) {
+      PersistentHashMap<String, Map<String, URL>> services = categories.get(category);
+      if (services == null) {
+        services = PersistentHashMap.empty();
+      }
+      Map<String, URL> stored = storage.store(urls, services.get(service));
+      changed(category, service);
+      categories = categories.plus(category, services.plus(service, stored));
+      indexes =
+          indexes.plus(category, index(category).update(service, urls, storage.estimate(stored)));
+      return this;
+    }
+
+    public Editor remove(String category, String service) {
+      PersistentHashMap<String, Map<String, URL>> services = categories.get(category);
+      if (services == null || !services.containsKey(service)) {
+        return this;
+      }
+      storage.release(services.get(service));
+      changed(category, service);
+      categories = categories.plus(category, services.minus(service));
+      indexes = indexes.plus(category, index(category).remove(service));
+      return this;
+    }
+
+    /**
+     * Let the storage reclaim space, storing every service again when it asks to. The index is
+     * left alone as the instances themselves do not change.
+     */
+    public Editor compact() {
+      if (!storage.compact()) {
+        return this;
+      }
+      compacted = true;
+      PersistentHashMap<String, PersistentHashMap<String, Map<String, URL>>> compacted = categories;
+      for (Map.Entry<String, PersistentHashMap<String, Map<String, URL>>> category :
+          categories.entrySet()) {
+        PersistentHashMap<String, Map<String, URL>> services = category.getValue();
+        for (Map.Entry<String, Map<String, URL>> service : category.getValue().entrySet()) {
+          services = services.plus(service.getKey(), storage.store(service.getValue(), null));
+        }
+        compacted = compacted.plus(category.getKey(), services);
+      }
+      categories = compacted;
+      return this;
+    }
+
+    /** @return the next snapshot, or the base one when nothing changed */
+    public RegistrySnapshot publish() {
+      if (categories == base.categories) {
+        return base;
+      }
+      long epoch = base.epoch + 1;
+      PersistentHashMap<String, Long> categoryEpochs = base.categoryEpochs;
+      PersistentHashMap<String, PersistentHashMap<String, Long>> serviceEpochs =
+          base.serviceEpochs;
+      for (Map.Entry<String, Set<String>> entry : changed.entrySet()) {
+        String category = entry.getKey();
+        categoryEpochs = categoryEpochs.plus(category, epoch);
+        Map<String, Map<String, URL>> services = getServices(category);
+        PersistentHashMap<String, Long> epochs = serviceEpochs.get(category);
+        if (epochs == null) {
+          epochs = PersistentHashMap.empty();
+        }
+        for (String service : entry.getValue()) {
+          epochs =
+              services.containsKey(service) ? epochs.plus(service, epoch) : epochs.minus(service);
+        }
+        serviceEpochs = serviceEpochs.plus(category, epochs);
+      }
+      return new RegistrySnapshot(epoch, categories, indexes, categoryEpochs, serviceEpochs);
+    }
+
+    /** @return true when {@link #compact()} stored every service again */
+    public boolean isCompacted() {
+      return compacted;
+    }
+
+    /** @return Map<category, Set<serviceName>> of the services put or removed so far */
+    public Map<String, Set<String>> getChangedServices() {
+      return changed;
+    }
+
+    private void changed(String category, String service) {
+      changed.computeIfAbsent(category, k -> new HashSet<>()).add(service);
+    }
+
+    private RegistryIndex index(String category) {
+      RegistryIndex index = indexes.get(category);
+      return index == null ? RegistryIndex.empty(category) : index;
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.dubbo.common.URL;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary file holding a {@link RegistrySnapshot}, so a restarted admin has something to serve
+ * before the registry has notified everything again.
+ *
+ * <p>Layout, all numbers big-endian:
+ *
+ * <pre>
+ * int magic, int version, long epoch
+ * int n, n * (int length, UTF-8 bytes)                  string table
+ * int categories
+ *   int category, int services
+ *     int service, int instances
+ *       int id, int protocol, int username, int password, int host, int port, int path,
+ *       int parameters, parameters * (int key, int value)
+ * </pre>
+ *
+ * where every string is an index into the string table, -1 for null. Each distinct string is only
+ * written once however many URLs share it.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class RegistrySnapshotFile {
+  private static final int MAGIC = 0x44415253;
+
+  private static final int VERSION = 1;
+
+  private static final int NULL = -1;
+
+  /**
+   * Write a snapshot, replacing the file atomically.
+   *
+   * @param snapshot what to write
+   * @param file target file, its directory is created if needed
+   */
+  public static void write(RegistrySnapshot snapshot, Path file) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (OutputStream stream = Files.newOutputStream(tmp)) {
+      write(snapshot, stream);
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Write a snapshot in the file layout to a stream, which is flushed but not closed.
+   *
+   * @param snapshot what to write
+   * @param stream where to write it
+   */
+  public static void write(RegistrySnapshot snapshot, OutputStream stream) throws IOException {
+    Map<String, Map<String, Map<String, URL>>> categories = snapshot.getRegistryCache();
+    StringTable strings = new StringTable();
+    // first pass only collects the strings, so the table can come first
+    visit(categories, strings, null);
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(snapshot.getEpoch());
+    out.writeInt(strings.values.size());
+    for (String value : strings.values) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+    visit(categories, strings, out);
+    out.flush();
+  }
+
+  /**
+   * Read a snapshot file into an editor, which is not published.
+   *
+   * @param file a file written by {@link #write}
+   * @param editor where the services are put
+   * @return the epoch the file was written at
+   * @throws IOException when the file can not be read or is not a snapshot file
+   */
+  public static long read(Path file, RegistrySnapshot.Editor editor) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    return read(buffer, editor, file.toString());
+  }
+
+  /**
+   * Read a snapshot written by {@link #write(RegistrySnapshot, OutputStream)} into an editor, which
+   * is not published.
+   *
+   * @param bytes the written snapshot
+   * @param editor where the services are put
+   * @return the epoch the snapshot was written at
+   * @throws IOException when the bytes are not a snapshot
+   */
+  public static long read(byte[] bytes, RegistrySnapshot.Editor editor) throws IOException {
+    return read(ByteBuffer.wrap(bytes), editor, "stream");
+  }
+
+  private static long read(ByteBuffer buffer, RegistrySnapshot.Editor editor, String file)
+      throws IOException {
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not a registry snapshot file: " + file);
+      }
+      long epoch = buffer.getLong();
+      String[] strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      int categoryCount = buffer.getInt();
+      for (int c = 0; c < categoryCount; c++) {
+        String category = string(strings, buffer);
+        int serviceCount = buffer.getInt();
+        for (int s = 0; s < serviceCount; s++) {
+          String service = string(strings, buffer);
+          int instanceCount = buffer.getInt();
+          Map<String, URL> urls = new HashMap<>(instanceCount * 4 / 3 + 1);
+          for (int i = 0; i < instanceCount; i++) {
+            urls.put(string(strings, buffer), readUrl(strings, buffer));
+          }
+          editor.put(category, service, urls);
+        }
+      }
+      return epoch;
+    } catch (RuntimeException e) {
+      // BufferUnderflowException, IndexOutOfBoundsException... of a truncated or corrupt file
+      throw new IOException("Corrupt registry snapshot file: " + file, e);
+    }
+  }
+
+  private static URL readUrl(String[] strings, ByteBuffer buffer) {
+    String protocol = string(strings, buffer);
+    String username = string(strings, buffer);
+    String password = string(strings, buffer);
+    String host = string(strings, buffer);
+    int port = buffer.getInt();
+    String path = string(strings, buffer);
+    int parameterCount = buffer.getInt();
+    Map<String, String> parameters = new HashMap<>(parameterCount * 4 / 3 + 1);
+    for (int i = 0; i < parameterCount; i++) {
+      parameters.put(string(strings, buffer), string(strings, buffer));
+    }
+    return new URL(protocol, username, password, host, port, path, parameters);
+  }
+
+  private static String string(String[] strings, ByteBuffer buffer) {
+    int index = buffer.getInt();
+    return index == NULL ? null : strings[index];
+  }
+
+  /** Walk the cache, writing it when {@code out} is set, collecting strings otherwise. */
+  private static void visit(
+      Map<String, Map<String, Map<String, URL>>> categories,
+      StringTable strings,
+      DataOutputStream out)
+      throws IOException {
+    Writer writer = new Writer(strings, out);
+    writer.writeInt(categories.size());
+    for (Map.Entry<String, Map<String, Map<String, URL>>> category : categories.entrySet()) {
+      writer.writeString(category.getKey());
+      writer.writeInt(category.getValue().size());
+      for (Map.Entry<String, Map<String, URL>> service : category.getValue().entrySet()) {
+        writer.writeString(service.getKey());
+        writer.writeInt(service.getValue().size());
+        for (Map.Entry<String, URL> instance : service.getValue().entrySet()) {
+          writer.writeString(instance.getKey());
+          writer.writeUrl(instance.getValue());
+        }
+      }
+    }
+  }
+
+  private static final class StringTable {
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    private int index(String value) {
+      if (value == null) {
+        return NULL;
+      }
+      Integer index = indexes.get(value);
+      if (index == null) {
+        index = values.size();
+        values.add(value);
+        indexes.put(value, index);
+      }
+      return index;
+    }
+  }
+
+  private static final class Writer {
+    private final StringTable strings;
+    private final DataOutputStream out;
+
+    private Writer(StringTable strings, DataOutputStream out) {
+      this.strings = strings;
+      this.out = out;
+    }
+
+    private void writeInt(int value) throws IOException {
+      if (out != null) {
+        out.writeInt(value);
+      }
+    }
+
+    private void writeString(String value) throws IOException {
+      writeInt(strings.index(value));
+    }
+
+    private void writeUrl(URL url) throws IOException {
+      writeString(url.getProtocol());
+      writeString(url.getUsername());
+      writeString(url.getPassword());
+      writeString(url.getHost());
+      writeInt(url.getPort());
+      writeString(url.getPath());
+      Map<String, String> parameters = url.getParameters();
+      writeInt(parameters.size());
+      for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+        writeString(parameter.getKey());
+        writeString(parameter.getValue());
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.admin.common.exception.ConfigurationException;
+import org.apache.dubbo.registry.Registry;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registries federated with the main one into a single cache.
+ *
+ * <p>Every instance notified by a federated registry is tagged with the name of its source in
+ * {@link #SOURCE_KEY}, and so are the instances of the main registry, under {@code
+ * admin.registry.name}, as soon as there is any federated registry.
+ */
+public final class RegistrySources {
+  public static final String SOURCE_KEY = "registry.source";
+
+  public static final RegistrySources NONE = new RegistrySources(Collections.emptyMap());
+
+  /** Map<name, Registry> */
+  private final Map<String, Registry> registries;
+
+  public RegistrySources(Map<String, Registry> registries) {
+    this.registries = Collections.unmodifiableMap(new LinkedHashMap<>(registries));
+  }
+
+  /** @return Map<name, Registry> */
+  public Map<String, Registry> getRegistries() {
+    return registries;
+  }
+
+  public boolean isEmpty() {
+    return registries.isEmpty();
+  }
+
+  /**
+   * Parse {@code admin.registry.federation}.
+   *
+   * @param config {@code name=address} entries separated by semicolons, as addresses may contain
+   *     commas
+   * @return Map<name, address>
+   */
+  public static Map<String, String> parse(String config) {
+    Map<String, String> ret = new LinkedHashMap<>();
+    if (config == null) {
+      return ret;
+    }
+    for (String entry : config.split(";")) {
+      if (entry.trim().isEmpty()) {
+        continue;
+      }
+      int i = entry.indexOf('=');
+      if (i <= 0 || i == entry.length() - 1) {
+        throw new ConfigurationException(
+            "Federated registry should be name=address, but was: " + entry.trim());
+      }
+      String name = entry.substring(0, i).trim();
+      if (ret.put(name, entry.substring(i + 1).trim()) != null) {
+        throw new ConfigurationException("Duplicated federated registry: " + name);
+      }
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable index of names for glob searches, such as {@code com.foo.*} or {@code *Demo?ervice}.
+ *
+ * <p>Every name is indexed under the trigrams of its lower case form framed by a begin and an end
+ * mark, plus the begin mark followed by its first character. The literal parts of a glob give the
+ * n-grams every match contains: the part before the first wildcard is a prefix, its n-grams begin
+ * with the mark so they only hit names starting with it, the other parts give infix trigrams. Only
+ * the names in all of their postings are matched against the glob. A glob starting with a wildcard
+ * and no literal part of 3 characters has to look at every name.
+ *
+ * <p>Like the regex search it replaces, a glob matches names starting with it and ignores case.
+ */
+public final class SearchIndex {
+  /** nothing indexed, names are added one by one */
+  static final SearchIndex EMPTY =
+      new SearchIndex(PersistentHashMap.empty(), PersistentHashMap.empty(), 0L, true);
+
+  /** never indexes anything, for the categories nobody searches */
+  static final SearchIndex NONE =
+      new SearchIndex(PersistentHashMap.empty(), PersistentHashMap.empty(), 0L, false);
+
+  private static final char BEGIN = '\u0002';
+
+  private static final char END = '\u0003';
+
+  private static final int GRAM = 3;
+
+  /** Map<n-gram, Set<name>> */
+  private final PersistentHashMap<String, PersistentHashMap<String, Boolean>> grams;
+
+  private final PersistentHashMap<String, Boolean> names;
+
+  /** number of (n-gram, name) pairs */
+  private final long entries;
+
+  private final boolean enabled;
+
+  private SearchIndex(
+      PersistentHashMap<String, PersistentHashMap<String, Boolean>> grams,
+      PersistentHashMap<String, Boolean> names,
+      long entries,
+      boolean enabled) {
+    this.grams = grams;
+    this.names = names;
+    this.entries = entries;
+    this.enabled = enabled;
+  }
+
+  /** @return the index with the name, or this index when it is there already */
+  SearchIndex plus(String name) {
+    if (!enabled || names.containsKey(name)) {
+      return this;
+    }
+    PersistentHashMap<String, PersistentHashMap<String, Boolean>> newGrams = grams;
+    Set<String> nameGrams = grams(name);
+    for (String gram : nameGrams) {
+      PersistentHashMap<String, Boolean> postings = newGrams.get(gram);
+      if (postings == null) {
+        postings = PersistentHashMap.empty();
+      }
+      newGrams = newGrams.plus(gram, postings.plus(name, Boolean.TRUE));
+    }
+    return new SearchIndex(
+        newGrams, names.plus(name, Boolean.TRUE), entries + nameGrams.size(), true);
+  }
+
+  /** @return the index without the name, or this index when it is not there */
+  SearchIndex minus(String name) {
+    if (!names.containsKey(name)) {
+      return this;
+    }
+    PersistentHashMap<String, PersistentHashMap<String, Boolean>> newGrams = grams;
+    Set<String> nameGrams = grams(name);
+    for (String gram : nameGrams) {
+      PersistentHashMap<String, Boolean> postings = newGrams.get(gram);
+      if (postings != null) {
+        postings = postings.minus(name);
+        newGrams = postings.isEmpty() ? newGrams.minus(gram) : newGrams.plus(gram, postings);
+      }
+    }
+    return new SearchIndex(newGrams, names.minus(name), entries - nameGrams.size(), true);
+  }
+
+  /**
+   * @param glob {@code *} for any characters, {@code ?} for one
+   * @return the names starting with a match of the glob, sorted
+   */
+  public Set<String> search(String glob) {
+    if (glob == null || glob.isEmpty() || names.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Pattern pattern = compile(glob);
+    Set<String> ret = new TreeSet<>();
+    for (String name : candidates(glob.toLowerCase(Locale.ROOT))) {
+      Matcher matcher = pattern.matcher(name);
+      if (matcher.lookingAt()) {
+        ret.add(name);
+      }
+    }
+    return ret;
+  }
+
+  /** @return number of indexed names */
+  public int size() {
+    return names.size();
+  }
+
+  /** @return number of (n-gram, name) pairs */
+  long indexEntries() {
+    return entries;
+  }
+
+  private Set<String> candidates(String glob) {
+    List<PersistentHashMap<String, Boolean>> postings = new ArrayList<>();
+    for (String gram : queryGrams(glob)) {
+      PersistentHashMap<String, Boolean> gramNames = grams.get(gram);
+      if (gramNames == null) {
+        return Collections.emptySet();
+      }
+      postings.add(gramNames);
+    }
+    if (postings.isEmpty()) {
+      return names.keySet();
+    }
+    postings.sort(Comparator.comparingInt(PersistentHashMap::size));
+    Set<String> ret = new LinkedHashSet<>();
+    for (String name : postings.get(0).keySet()) {
+      boolean all = true;
+      for (int i = 1; i < postings.size() && all; i++) {
+        all = postings.get(i).containsKey(name);
+      }
+      if (all) {
+        ret.add(name);
+      }
+    }
+    return ret;
+  }
+
+  private static Set<String> grams(String name) {
+    String text = BEGIN + name.toLowerCase(Locale.ROOT) + END;
+    Set<String> ret = new LinkedHashSet<>();
+    ret.add(text.substring(0, 2));
+    for (int i = 0; i + GRAM <= text.length(); i++) {
+      ret.add(text.substring(i, i + GRAM));
+    }
+    return ret;
+  }
+
+  /** @return n-grams every name matching the lower case glob contains */
+  private static Set<String> queryGrams(String glob) {
+    Set<String> ret = new LinkedHashSet<>();
+    StringBuilder literal = new StringBuilder();
+    if (!isWildcard(glob.charAt(0))) {
+      literal.append(BEGIN);
+    }
+    for (int i = 0; i <= glob.length(); i++) {
+      if (i < glob.length() && !isWildcard(glob.charAt(i))) {
+        literal.append(glob.charAt(i));
+        continue;
+      }
+      if (literal.length() >= GRAM) {
+        for (int j = 0; j + GRAM <= literal.length(); j++) {
+          ret.add(literal.substring(j, j + GRAM));
+        }
+      } else if (literal.length() == 2 && literal.charAt(0) == BEGIN) {
+        ret.add(literal.toString());
+      }
+      literal.setLength(0);
+    }
+    return ret;
+  }
+
+  private static boolean isWildcard(char c) {
+    return c == '*' || c == '?';
+  }
+
+  private static Pattern compile(String glob) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (!isWildcard(c)) {
+        literal.append(c);
+        continue;
+      }
+      if (literal.length() > 0) {
+        regex.append(Pattern.quote(literal.toString()));
+        literal.setLength(0);
+      }
+      regex.append(c == '*' ? ".*" : ".");
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+  }
+}
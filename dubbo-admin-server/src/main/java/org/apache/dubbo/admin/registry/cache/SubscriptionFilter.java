@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.admin.common.exception.ConfigurationException;
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.common.URL;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What part of the registry an admin deployment manages.
+ *
+ * <p>The categories are part of the subscription, so the registry does not even send the others.
+ * Interfaces are filtered when notified, before anything is parsed or cached: deny prefixes win
+ * over allow prefixes, and no allow prefix means every interface.
+ */
+public final class SubscriptionFilter {
+  public static final List<String> ALL_CATEGORIES =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              Constants.PROVIDERS_CATEGORY,
+              Constants.CONSUMERS_CATEGORY,
+              Constants.ROUTERS_CATEGORY,
+              Constants.CONFIGURATORS_CATEGORY));
+
+  public static final SubscriptionFilter ALL =
+      new SubscriptionFilter(ALL_CATEGORIES, Collections.emptyList(), Collections.emptyList());
+
+  private final Set<String> categories;
+
+  private final List<String> includes;
+
+  private final List<String> excludes;
+
+  public SubscriptionFilter(
+      Collection<String> categories, List<String> includes, List<String> excludes) {
+    for (String category : categories) {
+      if (!ALL_CATEGORIES.contains(category)) {
+        throw new ConfigurationException(
+            "Unknown registry category: " + category + ", expecting one of " + ALL_CATEGORIES);
+      }
+    }
+    if (categories.isEmpty()) {
+      throw new ConfigurationException("At least one registry category has to be subscribed");
+    }
+    this.categories = Collections.unmodifiableSet(new LinkedHashSet<>(categories));
+    this.includes = Collections.unmodifiableList(new ArrayList<>(includes));
+    this.excludes = Collections.unmodifiableList(new ArrayList<>(excludes));
+  }
+
+  /**
+   * @param categories comma separated categories, empty for all
+   * @param includes comma separated interface prefixes to keep, empty for all
+   * @param excludes comma separated interface prefixes to skip
+   */
+  public static SubscriptionFilter parse(String categories, String includes, String excludes) {
+    List<String> categoryList = split(categories);
+    return new SubscriptionFilter(
+        categoryList.isEmpty() ? ALL_CATEGORIES : categoryList, split(includes), split(excludes));
+  }
+
+  /** @return categories to subscribe, as the value of {@link Constants#CATEGORY_KEY} */
+  public String getCategoryParameter() {
+    return String.join(",", categories);
+  }
+
+  public Set<String> getCategories() {
+    return categories;
+  }
+
+  public boolean acceptInterface(String interfaceName) {
+    if (interfaceName == null) {
+      return includes.isEmpty();
+    }
+    for (String prefix : excludes) {
+      if (interfaceName.startsWith(prefix)) {
+        return false;
+      }
+    }
+    if (includes.isEmpty()) {
+      return true;
+    }
+    for (String prefix : includes) {
+      if (interfaceName.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean accept(URL url) {
+    return categories.contains(
+            url.getParameter(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY))
+        && acceptInterface(url.getServiceInterface());
+  }
+
+  /** @return true when every URL is accepted */
+  public boolean isAll() {
+    return categories.size() == ALL_CATEGORIES.size() && includes.isEmpty() && excludes.isEmpty();
+  }
+
+  private static List<String> split(String value) {
+    List<String> ret = new ArrayList<>();
+    if (value != null) {
+      for (String item : value.split(",")) {
+        if (!item.trim().isEmpty()) {
+          ret.add(item.trim());
+        }
+      }
+    }
+    return ret;
+  }
+}
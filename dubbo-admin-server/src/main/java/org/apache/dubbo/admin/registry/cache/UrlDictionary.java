@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared string table of URL parts and parameters.
+ *
+ * <p>Every distinct string gets an int code, and references are counted so the owner knows how
+ * much of the table is garbage. Codes are never reused: a record encoded against this dictionary
+ * stays decodable for as long as it is reachable, even after it was released. Lookups are lock
+ * free, writes are serialized.
+ */
+final class UrlDictionary {
+  static final int NULL = -1;
+
+  /** a boxed code, as kept in {@link #codes} */
+  private static final int INTEGER = 16;
+
+  private final Map<String, Integer> codes = new HashMap<>();
+
+  private volatile String[] strings = new String[1024];
+
+  private int[] references = new int[1024];
+
+  private int size;
+
+  private int garbage;
+
+  /** estimated bytes of the strings and of their boxed codes */
+  private long bytes;
+
+  synchronized int acquire(String value) {
+    if (value == null) {
+      return NULL;
+    }
+    Integer code = codes.get(value);
+    if (code == null) {
+      code = size++;
+      if (code == references.length) {
+        references = Arrays.copyOf(references, code * 2);
+        strings = Arrays.copyOf(strings, code * 2);
+      }
+      strings[code] = value;
+      codes.put(value, code);
+      bytes += CacheSizes.estimate(value) + INTEGER;
+    } else if (references[code] == 0) {
+      garbage--;
+    }
+    references[code]++;
+    return code;
+  }
+
+  synchronized void release(int code) {
+    if (code != NULL && --references[code] == 0) {
+      garbage++;
+    }
+  }
+
+  String get(int code) {
+    return code == NULL ? null : strings[code];
+  }
+
+  /** @return number of distinct strings */
+  synchronized int size() {
+    return size;
+  }
+
+  /** @return estimated bytes retained by the dictionary, see {@link CacheSizes} */
+  synchronized long bytes() {
+    // strings and references are both sized by their capacity
+    return bytes
+        + CacheSizes.estimateMap(size)
+        + 2 * (CacheSizes.ARRAY_HEADER + (long) references.length * CacheSizes.REFERENCE);
+  }
+
+  /** @return number of strings no stored record refers to any more */
+  synchronized int garbage() {
+    return garbage;
+  }
+}
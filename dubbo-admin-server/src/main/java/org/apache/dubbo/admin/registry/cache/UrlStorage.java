@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.admin.common.exception.ConfigurationException;
+import org.apache.dubbo.common.URL;
+
+import java.util.Map;
+
+/**
+ * How the instances of a service are kept in the registry cache.
+ *
+ * <p>Selected with {@code admin.registry.cache.storage}:
+ *
+ * <ul>
+ *   <li>{@code plain} keeps the notified {@link URL} objects, see {@link PlainUrlStorage}
+ *   <li>{@code compact} dictionary-encodes them, see {@link CompactUrlStorage}
+ *   <li>{@code offheap} serializes them out of the heap, see {@link OffHeapUrlStorage}
+ * </ul>
+ */
+public interface UrlStorage {
+  String PLAIN = "plain";
+
+  String COMPACT = "compact";
+
+  String OFF_HEAP = "offheap";
+
+  /**
+   * Turn the notified instances of a service into the map kept in the cache.
+   *
+   * @param urls Map<id, URL> as notified
+   * @param previous what was stored for the service before, or null
+   * @return read-only Map<id, URL>
+   */
+  Map<String, URL> store(Map<String, URL> urls, Map<String, URL> previous);
+
+  /**
+   * A stored map was dropped from the cache.
+   *
+   * @param stored a map returned by {@link #store}
+   */
+  void release(Map<String, URL> stored);
+
+  /**
+   * Give the storage a chance to reclaim space once a notification is applied.
+   *
+   * @return true when every stored map has to go through {@link #store} again
+   */
+  boolean compact();
+
+  /**
+   * @param stored a map returned by {@link #store}
+   * @return estimated bytes retained by the map, see {@link CacheSizes}
+   */
+  long estimate(Map<String, URL> stored);
+
+  /** @return estimated bytes retained by the storage itself, shared by every stored map */
+  long getSharedBytes();
+
+  static UrlStorage newInstance(String mode) {
+    if (mode == null || PLAIN.equals(mode)) {
+      return new PlainUrlStorage();
+    }
+    if (COMPACT.equals(mode)) {
+      return new CompactUrlStorage();
+    }
+    if (OFF_HEAP.equals(mode)) {
+      return new OffHeapUrlStorage();
+    }
+    throw new ConfigurationException("Unknown registry cache storage: " + mode);
+  }
+}
@@ -44,4 +44,7 @@ public interface GovernanceConfiguration {
   String getPath(String key);
 
   String getPath(String group, String key);
+
+  /** Release the client, once the environment it serves is no longer used. */
+  default void destroy() {}
 }
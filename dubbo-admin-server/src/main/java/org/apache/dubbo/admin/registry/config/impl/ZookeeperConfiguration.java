@@ -43,6 +43,11 @@ public class ZookeeperConfiguration implements GovernanceConfiguration {
     this.url = url;
   }
 
+  /** @return the client, shared with what coordinates the admin replicas */
+  public CuratorFramework getZkClient() {
+    return zkClient;
+  }
+
   @Override
   public void init() {
     if (url == null) {
@@ -162,4 +167,11 @@ public class ZookeeperConfiguration implements GovernanceConfiguration {
     }
     return root + Constants.PATH_SEPARATOR;
   }
+
+  @Override
+  public void destroy() {
+    if (zkClient != null) {
+      zkClient.close();
+    }
+  }
 }
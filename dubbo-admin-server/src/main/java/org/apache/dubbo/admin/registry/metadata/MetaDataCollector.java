@@ -34,4 +34,7 @@ public interface MetaDataCollector {
   String getProviderMetaData(MetadataIdentifier key);
 
   String getConsumerMetaData(MetadataIdentifier key);
+
+  /** Release the client, once the environment it serves is no longer used. */
+  default void destroy() {}
 }
@@ -91,4 +91,11 @@ public class ZookeeperMetaDataCollector implements MetaDataCollector {
     }
     return null;
   }
+
+  @Override
+  public void destroy() {
+    if (client != null) {
+      client.close();
+    }
+  }
 }
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.dubbo.admin.config.EnvironmentClients;
+import org.apache.dubbo.admin.registry.config.GovernanceConfiguration;
+import org.apache.dubbo.admin.registry.metadata.MetaDataCollector;
+import org.apache.dubbo.registry.Registry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The environments served under {@code /api/{env}}, each with its own registry, config center,
+ * metadata report and registry cache.
+ *
+ * <p>The environments listed in {@code admin.environments} are configured like the default one,
+ * under {@code admin.env.<name>.}, for example {@code admin.env.prod.registry.address}. Their
+ * clients and cache are started on first use and shut down once unused for {@code
+ * admin.environments.idle-timeout} milliseconds. Any other environment is served by the clients
+ * of the Spring context.
+ *
+ * @author wujunshen
+ */
+@Slf4j
+@Component
+public class AdminEnvironments implements InitializingBean, DisposableBean {
+  /** environment of the current request, set by the web layer */
+  private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+  private static final String PREFIX = "admin.env.";
+
+  private static final long MAX_CHECK_INTERVAL = 60000L;
+
+  /** comma separated environments with clients of their own */
+  @Value("${admin.environments:}")
+  private String environments = "";
+
+  /** milliseconds an environment is kept started without being used, 0 to keep it forever */
+  @Value("${admin.environments.idle-timeout:1800000}")
+  private long idleTimeout = 1800000L;
+
+  @Resource private Environment environment;
+
+  @Resource private AutowireCapableBeanFactory beanFactory;
+
+  @Resource private Registry registry;
+
+  @Resource private GovernanceConfiguration governanceConfiguration;
+
+  @Resource private MetaDataCollector metaDataCollector;
+
+  @Resource private RegistryServerSync registryServerSync;
+
+  @Resource private QueryResultCache queryResultCache;
+
+  private final Set<String> names = new HashSet<>();
+
+  /**
+   * Map<name, Context> of the environments started or starting, whose clients are created outside
+   * of the map so that a slow registry does not block the other environments
+   */
+  private final Map<String, CompletableFuture<Context>> started = new ConcurrentHashMap<>();
+
+  private Context defaultContext;
+
+  private ScheduledExecutorService reaper;
+
+  /** @return the environment of the current request, null outside of one */
+  public static String getCurrent() {
+    return CURRENT.get();
+  }
+
+  /** @param env environment name, null to clear it */
+  public static void setCurrent(String env) {
+    if (env == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(env);
+    }
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    defaultContext =
+        new Context(null, registry, governanceConfiguration, metaDataCollector, registryServerSync);
+    for (String name : environments.split(",")) {
+      if (StringUtils.isNotBlank(name)) {
+        names.add(name.trim());
+      }
+    }
+    if (!names.isEmpty() && idleTimeout > 0) {
+      reaper =
+          Executors.newSingleThreadScheduledExecutor(
+              r -> {
+                Thread thread = new Thread(r, "AdminEnvironmentReaper");
+                thread.setDaemon(true);
+                return thread;
+              });
+      long interval = Math.min(idleTimeout, MAX_CHECK_INTERVAL);
+      reaper.scheduleWithFixedDelay(this::stopIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (reaper != null) {
+      reaper.shutdownNow();
+    }
+    for (String name : started.keySet()) {
+      CompletableFuture<Context> future = started.remove(name);
+      if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+        future.join().stop();
+      }
+    }
+  }
+
+  /** @return the context of the current request's environment */
+  public Context current() {
+    return get(getCurrent());
+  }
+
+  /**
+   * @param env environment name
+   * @return its context, started when it is not yet, or the default one for an unlisted name
+   */
+  public Context get(String env) {
+    if (!hasOwnClients(env)) {
+      return defaultContext;
+    }
+    while (true) {
+      CompletableFuture<Context> future = started.get(env);
+      if (future == null) {
+        CompletableFuture<Context> starting = new CompletableFuture<>();
+        future = started.putIfAbsent(env, starting);
+        if (future == null) {
+          future = starting;
+          try {
+            starting.complete(start(env));
+          } catch (RuntimeException e) {
+            started.remove(env, starting);
+            starting.completeExceptionally(e);
+            throw e;
+          }
+        }
+      }
+      Context context;
+      try {
+        context = future.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+      if (context.use()) {
+        return context;
+      }
+      // stopped as idle meanwhile, start it again
+      started.remove(env, future);
+    }
+  }
+
+  /**
+   * @param env environment name
+   * @return whether it is listed in {@code admin.environments}, rather than served by the default
+   *     clients
+   */
+  public boolean hasOwnClients(String env) {
+    return env != null && names.contains(env);
+  }
+
+  /** @return names of the environments started right now */
+  public Set<String> getStarted() {
+    return started.keySet();
+  }
+
+  private Context start(String name) {
+    log.info("Starting environment {}", name);
+    EnvironmentClients clients = new EnvironmentClients(environment, PREFIX + name + ".");
+    GovernanceConfiguration configuration = clients.createGovernanceConfiguration();
+    Registry envRegistry = clients.createRegistry();
+    MetaDataCollector collector = clients.createMetaDataCollector();
+    RegistryServerSync sync = new RegistryServerSync();
+    beanFactory.autowireBean(sync);
+    sync.useEnvironment(name, envRegistry);
+    sync.afterPropertiesSet();
+    return new Context(name, envRegistry, configuration, collector, sync);
+  }
+
+  /** Stop the environments unused for longer than the idle timeout. */
+  void stopIdle() {
+    long idleSince = System.currentTimeMillis() - idleTimeout;
+    for (Map.Entry<String, CompletableFuture<Context>> entry : started.entrySet()) {
+      CompletableFuture<Context> future = entry.getValue();
+      if (!future.isDone() || future.isCompletedExceptionally()) {
+        continue;
+      }
+      Context context = future.join();
+      if (context.retireIfUnusedSince(idleSince)) {
+        started.remove(entry.getKey(), future);
+        log.info("Stopping environment {}, unused since {}", entry.getKey(), context.lastUsed);
+        context.stop();
+        queryResultCache.invalidate(context);
+      }
+    }
+  }
+
+  /** Clients and registry cache of one environment. */
+  @Getter
+  public static final class Context {
+    /** null for the default environment */
+    private final String name;
+
+    private final Registry registry;
+
+    private final GovernanceConfiguration governanceConfiguration;
+
+    private final MetaDataCollector metaDataCollector;
+
+    private final RegistryServerSync registryServerSync;
+
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    /** whether it was stopped as idle, it is never handed out after that */
+    private boolean retired;
+
+    private Context(
+        String name,
+        Registry registry,
+        GovernanceConfiguration governanceConfiguration,
+        MetaDataCollector metaDataCollector,
+        RegistryServerSync registryServerSync) {
+      this.name = name;
+      this.registry = registry;
+      this.governanceConfiguration = governanceConfiguration;
+      this.metaDataCollector = metaDataCollector;
+      this.registryServerSync = registryServerSync;
+    }
+
+    /** @return whether it can be used, recording the time it is */
+    private synchronized boolean use() {
+      if (retired) {
+        return false;
+      }
+      lastUsed = System.currentTimeMillis();
+      return true;
+    }
+
+    /**
+     * @param idleSince time before which a context is idle
+     * @return whether it just became idle, in which case it is never used again and has to be
+     *     stopped
+     */
+    private synchronized boolean retireIfUnusedSince(long idleSince) {
+      if (retired || lastUsed >= idleSince) {
+        return false;
+      }
+      retired = true;
+      return true;
+    }
+
+    /**
+     * Drop the cache and close the config center and metadata clients. The registry client is
+     * pooled by its Dubbo factory, which reuses it if the environment starts again.
+     */
+    private void stop() {
+      try {
+        registryServerSync.destroy();
+      } catch (RuntimeException e) {
+        log.warn("Failed to stop the registry cache of " + name, e);
+      }
+      governanceConfiguration.destroy();
+      metaDataCollector.destroy();
+    }
+  }
+}
@@ -17,9 +17,11 @@
 package org.apache.dubbo.admin.service;
 
 import org.apache.dubbo.admin.model.domain.Consumer;
+import org.apache.dubbo.admin.model.dto.ConsumerGroupDTO;
 import org.apache.dubbo.metadata.identifier.MetadataIdentifier;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Query service for consumer info
@@ -30,6 +32,32 @@ public interface ConsumerService {
 
   List<Consumer> findByService(String serviceName);
 
+  /**
+   * @param serviceName service key
+   * @param full read every instance from the registries when the cache only holds aggregates
+   * @return consumers of the service, one per application unless full or consumers are cached in
+   *     full
+   */
+  List<Consumer> findByService(String serviceName, boolean full);
+
+  /**
+   * Every consumer instance of many services, like {@link #findByService(String, boolean)} in full.
+   * The services of the same interface are read from the registries at once, different interfaces
+   * concurrently, or all of them from the same snapshot when the cache holds every instance.
+   *
+   * @param serviceNames service keys
+   * @return consumers of each service in the same order
+   */
+  List<CompletableFuture<List<Consumer>>> findAllByServices(List<String> serviceNames);
+
+  /**
+   * Consumers of a service per application, whether the cache keeps them aggregated or not.
+   *
+   * @param serviceName service key
+   * @return one group per application
+   */
+  List<ConsumerGroupDTO> findGroupsByService(String serviceName);
+
   String getConsumerMetadata(MetadataIdentifier consumerIdentifier);
 
   List<Consumer> findAll();
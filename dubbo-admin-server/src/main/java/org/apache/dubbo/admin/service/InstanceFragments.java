@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.admin.common.utils.Pair;
+import org.apache.dubbo.admin.common.utils.SyncUtils;
+import org.apache.dubbo.admin.registry.cache.RegistryHistory;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
+import org.apache.dubbo.common.URL;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON of the {@link org.apache.dubbo.admin.model.domain.Provider}s and {@link
+ * org.apache.dubbo.admin.model.domain.Consumer}s of a service, serialized once and written as is.
+ *
+ * <p>The fragments of a service are built lazily on the first request and tagged with the epoch of
+ * the snapshot they were built from. They are reused as long as the service is not notified again.
+ * Once it is, only the instances with a new id are serialized, as an id always stands for the same
+ * URL.
+ */
+@Component
+public class InstanceFragments implements InitializingBean {
+  private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+  @Resource private AdminEnvironments environments;
+
+  @Resource private ObjectMapper objectMapper;
+
+  /** bytes of JSON kept at most, the least recently used services are dropped first */
+  @Value("${admin.registry.fragments.max-bytes:67108864}")
+  private long maxBytes = 64L * 1024 * 1024;
+
+  /** Map<category/serviceName, ServiceFragments> */
+  private Cache<String, ServiceFragments> fragments;
+
+  @Override
+  public void afterPropertiesSet() {
+    fragments =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, ServiceFragments value) -> value.weight())
+            .build();
+  }
+
+  /**
+   * @param service service key
+   * @return fragments of the providers of the service, empty when there is none
+   */
+  public ServiceFragments getProviders(String service) {
+    return get(Constants.PROVIDERS_CATEGORY, service);
+  }
+
+  /**
+   * @param service service key
+   * @return fragments of the consumers of the service, empty when there is none
+   */
+  public ServiceFragments getConsumers(String service) {
+    return get(Constants.CONSUMERS_CATEGORY, service);
+  }
+
+  /**
+   * Fragments of many services, all read from the same snapshot.
+   *
+   * @param category providers or consumers
+   * @param services service keys
+   * @return the fragments of each service, in the order of the keys
+   */
+  public List<ServiceFragments> getAll(String category, List<String> services) {
+    AdminEnvironments.Context context = environments.current();
+    RegistrySnapshot snapshot =
+        context.getRegistryServerSync().getSnapshot(RegistryHistory.getQueryTime());
+    List<ServiceFragments> ret = new ArrayList<>(services.size());
+    for (String service : services) {
+      ret.add(get(context, snapshot, category, service));
+    }
+    return ret;
+  }
+
+  private ServiceFragments get(String category, String service) {
+    AdminEnvironments.Context context = environments.current();
+    RegistrySnapshot snapshot =
+        context.getRegistryServerSync().getSnapshot(RegistryHistory.getQueryTime());
+    return get(context, snapshot, category, service);
+  }
+
+  private ServiceFragments get(
+      AdminEnvironments.Context context,
+      RegistrySnapshot snapshot,
+      String category,
+      String service) {
+    Map<String, URL> urls = snapshot.getServices(category).get(service);
+    if (urls == null || urls.isEmpty()) {
+      return new ServiceFragments(snapshot.getEpoch(), null, Collections.emptyMap());
+    }
+    String key =
+        String.join(Constants.PATH_SEPARATOR, String.valueOf(context.getName()), category, service);
+    ServiceFragments cached = fragments.getIfPresent(key);
+    // the stored map is only replaced when the service is notified again
+    if (cached != null && cached.urls == urls) {
+      return cached;
+    }
+    Map<String, byte[]> json = new LinkedHashMap<>(urls.size() * 4 / 3 + 1);
+    for (Map.Entry<String, URL> entry : urls.entrySet()) {
+      byte[] bytes = cached == null ? null : cached.json.get(entry.getKey());
+      json.put(entry.getKey(), bytes == null ? serialize(category, entry) : bytes);
+    }
+    ServiceFragments built = new ServiceFragments(snapshot.getEpoch(), urls, json);
+    // a request holding an older snapshot must not replace what a newer one built
+    ServiceFragments kept =
+        fragments.asMap().merge(key, built, (old, now) -> old.epoch > now.epoch ? old : now);
+    return kept.urls == urls ? kept : built;
+  }
+
+  private byte[] serialize(String category, Map.Entry<String, URL> entry) {
+    Pair<String, URL> pair = new Pair<>(entry.getKey(), entry.getValue());
+    try {
+      return objectMapper.writeValueAsBytes(
+          Constants.PROVIDERS_CATEGORY.equals(category)
+              ? SyncUtils.url2Provider(pair)
+              : SyncUtils.url2Consumer(pair));
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Serialized instances of one service, as of one epoch. */
+  public static final class ServiceFragments {
+    private final long epoch;
+
+    /** the stored Map<id, URL> the fragments were built from, null when there is no instance */
+    private final Map<String, URL> urls;
+
+    /** Map<id, JSON> */
+    private final Map<String, byte[]> json;
+
+    private ServiceFragments(long epoch, Map<String, URL> urls, Map<String, byte[]> json) {
+      this.epoch = epoch;
+      this.urls = urls;
+      this.json = json;
+    }
+
+    public long getEpoch() {
+      return epoch;
+    }
+
+    public boolean isEmpty() {
+      return json.isEmpty();
+    }
+
+    /** @return the URL of any instance, null when there is none */
+    public URL getAnyUrl() {
+      return urls == null ? null : urls.values().iterator().next();
+    }
+
+    /** Write the instances as a JSON array. */
+    public void writeTo(OutputStream out) throws IOException {
+      if (json.isEmpty()) {
+        out.write(EMPTY_ARRAY);
+        return;
+      }
+      char separator = '[';
+      for (byte[] bytes : json.values()) {
+        out.write(separator);
+        out.write(bytes);
+        separator = ',';
+      }
+      out.write(']');
+    }
+
+    private int weight() {
+      long weight = 0;
+      for (byte[] bytes : json.values()) {
+        weight += bytes.length;
+      }
+      return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+  }
+}
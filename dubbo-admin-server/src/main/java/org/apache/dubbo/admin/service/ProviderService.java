@@ -18,10 +18,12 @@ package org.apache.dubbo.admin.service;
 
 import org.apache.dubbo.admin.model.domain.Provider;
 import org.apache.dubbo.admin.model.dto.ServiceDTO;
+import org.apache.dubbo.admin.model.dto.ServicePageDTO;
 import org.apache.dubbo.metadata.identifier.MetadataIdentifier;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * ProviderService
@@ -40,6 +42,14 @@ public interface ProviderService {
 
   String getProviderMetaData(MetadataIdentifier providerIdentifier);
 
+  /**
+   * Metadata of many providers, read concurrently.
+   *
+   * @param providerIdentifiers identifiers of the providers
+   * @return the metadata of each provider in the same order, completing with null when none
+   */
+  List<CompletableFuture<String>> getProviderMetaData(List<MetadataIdentifier> providerIdentifiers);
+
   /**
    * Get all provider's service name
    *
@@ -109,4 +119,18 @@ public interface ProviderService {
    * @return a set of services for fore-end page
    */
   Set<ServiceDTO> getServiceDtoList(String pattern, String filter, String env);
+
+  /**
+   * One page of the same services as {@link #getServiceDtoList}, in the same order. Only the
+   * services up to the end of the page are looked at.
+   *
+   * @param pattern {@code String} type of search
+   * @param filter {@code String} input filter string
+   * @param cursor where the previous page ended, null for the first page
+   * @param size number of services in the page
+   * @param count whether to count every matching service as well
+   * @return the page, with the cursor of the next one unless it is the last
+   */
+  ServicePageDTO searchServices(
+      String pattern, String filter, String cursor, int size, boolean count);
 }
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.dubbo.admin.model.dto.ServiceDTO;
+import org.apache.dubbo.admin.model.dto.ServicePageDTO;
+import org.apache.dubbo.admin.registry.cache.RegistryHistory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Results of read-mostly queries over the registry cache, such as the service search of the
+ * dashboards.
+ *
+ * <p>A result is kept with the epoch of what it was computed from, see {@link
+ * org.apache.dubbo.admin.registry.cache.RegistrySnapshot#getEpoch(String)}: it is served as long
+ * as that category or service did not change and computed again as soon as it did, whatever
+ * happened to the rest of the registry. The estimated bytes of the results are bounded, the least
+ * recently used ones are dropped first. Results must not be modified by the callers.
+ */
+@Component
+public class QueryResultCache implements InitializingBean {
+  /** rough bytes of an object and its references, for the types not estimated precisely */
+  private static final int OBJECT = 32;
+
+  @Value("${admin.registry.query-cache.max-bytes:16777216}")
+  private long maxBytes = 16L * 1024 * 1024;
+
+  @Resource private AdminEnvironments environments;
+
+  private Cache<Key, Result> results;
+
+  /** counted here, a result of an older epoch is a miss although the cache has it */
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  @Override
+  public void afterPropertiesSet() {
+    results =
+        CacheBuilder.newBuilder()
+            .maximumWeight(Math.max(maxBytes, 0L))
+            .weigher((Key key, Result value) -> value.weight)
+            .build();
+  }
+
+  /**
+   * @param query name of the query
+   * @param epoch epoch of the category or service the result is derived from
+   * @param loader computes the result, a null one is not cached
+   * @param parameters what else the result depends on
+   * @return the cached result while the epoch is the same, a new one otherwise
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(String query, long epoch, Supplier<T> loader, Object... parameters) {
+    if (maxBytes <= 0 || RegistryHistory.getQueryTime() != null) {
+      // a past snapshot would keep replacing the current result
+      return loader.get();
+    }
+    Key key = new Key(environments.current(), query, parameters);
+    Result cached = results.getIfPresent(key);
+    if (cached != null && cached.epoch == epoch) {
+      hits.increment();
+      return (T) cached.value;
+    }
+    misses.increment();
+    T value = loader.get();
+    if (value == null) {
+      // e.g. metadata not reported yet, it may be there on the next request
+      return null;
+    }
+    Result result = new Result(epoch, value);
+    // a request holding an older snapshot must not replace what a newer one computed
+    results.asMap().merge(key, result, (old, now) -> old.epoch > now.epoch ? old : now);
+    return value;
+  }
+
+  /**
+   * Drop the results of an environment, which is stopped. Started again, it counts its epochs from
+   * scratch.
+   */
+  public void invalidate(AdminEnvironments.Context environment) {
+    results.asMap().keySet().removeIf(key -> key.environment == environment);
+  }
+
+  /** @return number of requests served from the cache */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** @return number of requests computed, because of a new epoch or nothing cached */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** @return number of cached results */
+  public long getSize() {
+    return results.size();
+  }
+
+  static int estimate(Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof String) {
+      return OBJECT + 2 * ((String) value).length();
+    }
+    if (value instanceof byte[]) {
+      return OBJECT + ((byte[]) value).length;
+    }
+    if (value instanceof Collection) {
+      int ret = OBJECT;
+      for (Object element : (Collection<?>) value) {
+        ret += OBJECT + estimate(element);
+      }
+      return ret;
+    }
+    if (value instanceof ServiceDTO) {
+      ServiceDTO service = (ServiceDTO) value;
+      return OBJECT
+          + estimate(service.getAppName())
+          + estimate(service.getService())
+          + estimate(service.getGroup())
+          + estimate(service.getVersion());
+    }
+    if (value instanceof ServicePageDTO) {
+      ServicePageDTO page = (ServicePageDTO) value;
+      return OBJECT + estimate(page.getContent()) + estimate(page.getCursor());
+    }
+    return OBJECT;
+  }
+
+  private static final class Key {
+    /** compared by identity, epochs only go on within one start of an environment */
+    private final AdminEnvironments.Context environment;
+
+    private final String query;
+
+    private final Object[] parameters;
+
+    private final int hash;
+
+    private Key(AdminEnvironments.Context environment, String query, Object[] parameters) {
+      this.environment = environment;
+      this.query = query;
+      this.parameters = parameters;
+      this.hash =
+          Objects.hash(System.identityHashCode(environment), query, Arrays.hashCode(parameters));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return environment == that.environment
+          && query.equals(that.query)
+          && Arrays.equals(parameters, that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static final class Result {
+    private final long epoch;
+
+    private final Object value;
+
+    private final int weight;
+
+    private Result(long epoch, Object value) {
+      this.epoch = epoch;
+      this.value = value;
+      this.weight = estimate(value);
+    }
+  }
+}
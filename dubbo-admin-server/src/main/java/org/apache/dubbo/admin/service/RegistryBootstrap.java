@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.apache.dubbo.registry.Registry;
+import org.apache.zookeeper.KeeperException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * First load of the registry cache, before the wildcard subscription.
+ *
+ * <p>The wildcard subscription delivers interfaces one after another, so the first full view of a
+ * large registry takes minutes. The bootstrap lists the interfaces up front and loads them on a
+ * bounded pool instead; the subscription then only has to catch up with what changed meanwhile.
+ * It runs in the background, the cache is served as stale and its progress reported until it is
+ * done.
+ *
+ * <p>Only Zookeeper registries can list their interfaces, the others are left to the
+ * subscription.
+ */
+@Slf4j
+public class RegistryBootstrap {
+  private static final String ZOOKEEPER = "zookeeper";
+
+  /** milliseconds to connect to a Zookeeper registry for listing it */
+  private static final int CONNECT_TIMEOUT = 10000;
+
+  private final int workers;
+
+  private volatile boolean running;
+
+  private volatile int total;
+
+  private final AtomicInteger loaded = new AtomicInteger();
+
+  private final AtomicInteger failed = new AtomicInteger();
+
+  RegistryBootstrap(int workers) {
+    this.workers = workers;
+  }
+
+  /**
+   * List the interfaces of a Zookeeper registry with a short-lived session of its own, the Dubbo
+   * registry does not expose its client and the transporter may hand out the one it shares.
+   *
+   * @param registry a registry, only listed when it is a Zookeeper registry
+   * @return the interfaces registered, empty when the registry cannot list them
+   */
+  static Set<String> listInterfaces(Registry registry) throws Exception {
+    URL url = registry.getUrl();
+    if (url == null || !ZOOKEEPER.equals(url.getProtocol())) {
+      return Collections.emptySet();
+    }
+    String root = url.getParameter(Constants.GROUP_KEY, "dubbo");
+    if (!root.startsWith(Constants.PATH_SEPARATOR)) {
+      root = Constants.PATH_SEPARATOR + root;
+    }
+    CuratorFrameworkFactory.Builder builder =
+        CuratorFrameworkFactory.builder()
+            .connectString(url.getBackupAddress())
+            .connectionTimeoutMs(CONNECT_TIMEOUT)
+            .retryPolicy(new RetryOneTime(1000));
+    if (StringUtils.isNotEmpty(url.getUsername()) && StringUtils.isNotEmpty(url.getPassword())) {
+      String auth = url.getUsername() + ":" + url.getPassword();
+      builder.authorization("digest", auth.getBytes(StandardCharsets.UTF_8));
+    }
+    List<String> children;
+    try (CuratorFramework client = builder.build()) {
+      client.start();
+      if (!client.blockUntilConnected(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+        throw new IllegalStateException("Can not connect to " + url.getBackupAddress());
+      }
+      children = client.getChildren().forPath(root);
+    } catch (KeeperException.NoNodeException e) {
+      return Collections.emptySet();
+    }
+    Set<String> ret = new TreeSet<>();
+    for (String child : children) {
+      ret.add(URL.decode(child));
+    }
+    return ret;
+  }
+
+  /**
+   * Load every interface, returns once all of them are.
+   *
+   * @param load reads one interface from the registries into the cache
+   */
+  void run(Set<String> interfaces, Consumer<String> load) {
+    total = interfaces.size();
+    loaded.set(0);
+    failed.set(0);
+    running = true;
+    log.info("Bootstrapping registry cache with {} interfaces", total);
+    int step = Math.max(1, total / 10);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(workers, new NamedThreadFactory("RegistryBootstrap", true));
+    try {
+      for (String interfaceName : interfaces) {
+        executor.execute(
+            () -> {
+              try {
+                load.accept(interfaceName);
+              } catch (Exception e) {
+                // the subscription brings it anyway
+                failed.incrementAndGet();
+                log.warn("Failed to bootstrap " + interfaceName, e);
+              }
+              int done = loaded.incrementAndGet();
+              if (done % step == 0) {
+                log.info("Bootstrapped {} of {} interfaces", done, total);
+              }
+            });
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    } finally {
+      running = false;
+    }
+  }
+
+  /** @return true while interfaces are being loaded */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /** @return number of interfaces to load */
+  public int getTotal() {
+    return total;
+  }
+
+  /** @return number of interfaces loaded so far, failed ones included */
+  public int getLoaded() {
+    return loaded.get();
+  }
+
+  /** @return number of interfaces that could not be read */
+  public int getFailed() {
+    return failed.get();
+  }
+}
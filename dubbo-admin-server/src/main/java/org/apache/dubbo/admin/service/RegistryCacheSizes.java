@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import org.apache.dubbo.admin.model.dto.RegistryCacheSizeDTO;
+import org.apache.dubbo.admin.registry.cache.RegistryIndex;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Instance counts and estimated sizes of the registry cache.
+ *
+ * <p>The counts and sizes are kept up to date by every notification in the {@link RegistryIndex}
+ * of each category, reading them costs nothing. They are exposed as JMX gauges as well, so they
+ * can be scraped and alerted on.
+ */
+@Component
+@ManagedResource(
+    objectName = "org.apache.dubbo.admin:type=RegistryCache,name=Sizes",
+    description = "Registry cache sizes, bytes are estimates")
+public class RegistryCacheSizes {
+  @Resource private RegistryServerSync registryServerSync;
+
+  /**
+   * @param top how many of the largest services and applications to list
+   * @return counts and estimated bytes of every category
+   */
+  public RegistryCacheSizeDTO getSizes(int top) {
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    RegistryCacheSizeDTO sizes = new RegistryCacheSizeDTO();
+    sizes.setEpoch(snapshot.getEpoch());
+    sizes.setStorage(registryServerSync.getStorageMode());
+    long storageBytes = registryServerSync.getUrlStorage().getSharedBytes();
+    sizes.setStorageBytes(storageBytes);
+    sizes.setHistorySnapshots(registryServerSync.getHistory().size());
+    sizes.setHistoryBytes(registryServerSync.getHistory().getEstimatedBytes());
+    long totalBytes = storageBytes;
+    for (String category : snapshot.getRegistryCache().keySet()) {
+      RegistryIndex index = snapshot.getIndex(category);
+      RegistryCacheSizeDTO.CategorySize categorySize = new RegistryCacheSizeDTO.CategorySize();
+      categorySize.setCategory(category);
+      categorySize.setServices(index.getServiceCount());
+      categorySize.setInstances(index.getInstanceCount());
+      categorySize.setBytes(index.getEstimatedBytes());
+      categorySize.setIndexBytes(index.getEstimatedIndexBytes());
+      sizes.getCategories().add(categorySize);
+      totalBytes += index.getEstimatedBytes() + index.getEstimatedIndexBytes();
+      if (top > 0) {
+        for (String service : snapshot.getServices(category).keySet()) {
+          RegistryCacheSizeDTO.ServiceSize serviceSize = new RegistryCacheSizeDTO.ServiceSize();
+          serviceSize.setCategory(category);
+          serviceSize.setService(service);
+          serviceSize.setInstances(index.getInstanceCount(service));
+          serviceSize.setBytes(index.getEstimatedBytes(service));
+          sizes.getServices().add(serviceSize);
+        }
+        for (String application : index.getApplications()) {
+          RegistryCacheSizeDTO.ApplicationSize applicationSize =
+              new RegistryCacheSizeDTO.ApplicationSize();
+          applicationSize.setCategory(category);
+          applicationSize.setApplication(application);
+          applicationSize.setInstances(index.getInstanceCountByApplication(application));
+          sizes.getApplications().add(applicationSize);
+        }
+      }
+    }
+    sizes.setTotalBytes(totalBytes);
+    sizes.setServices(
+        top(
+            sizes.getServices(),
+            Comparator.comparingLong(RegistryCacheSizeDTO.ServiceSize::getBytes),
+            top));
+    sizes.setApplications(
+        top(
+            sizes.getApplications(),
+            Comparator.comparingInt(RegistryCacheSizeDTO.ApplicationSize::getInstances),
+            top));
+    return sizes;
+  }
+
+  @ManagedAttribute(description = "Epoch of the published snapshot")
+  public long getEpoch() {
+    return registryServerSync.getSnapshot().getEpoch();
+  }
+
+  @ManagedAttribute(description = "Services of every category")
+  public long getServices() {
+    long services = 0;
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    for (String category : snapshot.getRegistryCache().keySet()) {
+      services += snapshot.getIndex(category).getServiceCount();
+    }
+    return services;
+  }
+
+  @ManagedAttribute(description = "Instances of every category")
+  public long getInstances() {
+    long instances = 0;
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    for (String category : snapshot.getRegistryCache().keySet()) {
+      instances += snapshot.getIndex(category).getInstanceCount();
+    }
+    return instances;
+  }
+
+  @ManagedAttribute(description = "Estimated bytes of the cached instances")
+  public long getInstanceBytes() {
+    long bytes = 0;
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    for (String category : snapshot.getRegistryCache().keySet()) {
+      bytes += snapshot.getIndex(category).getEstimatedBytes();
+    }
+    return bytes;
+  }
+
+  @ManagedAttribute(description = "Estimated bytes of the secondary indexes")
+  public long getIndexBytes() {
+    long bytes = 0;
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    for (String category : snapshot.getRegistryCache().keySet()) {
+      bytes += snapshot.getIndex(category).getEstimatedIndexBytes();
+    }
+    return bytes;
+  }
+
+  @ManagedAttribute(description = "Estimated bytes retained by the URL storage itself")
+  public long getStorageBytes() {
+    return registryServerSync.getUrlStorage().getSharedBytes();
+  }
+
+  @ManagedAttribute(description = "Estimated bytes retained by the kept history snapshots")
+  public long getHistoryBytes() {
+    return registryServerSync.getHistory().getEstimatedBytes();
+  }
+
+  @ManagedAttribute(description = "Estimated bytes of the whole registry cache")
+  public long getTotalBytes() {
+    return getInstanceBytes() + getIndexBytes() + getStorageBytes();
+  }
+
+  private static <T> List<T> top(List<T> list, Comparator<T> comparator, int top) {
+    list.sort(comparator.reversed());
+    return list.size() > top ? list.subList(0, top) : list;
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.admin.common.utils.Tool;
+import org.apache.dubbo.admin.registry.cache.RegistryEvent;
+import org.apache.dubbo.admin.registry.cache.RegistryEventLog;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes the {@link RegistryEvent}s of the registry cache to Server-Sent Events clients.
+ *
+ * <p>Every event is sent with its sequence as SSE id, so a client reconnecting with {@code
+ * Last-Event-ID} only gets what it missed. A client too far behind the event log gets a {@code
+ * reset} event instead and has to reload the current state before watching again.
+ *
+ * <p>One dispatcher reads the event log into a bounded queue per client, which a pool of senders
+ * writes out. A client whose queue is full is too slow to keep up and is disconnected, it can
+ * resume from the last event it got.
+ *
+ * <p>Every client watches the event log of its request's environment. Watching keeps an
+ * environment with clients of its own started, and a client is disconnected when its environment
+ * is restarted anyway, as the sequences of the new event log start over.
+ */
+@Slf4j
+@Component
+public class RegistryEventStream implements InitializingBean, DisposableBean {
+  public static final String CHANGE_EVENT = "change";
+
+  public static final String RESET_EVENT = "reset";
+
+  private static final int BATCH_SIZE = 1000;
+
+  @Resource private AdminEnvironments adminEnvironments;
+
+  @Value("${admin.registry.watch.timeout:1800000}")
+  private long timeout = 1800000L;
+
+  /** events waiting to be sent to one client before it is disconnected */
+  @Value("${admin.registry.watch.queue:1000}")
+  private int queueCapacity = 1000;
+
+  /** threads writing the events out */
+  @Value("${admin.registry.watch.senders:4}")
+  private int senders = 4;
+
+  private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+
+  private ExecutorService dispatcher;
+
+  private ExecutorService sender;
+
+  private volatile boolean running;
+
+  /** event logs the dispatcher listens to, only touched by the dispatcher */
+  private final Set<RegistryEventLog> listened =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private final Runnable listener = this::wakeUp;
+
+  private final Object signal = new Object();
+
+  /** whether events were appended or a client came since the dispatcher last looked */
+  private boolean signalled;
+
+  @Override
+  public void afterPropertiesSet() {
+    running = true;
+    sender =
+        Executors.newFixedThreadPool(senders, new NamedThreadFactory("RegistryWatchSender", true));
+    dispatcher = Executors.newSingleThreadExecutor(new NamedThreadFactory("RegistryWatch", true));
+    dispatcher.execute(this::dispatch);
+  }
+
+  @Override
+  public void destroy() {
+    running = false;
+    dispatcher.shutdownNow();
+    sender.shutdownNow();
+    for (Watch watch : watches) {
+      watch.emitter.complete();
+    }
+    watches.clear();
+  }
+
+  /**
+   * Watch the registry, a service or an application.
+   *
+   * @param env environment of the request
+   * @param service service key or interface name, null for any
+   * @param application application name, null for any
+   * @param lastEventId last sequence the client saw, null to only get changes from now on
+   */
+  public SseEmitter watch(String env, String service, String application, Long lastEventId) {
+    AdminEnvironments.Context context = adminEnvironments.get(env);
+    RegistryEventLog eventLog = context.getRegistryServerSync().getEventLog();
+    long from = lastEventId == null ? eventLog.getLastSequence() : lastEventId;
+    SseEmitter emitter = new SseEmitter(timeout);
+    Watch watch = new Watch(emitter, context, eventLog, service, application, from, queueCapacity);
+    emitter.onCompletion(() -> watches.remove(watch));
+    emitter.onTimeout(() -> watches.remove(watch));
+    watches.add(watch);
+    wakeUp();
+    return emitter;
+  }
+
+  private void dispatch() {
+    while (running) {
+      try {
+        // wake up now and then to notice restarted environments
+        awaitSignal();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      Set<RegistryEventLog> watched = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Watch watch : watches) {
+        if (!isCurrent(watch)) {
+          log.info("Disconnect a registry watch of the restarted environment " + watch.env);
+          watches.remove(watch);
+          watch.closed = true;
+        } else if (!enqueue(watch)) {
+          log.info("Disconnect a registry watch too slow to keep up, at event " + watch.sequence);
+          watches.remove(watch);
+          watch.closed = true;
+        } else {
+          watched.add(watch.eventLog);
+        }
+        if (!watch.pending.isEmpty() || watch.closed) {
+          schedule(watch);
+        }
+      }
+      listen(watched);
+    }
+  }
+
+  /** @return whether the environment of a client still runs the event log it watches */
+  private boolean isCurrent(Watch watch) {
+    if (watch.env == null) {
+      return true;
+    }
+    try {
+      // also keeps the environment from being stopped as idle
+      return adminEnvironments.get(watch.env) == watch.context;
+    } catch (RuntimeException e) {
+      log.warn("Failed to restart the environment " + watch.env, e);
+      return false;
+    }
+  }
+
+  /** Listen to the event logs watched by some client, and only to those. */
+  private void listen(Set<RegistryEventLog> watched) {
+    for (RegistryEventLog eventLog : watched) {
+      if (listened.add(eventLog)) {
+        eventLog.addListener(listener);
+      }
+    }
+    for (Iterator<RegistryEventLog> it = listened.iterator(); it.hasNext(); ) {
+      RegistryEventLog eventLog = it.next();
+      if (!watched.contains(eventLog)) {
+        eventLog.removeListener(listener);
+        it.remove();
+      }
+    }
+  }
+
+  private void wakeUp() {
+    synchronized (signal) {
+      signalled = true;
+      signal.notifyAll();
+    }
+  }
+
+  private void awaitSignal() throws InterruptedException {
+    synchronized (signal) {
+      if (!signalled) {
+        signal.wait(TimeUnit.SECONDS.toMillis(1));
+      }
+      signalled = false;
+    }
+  }
+
+  /** @return false when the client's queue is full */
+  private boolean enqueue(Watch watch) {
+    RegistryEventLog eventLog = watch.eventLog;
+    while (true) {
+      List<RegistryEvent> events = eventLog.getEvents(watch.sequence, BATCH_SIZE);
+      if (events == null) {
+        long last = eventLog.getLastSequence();
+        if (!watch.pending.offer(
+            SseEmitter.event().id(String.valueOf(last)).name(RESET_EVENT).data(last))) {
+          return false;
+        }
+        watch.sequence = last;
+        return true;
+      }
+      if (events.isEmpty()) {
+        return true;
+      }
+      for (RegistryEvent event : events) {
+        if (watch.matches(event)
+            && !watch.pending.offer(
+                SseEmitter.event()
+                    .id(String.valueOf(event.getSequence()))
+                    .name(CHANGE_EVENT)
+                    .data(event, MediaType.APPLICATION_JSON))) {
+          return false;
+        }
+        watch.sequence = event.getSequence();
+      }
+    }
+  }
+
+  /** Have a sender write out the queue of a client, unless one is already at it. */
+  private void schedule(Watch watch) {
+    if (watch.sending.compareAndSet(false, true)) {
+      try {
+        sender.execute(() -> send(watch));
+      } catch (RejectedExecutionException e) {
+        watch.sending.set(false);
+      }
+    }
+  }
+
+  private void send(Watch watch) {
+    try {
+      SseEmitter.SseEventBuilder event;
+      while (!watch.closed && (event = watch.pending.poll()) != null) {
+        watch.emitter.send(event);
+      }
+    } catch (Exception e) {
+      log.debug("Stop watching registry events: " + e.getMessage());
+      watches.remove(watch);
+      watch.closed = true;
+      watch.emitter.completeWithError(e);
+      return;
+    } finally {
+      watch.sending.set(false);
+    }
+    if (watch.closed) {
+      watch.emitter.complete();
+    } else if (!watch.pending.isEmpty()) {
+      // queued after the last poll
+      schedule(watch);
+    }
+  }
+
+  private static final class Watch {
+    private final SseEmitter emitter;
+
+    /** environment watched, null for the default one */
+    private final String env;
+
+    private final AdminEnvironments.Context context;
+    private final RegistryEventLog eventLog;
+    private final String service;
+    private final String application;
+
+    /** events waiting to be sent */
+    private final BlockingQueue<SseEmitter.SseEventBuilder> pending;
+
+    /** whether a sender is writing out {@link #pending} */
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    /** last sequence queued or skipped, only touched by the dispatcher */
+    private long sequence;
+
+    /** set once the client is dropped, the sender then closes the connection */
+    private volatile boolean closed;
+
+    private Watch(
+        SseEmitter emitter,
+        AdminEnvironments.Context context,
+        RegistryEventLog eventLog,
+        String service,
+        String application,
+        long sequence,
+        int capacity) {
+      this.emitter = emitter;
+      this.env = context.getName();
+      this.context = context;
+      this.eventLog = eventLog;
+      this.service = service;
+      this.application = application;
+      this.sequence = sequence;
+      this.pending = new ArrayBlockingQueue<>(capacity);
+    }
+
+    private boolean matches(RegistryEvent event) {
+      if (service != null
+          && !service.equals(event.getService())
+          && !service.equals(Tool.getInterface(event.getService()))) {
+        return false;
+      }
+      return application == null || event.getApplications().contains(application);
+    }
+  }
+}
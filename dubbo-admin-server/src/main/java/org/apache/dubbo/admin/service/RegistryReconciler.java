@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.admin.registry.cache.InstanceIds;
+import org.apache.dubbo.admin.registry.cache.RegistryIndex;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repairs what lost or reordered notifications left wrong in the registry cache.
+ *
+ * <p>The cache keeps a digest of every interface, the sum of its instance ids, see {@link
+ * RegistryIndex#getInterfaceDigest}. Interfaces are spread over buckets, and each run reads one
+ * bucket back from the registries: when the digest of the whole bucket matches nothing is written,
+ * otherwise only the interfaces whose digest differs are applied again, as if just notified. Every
+ * interface is checked once per {@code buckets} runs, so a run only costs a fraction of a
+ * resubscription.
+ *
+ * <p>An interface notified while it is read back is left alone, the lookup may be older than the
+ * notification. The next round checks it again.
+ *
+ * <p>Only interfaces known to the cache are checked: the registry API has no way to list the
+ * others, which notifications bring anyway.
+ */
+@Slf4j
+@Component
+public class RegistryReconciler implements InitializingBean, DisposableBean {
+  @Resource private RegistryServerSync registryServerSync;
+
+  /** milliseconds between two buckets, 0 to disable */
+  @Value("${admin.registry.reconcile.interval:60000}")
+  private long interval = 60000L;
+
+  @Value("${admin.registry.reconcile.buckets:16}")
+  private int buckets = 16;
+
+  private ScheduledExecutorService executor;
+
+  /** only touched by the executor */
+  private int nextBucket;
+
+  private final AtomicLong runs = new AtomicLong();
+
+  private final AtomicLong repairs = new AtomicLong();
+
+  @Override
+  public void afterPropertiesSet() {
+    if (interval <= 0) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("RegistryReconcile", true));
+    executor.scheduleWithFixedDelay(this::reconcileNext, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /** @return number of buckets checked so far */
+  public long getRuns() {
+    return runs.get();
+  }
+
+  /** @return number of interfaces applied again so far */
+  public long getRepairs() {
+    return repairs.get();
+  }
+
+  private void reconcileNext() {
+    if (!registryServerSync.isSubscribed()) {
+      // a follower, the leader reconciles what it replicates
+      return;
+    }
+    try {
+      reconcile(nextBucket);
+    } catch (Exception e) {
+      log.warn("Failed to reconcile registry cache bucket " + nextBucket, e);
+    } finally {
+      nextBucket = (nextBucket + 1) % buckets;
+    }
+  }
+
+  /**
+   * Check one bucket of interfaces against the registries.
+   *
+   * @return number of interfaces applied again
+   */
+  int reconcile(int bucket) {
+    if (registryServerSync.isStale()) {
+      // the restored snapshot is being reconciled already
+      return 0;
+    }
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    Set<String> categories = registryServerSync.getSubscribedCategories();
+    // Map<interface, digest> of the bucket as cached
+    Map<String, Long> cached = new HashMap<>();
+    for (String category : categories) {
+      RegistryIndex index = snapshot.getIndex(category);
+      for (String interfaceName : index.getInterfaces()) {
+        if (bucket(interfaceName) == bucket) {
+          cached.merge(interfaceName, index.getInterfaceDigest(interfaceName), Long::sum);
+        }
+      }
+    }
+    // Map<interface, Map<source, List<URL>>> of the bucket as registered
+    Map<String, Map<String, List<URL>>> fresh = new HashMap<>(cached.size() * 4 / 3 + 1);
+    Map<String, Long> freshDigests = new HashMap<>(cached.size() * 4 / 3 + 1);
+    long cachedDigest = 0;
+    long freshDigest = 0;
+    for (Map.Entry<String, Long> entry : cached.entrySet()) {
+      Map<String, List<URL>> urls = registryServerSync.lookup(entry.getKey());
+      long digest = digest(urls);
+      fresh.put(entry.getKey(), urls);
+      freshDigests.put(entry.getKey(), digest);
+      cachedDigest += entry.getValue();
+      freshDigest += digest;
+    }
+    runs.incrementAndGet();
+    if (cachedDigest == freshDigest) {
+      return 0;
+    }
+    int repaired = 0;
+    RegistrySnapshot current = registryServerSync.getSnapshot();
+    for (Map.Entry<String, Long> entry : cached.entrySet()) {
+      String interfaceName = entry.getKey();
+      if (freshDigests.get(interfaceName) == entry.getValue().longValue()) {
+        continue;
+      }
+      if (!epochs(snapshot, categories, interfaceName)
+          .equals(epochs(current, categories, interfaceName))) {
+        // notified during the lookup, which may be older than the notification
+        log.debug("Registry cache changed for {} while reconciling, skipping it", interfaceName);
+        continue;
+      }
+      log.info("Registry cache drifted from the registry for {}, applying it again", interfaceName);
+      registryServerSync.repair(interfaceName, fresh.get(interfaceName));
+      repaired++;
+    }
+    repairs.addAndGet(repaired);
+    return repaired;
+  }
+
+  /** @return Map<category/service, epoch> of every service of an interface */
+  private static Map<String, Long> epochs(
+      RegistrySnapshot snapshot, Set<String> categories, String interfaceName) {
+    Map<String, Long> ret = new HashMap<>();
+    for (String category : categories) {
+      for (String service : snapshot.getIndex(category).getServicesByInterface(interfaceName)) {
+        ret.put(category + "/" + service, snapshot.getEpoch(category, service));
+      }
+    }
+    return ret;
+  }
+
+  private int bucket(String interfaceName) {
+    return (interfaceName.hashCode() & Integer.MAX_VALUE) % buckets;
+  }
+
+  /** Same digest as the cache: ids of the same URLs, each counted once. */
+  private static long digest(Map<String, List<URL>> urls) {
+    Set<Long> ids = new HashSet<>();
+    long digest = 0;
+    for (List<URL> list : urls.values()) {
+      if (list == null) {
+        continue;
+      }
+      for (URL url : list) {
+        if (!Constants.EMPTY_PROTOCOL.equalsIgnoreCase(url.getProtocol())) {
+          long id = InstanceIds.hash(url);
+          if (ids.add(id)) {
+            digest += id;
+          }
+        }
+      }
+    }
+    return digest;
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
+import org.apache.curator.framework.recipes.leader.Participant;
+import org.apache.dubbo.admin.common.exception.ConfigurationException;
+import org.apache.dubbo.admin.common.exception.PermissionDeniedException;
+import org.apache.dubbo.admin.model.dto.RegistryReplicationDTO;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshotFile;
+import org.apache.dubbo.admin.registry.config.GovernanceConfiguration;
+import org.apache.dubbo.admin.registry.config.impl.ZookeeperConfiguration;
+import org.apache.dubbo.common.utils.NetUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets one admin replica feed the registry cache of all the others, so the registries are watched
+ * once however many replicas run.
+ *
+ * <p>The replicas elect a leader with a Curator {@link LeaderLatch} on the ZooKeeper of the config
+ * center, identified by the URL the others reach it at. Only the leader subscribes to the
+ * registries. A follower reads the leader's snapshot once, then long-polls the events of its
+ * {@link org.apache.dubbo.admin.registry.cache.RegistryEventLog} and applies them. It starts over
+ * from a snapshot whenever the leader changes, this replica led meanwhile or the leader no longer
+ * has the events it needs.
+ *
+ * <p>Only the default environment is replicated, the environments with clients of their own
+ * always subscribe to their registries.
+ */
+@Slf4j
+@Component
+public class RegistryReplication implements InitializingBean, DisposableBean {
+  public static final String TOKEN_HEADER = "X-Replication-Token";
+
+  public static final String SEQUENCE_HEADER = "X-Registry-Sequence";
+
+  public static final String API = "/api/default/registry/replication";
+
+  private static final long RETRY_MILLIS = 1000L;
+
+  @Value("${admin.registry.replication.enabled:false}")
+  private boolean enabled = false;
+
+  /** ZooKeeper path of the leader latch */
+  @Value("${admin.registry.replication.path:/dubbo-admin/leader}")
+  private String path = "/dubbo-admin/leader";
+
+  /** base URL the other replicas reach this one at, derived from the server settings if empty */
+  @Value("${admin.registry.replication.url:}")
+  private String url = "";
+
+  @Value("${server.port:8080}")
+  private int serverPort = 8080;
+
+  @Value("${server.servlet.context-path:}")
+  private String contextPath = "";
+
+  /** shared by the replicas, empty to accept any replica */
+  @Value("${admin.registry.replication.token:}")
+  private String token = "";
+
+  /** milliseconds a follower waits for new events in one request */
+  @Value("${admin.registry.replication.poll-timeout:30000}")
+  private long pollTimeout = 30000L;
+
+  @Resource private RegistryServerSync registryServerSync;
+
+  @Resource private GovernanceConfiguration governanceConfiguration;
+
+  @Resource private ObjectMapper objectMapper;
+
+  private RestTemplate restTemplate;
+
+  private LeaderLatch latch;
+
+  private String self;
+
+  private volatile boolean leading;
+
+  private volatile boolean running;
+
+  private Thread follower;
+
+  /** guards subscribing and unsubscribing as leadership changes */
+  private final Object leadership = new Object();
+
+  /** number of leadership changes of this replica, the follower starts over on each */
+  private volatile long term;
+
+  /** leader the cache is replicated from, only touched by the follower thread */
+  private String leader;
+
+  /** last event of the leader applied, -1 to read its snapshot first */
+  private long sequence = -1L;
+
+  /** term the follower state belongs to, only touched by the follower thread */
+  private long followedTerm;
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    if (!enabled) {
+      return;
+    }
+    if (StringUtils.isEmpty(token)) {
+      // the endpoints hand out the whole registry to whoever has the token
+      throw new ConfigurationException("Registry replication needs a shared token");
+    }
+    if (!(governanceConfiguration instanceof ZookeeperConfiguration)) {
+      throw new ConfigurationException("Registry replication needs a zookeeper config center");
+    }
+    self =
+        StringUtils.isNotEmpty(url)
+            ? url
+            : "http://" + NetUtils.getLocalHost() + ":" + serverPort + contextPath;
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout((int) RETRY_MILLIS * 5);
+    requestFactory.setReadTimeout((int) (pollTimeout + TimeUnit.SECONDS.toMillis(10)));
+    restTemplate = new RestTemplate(requestFactory);
+
+    running = true;
+    follower = new Thread(this::follow, "RegistryFollower");
+    follower.setDaemon(true);
+    follower.start();
+
+    latch =
+        new LeaderLatch(((ZookeeperConfiguration) governanceConfiguration).getZkClient(), path, self);
+    latch.addListener(
+        new LeaderLatchListener() {
+          @Override
+          public void isLeader() {
+            lead();
+          }
+
+          @Override
+          public void notLeader() {
+            stepDown();
+          }
+        });
+    latch.start();
+    log.info("Registry replica {} joined the election at {}", self, path);
+  }
+
+  @Override
+  public void destroy() throws IOException {
+    running = false;
+    if (follower != null) {
+      follower.interrupt();
+    }
+    if (latch != null) {
+      latch.close();
+    }
+  }
+
+  /** @return true when replicas elect a leader and replicate its cache */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** @return true when this replica subscribes to the registries for everyone */
+  public boolean isLeader() {
+    return !enabled || leading;
+  }
+
+  /**
+   * @param header token sent by a follower
+   * @throws PermissionDeniedException when replication is off or the token does not match
+   */
+  public void checkToken(String header) {
+    if (!enabled
+        || StringUtils.isEmpty(token)
+        || header == null
+        || !MessageDigest.isEqual(
+            token.getBytes(StandardCharsets.UTF_8), header.getBytes(StandardCharsets.UTF_8))) {
+      throw new PermissionDeniedException("Invalid replication token");
+    }
+  }
+
+  private void lead() {
+    long elected;
+    synchronized (leadership) {
+      log.info("Registry replica {} is the leader, subscribing to the registries", self);
+      leading = true;
+      elected = ++term;
+    }
+    Thread subscriber = new Thread(() -> subscribe(elected), "RegistrySubscribe");
+    subscriber.setDaemon(true);
+    subscriber.start();
+  }
+
+  /** Subscribe unless this replica stepped down since it was elected in the term. */
+  private void subscribe(long elected) {
+    synchronized (leadership) {
+      if (term != elected) {
+        return;
+      }
+      registryServerSync.subscribe();
+    }
+  }
+
+  private void stepDown() {
+    synchronized (leadership) {
+      log.info("Registry replica {} is no longer the leader", self);
+      leading = false;
+      term++;
+      registryServerSync.unsubscribe();
+    }
+  }
+
+  private void follow() {
+    while (running) {
+      try {
+        if (followedTerm != term) {
+          // what was replicated before leading is outdated, read the whole snapshot again
+          followedTerm = term;
+          leader = null;
+          sequence = -1L;
+        }
+        String current = leading ? null : currentLeader();
+        if (current == null) {
+          Thread.sleep(RETRY_MILLIS);
+          continue;
+        }
+        long following = followedTerm;
+        if (!current.equals(leader) || sequence < 0) {
+          bootstrap(current, following);
+        }
+        poll(current, following);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.warn("Failed to replicate the registry cache from " + leader + ", starting over", e);
+        sequence = -1L;
+        try {
+          Thread.sleep(RETRY_MILLIS);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /** @return URL of the elected replica, null while there is none or this is it */
+  private String currentLeader() throws Exception {
+    Participant participant = latch == null ? null : latch.getLeader();
+    if (participant == null || !participant.isLeader() || self.equals(participant.getId())) {
+      return null;
+    }
+    return participant.getId();
+  }
+
+  private void bootstrap(String current, long following) throws IOException {
+    ResponseEntity<byte[]> response =
+        restTemplate.exchange(
+            current + API + "/snapshot", HttpMethod.GET, request(), byte[].class);
+    RegistrySnapshot.Editor editor = RegistrySnapshot.EMPTY.edit();
+    RegistrySnapshotFile.read(response.getBody(), editor);
+    String header = response.getHeaders().getFirst(SEQUENCE_HEADER);
+    if (leading || term != following) {
+      return;
+    }
+    registryServerSync.replicate(editor.publish().getRegistryCache());
+    leader = current;
+    sequence = Long.parseLong(header);
+    log.info("Replicated the registry cache of {} as of event {}", current, sequence);
+  }
+
+  private void poll(String current, long following) {
+    ResponseEntity<RegistryReplicationDTO> response =
+        restTemplate.exchange(
+            current + API + "/events?after={after}&timeout={timeout}",
+            HttpMethod.GET,
+            request(),
+            RegistryReplicationDTO.class,
+            sequence,
+            pollTimeout);
+    RegistryReplicationDTO events = response.getBody();
+    if (leading || term != following || events == null || events.getEvents().isEmpty()) {
+      return;
+    }
+    registryServerSync.replicate(events.getEvents());
+    sequence = events.getEvents().get(events.getEvents().size() - 1).getSequence();
+  }
+
+  private HttpEntity<Void> request() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(TOKEN_HEADER, token);
+    return new HttpEntity<>(headers);
+  }
+}
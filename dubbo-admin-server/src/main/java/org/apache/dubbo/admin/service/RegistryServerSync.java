@@ -16,81 +16,612 @@
  */
 package org.apache.dubbo.admin.service;
 
+import com.google.common.util.concurrent.Striped;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.dubbo.admin.common.utils.CoderUtils;
 import org.apache.dubbo.admin.common.utils.Constants;
 import org.apache.dubbo.admin.common.utils.Tool;
+import org.apache.dubbo.admin.common.exception.ConfigurationException;
+import org.apache.dubbo.admin.common.exception.ResourceNotFoundException;
+import org.apache.dubbo.admin.registry.cache.ConsumerAggregates;
+import org.apache.dubbo.admin.registry.cache.InstanceIds;
+import org.apache.dubbo.admin.registry.cache.NotifyPipeline;
+import org.apache.dubbo.admin.registry.cache.RegistryEvent;
+import org.apache.dubbo.admin.registry.cache.RegistryEventLog;
+import org.apache.dubbo.admin.registry.cache.RegistryHistory;
+import org.apache.dubbo.admin.registry.cache.RegistryIndex;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshotFile;
+import org.apache.dubbo.admin.registry.cache.RegistrySources;
+import org.apache.dubbo.admin.registry.cache.SubscriptionFilter;
+import org.apache.dubbo.admin.registry.cache.UrlStorage;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.common.utils.CollectionUtils;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
 import org.apache.dubbo.common.utils.NetUtils;
 import org.apache.dubbo.common.utils.StringUtils;
 import org.apache.dubbo.registry.NotifyListener;
 import org.apache.dubbo.registry.Registry;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
 /** @author wujunshen */
 @Slf4j
 @Component
 public class RegistryServerSync implements InitializingBean, DisposableBean, NotifyListener {
-  private static final URL SUBSCRIBE =
-      new URL(
-          Constants.ADMIN_PROTOCOL,
-          NetUtils.getLocalHost(),
-          0,
-          "",
-          Constants.INTERFACE_KEY,
-          Constants.ANY_VALUE,
-          Constants.GROUP_KEY,
-          Constants.ANY_VALUE,
-          Constants.VERSION_KEY,
-          Constants.ANY_VALUE,
-          Constants.CLASSIFIER_KEY,
-          Constants.ANY_VALUE,
-          Constants.CATEGORY_KEY,
-          Constants.PROVIDERS_CATEGORY
-              + ","
-              + Constants.CONSUMERS_CATEGORY
-              + ","
-              + Constants.ROUTERS_CATEGORY
-              + ","
-              + Constants.CONFIGURATORS_CATEGORY,
-          Constants.ENABLED_KEY,
-          Constants.ANY_VALUE,
-          Constants.CHECK_KEY,
-          String.valueOf(false));
-
-  /** Make sure ID never changed when the same url notified many times */
-  private final ConcurrentHashMap<String, String> urlIdsMapper = new ConcurrentHashMap<>();
-
-  /** ConcurrentMap<category, ConcurrentMap<serviceName, Map<MD5, URL>>> registryCache */
-  private final ConcurrentMap<String, ConcurrentMap<String, Map<String, URL>>> registryCache =
-      new ConcurrentHashMap<>();
+  private static final int INTERFACE_LOCKS = 64;
+
+  /** rounds of hashing tried to tell how an instance got its id, before giving up */
+  private static final int MAX_ID_ROUNDS = 16;
+
+  public static final String CONSUMERS_FULL = "full";
+
+  public static final String CONSUMERS_AGGREGATED = "aggregated";
+
+  private static URL subscribeUrl(SubscriptionFilter filter) {
+    return new URL(
+        Constants.ADMIN_PROTOCOL,
+        NetUtils.getLocalHost(),
+        0,
+        "",
+        Constants.INTERFACE_KEY,
+        Constants.ANY_VALUE,
+        Constants.GROUP_KEY,
+        Constants.ANY_VALUE,
+        Constants.VERSION_KEY,
+        Constants.ANY_VALUE,
+        Constants.CLASSIFIER_KEY,
+        Constants.ANY_VALUE,
+        Constants.CATEGORY_KEY,
+        filter.getCategoryParameter(),
+        Constants.ENABLED_KEY,
+        Constants.ANY_VALUE,
+        Constants.CHECK_KEY,
+        String.valueOf(false));
+  }
+
+  /** Map<category, Map<serviceName, Map<id, URL>>> registryCache, replaced on every notify */
+  private final AtomicReference<RegistrySnapshot> registryCache =
+      new AtomicReference<>(RegistrySnapshot.EMPTY);
 
   @Resource private Registry registry;
 
-  public ConcurrentMap<String, ConcurrentMap<String, Map<String, URL>>> getRegistryCache() {
-    return registryCache;
+  /** comma separated categories to subscribe, empty for all */
+  @Value("${admin.registry.subscribe.categories:}")
+  private String subscribeCategories = "";
+
+  /** comma separated interface prefixes to manage, empty for all */
+  @Value("${admin.registry.subscribe.include:}")
+  private String subscribeIncludes = "";
+
+  /** comma separated interface prefixes to ignore */
+  @Value("${admin.registry.subscribe.exclude:}")
+  private String subscribeExcludes = "";
+
+  private SubscriptionFilter subscriptionFilter = SubscriptionFilter.ALL;
+
+  private URL subscribeUrl = subscribeUrl(SubscriptionFilter.ALL);
+
+  @Resource private RegistrySources registrySources = RegistrySources.NONE;
+
+  /** source of the main registry's instances once there are federated registries */
+  @Value("${admin.registry.name:default}")
+  private String registryName = "default";
+
+  /** notifications of different interfaces are prepared concurrently */
+  private final Striped<Lock> interfaceLocks = Striped.lock(INTERFACE_LOCKS);
+
+  /** Map<name, NotifyListener> of the federated registries */
+  private final Map<String, NotifyListener> sourceListeners = new LinkedHashMap<>();
+
+  /** plain, compact or offheap, see {@link UrlStorage} */
+  @Value("${admin.registry.cache.storage:plain}")
+  private String storageMode = UrlStorage.PLAIN;
+
+  private UrlStorage urlStorage = UrlStorage.newInstance(UrlStorage.PLAIN);
+
+  /**
+   * full keeps every consumer URL, aggregated one URL per service and application, see {@link
+   * ConsumerAggregates}
+   */
+  @Value("${admin.registry.consumers.mode:full}")
+  private String consumersMode = CONSUMERS_FULL;
+
+  /**
+   * threads preparing notifications, 0 applies them on the registry's callback thread; whatever
+   * the number, the snapshots are published one at a time
+   */
+  @Value("${admin.registry.notify.workers:2}")
+  private int notifyWorkers = 2;
+
+  @Value("${admin.registry.notify.queue-capacity:10000}")
+  private int notifyQueueCapacity = 10000;
+
+  @Value("${admin.registry.notify.batch-size:64}")
+  private int notifyBatchSize = 64;
+
+  /** threads loading the interfaces on startup, 0 to leave it all to the subscription */
+  @Value("${admin.registry.bootstrap.workers:16}")
+  private int bootstrapWorkers = 16;
+
+  private RegistryBootstrap bootstrap = new RegistryBootstrap(bootstrapWorkers);
+
+  @Value("${admin.registry.events.capacity:10000}")
+  private int eventCapacity = 10000;
+
+  /** what every notification changed, see {@link #getEventLog()} */
+  private RegistryEventLog eventLog = new RegistryEventLog(eventCapacity);
+
+  /** null until started, notifications are then applied synchronously */
+  private volatile NotifyPipeline notifyPipeline;
+
+  /** where the cache is saved for warm restarts, empty to disable */
+  @Value("${admin.registry.snapshot.file:}")
+  private String snapshotFile = "";
+
+  /** milliseconds between two saves, nothing is written when the cache did not change */
+  @Value("${admin.registry.snapshot.interval:60000}")
+  private long snapshotInterval = 60000L;
+
+  private ScheduledExecutorService snapshotWriter;
+
+  /** epoch of the last saved snapshot, only touched by the snapshot writer */
+  private long savedEpoch = -1L;
+
+  /**
+   * Map<category, Set<serviceName>> restored from the snapshot file and not notified by the
+   * registry yet, null once reconciled
+   */
+  private Map<String, Set<String>> unconfirmed;
+
+  private volatile boolean stale;
+
+  /**
+   * only the elected replica subscribes, see {@link RegistryReplication}; the default environment
+   * only, the others always subscribe
+   */
+  @Value("${admin.registry.replication.enabled:false}")
+  private boolean replicated = false;
+
+  /** true while this cache is fed by the registries rather than by a leader */
+  private volatile boolean subscribed;
+
+  /** milliseconds between two snapshots kept for time-travel queries */
+  @Value("${admin.registry.history.interval:10000}")
+  private long historyInterval = 10000L;
+
+  /** milliseconds snapshots are kept for, 0 to only know the present */
+  @Value("${admin.registry.history.retention:3600000}")
+  private long historyRetention = 3600000L;
+
+  /** estimated bytes the kept snapshots may retain on top of the current one */
+  @Value("${admin.registry.history.max-bytes:67108864}")
+  private long historyMaxBytes = 64L * 1024 * 1024;
+
+  private RegistryHistory history =
+      new RegistryHistory(historyInterval, historyRetention, historyMaxBytes);
+
+  /**
+   * The latest published snapshot. Callers doing several lookups should hold on to one snapshot
+   * so they all see the same epoch.
+   */
+  public RegistrySnapshot getSnapshot() {
+    return registryCache.get();
+  }
+
+  /**
+   * The snapshot that was current at some time.
+   *
+   * @param time milliseconds since the epoch, null for now
+   * @throws ResourceNotFoundException when the time is older than the kept history
+   */
+  public RegistrySnapshot getSnapshot(Long time) {
+    RegistrySnapshot current = registryCache.get();
+    if (time == null) {
+      return current;
+    }
+    RegistrySnapshot snapshot = history.get(time, current);
+    if (snapshot == null) {
+      throw new ResourceNotFoundException(
+          "No registry history at "
+              + time
+              + ", the oldest kept is at "
+              + history.getOldestTime());
+    }
+    return snapshot;
+  }
+
+  /** Snapshots kept for time-travel queries. */
+  public RegistryHistory getHistory() {
+    return history;
+  }
+
+  public Map<String, Map<String, Map<String, URL>>> getRegistryCache() {
+    return registryCache.get().getRegistryCache();
+  }
+
+  public RegistryIndex getRegistryIndex(String category) {
+    return registryCache.get().getIndex(category);
+  }
+
+  /**
+   * @return true while the cache still holds services restored from the snapshot file that the
+   *     registry did not confirm yet, or is still being bootstrapped
+   */
+  public boolean isStale() {
+    return stale;
+  }
+
+  /** How the instances are stored, with the bytes the storage itself retains. */
+  public UrlStorage getUrlStorage() {
+    return urlStorage;
+  }
+
+  /** @return plain, compact or offheap, see {@link UrlStorage} */
+  public String getStorageMode() {
+    return storageMode;
+  }
+
+  /** Instances added, removed or changed by every published snapshot. */
+  public RegistryEventLog getEventLog() {
+    return eventLog;
+  }
+
+  /** @return the asynchronous notification pipeline, null when notifications are synchronous */
+  public NotifyPipeline getNotifyPipeline() {
+    return notifyPipeline;
+  }
+
+  /** @return progress of the first load of the cache */
+  public RegistryBootstrap getBootstrap() {
+    return bootstrap;
   }
 
   @Override
   public void afterPropertiesSet() {
     log.info("Init Dubbo Admin Sync Cache...");
-    registry.subscribe(SUBSCRIBE, this);
+    subscriptionFilter =
+        SubscriptionFilter.parse(subscribeCategories, subscribeIncludes, subscribeExcludes);
+    subscribeUrl = subscribeUrl(subscriptionFilter);
+    urlStorage = UrlStorage.newInstance(storageMode);
+    if (!CONSUMERS_FULL.equals(consumersMode) && !CONSUMERS_AGGREGATED.equals(consumersMode)) {
+      throw new ConfigurationException("Unknown registry consumers mode: " + consumersMode);
+    }
+    if (eventCapacity < 1) {
+      throw new ConfigurationException("Registry events capacity must be at least 1");
+    }
+    eventLog = new RegistryEventLog(eventCapacity);
+    history = new RegistryHistory(historyInterval, historyRetention, historyMaxBytes);
+    bootstrap = new RegistryBootstrap(bootstrapWorkers);
+    if (notifyWorkers > 0) {
+      NotifyPipeline pipeline =
+          new NotifyPipeline(notifyQueueCapacity, notifyWorkers, notifyBatchSize, this::apply);
+      pipeline.start();
+      notifyPipeline = pipeline;
+    }
+    for (String name : registrySources.getRegistries().keySet()) {
+      sourceListeners.put(name, urls -> notify(name, urls));
+    }
+    if (replicated) {
+      // RegistryReplication subscribes once this replica is elected, the leader is the snapshot
+      return;
+    }
+    boolean persistent = !StringUtils.isEmpty(snapshotFile);
+    if (persistent && restore(Paths.get(snapshotFile))) {
+      // serve the restored cache right away, the registry catches up in the background
+      startSubscriber(this::subscribeAndReconcile);
+    } else if (bootstrapWorkers > 0) {
+      // serve what is loaded so far as stale, the context starts without waiting for the registry
+      stale = true;
+      startSubscriber(this::bootstrapAndSubscribe);
+    } else {
+      subscribeAll();
+    }
+    if (!persistent) {
+      return;
+    }
+    snapshotWriter =
+        Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("RegistrySnapshot", true));
+    snapshotWriter.scheduleWithFixedDelay(
+        this::save, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Start feeding the cache from the registries, the replica has just been elected. What the
+   * leader replicated so far is served as stale until the registries notified everything.
+   */
+  void subscribe() {
+    synchronized (this) {
+      // nothing is replicated from now on
+      subscribed = true;
+      unconfirmed = new HashMap<>();
+      RegistrySnapshot snapshot = registryCache.get();
+      for (String category : snapshot.getRegistryCache().keySet()) {
+        unconfirmed.put(category, new HashSet<>(snapshot.getServices(category).keySet()));
+      }
+      stale = true;
+    }
+    subscribeAndReconcile();
+  }
+
+  /** Stop feeding the cache from the registries, another replica leads. */
+  void unsubscribe() {
+    subscribed = false;
+    registry.unsubscribe(subscribeUrl, this);
+    for (Map.Entry<String, NotifyListener> entry : sourceListeners.entrySet()) {
+      Registry source = registrySources.getRegistries().get(entry.getKey());
+      source.unsubscribe(subscribeUrl, entry.getValue());
+    }
+  }
+
+  /** @return true while the cache is fed by the registries rather than replicated */
+  public boolean isSubscribed() {
+    return subscribed;
+  }
+
+  /**
+   * Replace the whole cache with what the leader holds.
+   *
+   * @param content Map<category, Map<serviceName, Map<id, URL>>>
+   */
+  synchronized void replicate(Map<String, Map<String, Map<String, URL>>> content) {
+    if (subscribed) {
+      return;
+    }
+    RegistrySnapshot base = registryCache.get();
+    RegistrySnapshot.Editor editor = base.edit(urlStorage);
+    for (String category : base.getRegistryCache().keySet()) {
+      Map<String, Map<String, URL>> services = content.get(category);
+      for (String service : base.getServices(category).keySet()) {
+        if (services == null || !services.containsKey(service)) {
+          editor.remove(category, service);
+        }
+      }
+    }
+    for (Map.Entry<String, Map<String, Map<String, URL>>> category : content.entrySet()) {
+      Map<String, Map<String, URL>> services = base.getServices(category.getKey());
+      for (Map.Entry<String, Map<String, URL>> service : category.getValue().entrySet()) {
+        if (!service.getValue().equals(services.get(service.getKey()))) {
+          editor.put(category.getKey(), service.getKey(), service.getValue());
+        }
+      }
+    }
+    unconfirmed = null;
+    stale = false;
+    publish(base, editor);
+  }
+
+  /**
+   * Apply what the leader published since the cache was last replicated. Applying an event again
+   * changes nothing, so the events may overlap with the replicated snapshot.
+   *
+   * @param events events of the leader's {@link RegistryEventLog}, oldest first
+   */
+  synchronized void replicate(List<RegistryEvent> events) {
+    if (subscribed) {
+      return;
+    }
+    RegistrySnapshot base = registryCache.get();
+    Changes changes = new Changes(base);
+    for (RegistryEvent event : events) {
+      Map<String, URL> before = changes.get(event.getCategory(), event.getService());
+      Map<String, URL> after = before == null ? new HashMap<>() : new HashMap<>(before);
+      after.keySet().removeAll(event.getRemoved().keySet());
+      for (RegistryEvent.Change change : event.getChanged()) {
+        after.remove(change.getOldId());
+        after.put(change.getId(), URL.valueOf(change.getUrl()));
+      }
+      for (Map.Entry<String, String> added : event.getAdded().entrySet()) {
+        after.put(added.getKey(), URL.valueOf(added.getValue()));
+      }
+      changes.put(event.getCategory(), event.getService(), after);
+    }
+    publish(changes);
+  }
+
+  /** Subscribe to the main and the federated registries at once, each on its own thread. */
+  private static void startSubscriber(Runnable subscribe) {
+    Thread subscriber = new Thread(subscribe, "RegistrySubscribe");
+    subscriber.setDaemon(true);
+    subscriber.start();
+  }
+
+  /** Bootstrap, then subscribe to catch up with what changed meanwhile. */
+  private void bootstrapAndSubscribe() {
+    try {
+      bootstrap();
+      subscribeAll();
+    } catch (Exception e) {
+      log.error("Failed to subscribe to the registry", e);
+    } finally {
+      stale = false;
+    }
+  }
+
+  /**
+   * Load every interface the registries can list in parallel, rather than waiting for the wildcard
+   * subscription to deliver them one after another.
+   */
+  private void bootstrap() {
+    Set<String> interfaces = new TreeSet<>();
+    try {
+      interfaces.addAll(RegistryBootstrap.listInterfaces(registry));
+      for (Registry source : registrySources.getRegistries().values()) {
+        interfaces.addAll(RegistryBootstrap.listInterfaces(source));
+      }
+    } catch (Exception e) {
+      log.warn("Failed to list the registered interfaces, leaving them to the subscription", e);
+      return;
+    }
+    interfaces.removeIf(interfaceName -> !subscriptionFilter.acceptInterface(interfaceName));
+    if (interfaces.isEmpty()) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    bootstrap.run(interfaces, interfaceName -> repair(interfaceName, lookup(interfaceName)));
+    try {
+      NotifyPipeline pipeline = notifyPipeline;
+      while (pipeline != null && !pipeline.awaitIdle(1, TimeUnit.MINUTES)) {
+        log.info("Waiting for {} queued registry notifications", pipeline.getQueueDepth());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    log.info(
+        "Bootstrapped {} interfaces in {} ms, {} failed",
+        interfaces.size(),
+        System.currentTimeMillis() - start,
+        bootstrap.getFailed());
+  }
+
+  private void subscribeAll() {
+    subscribed = true;
+    List<Thread> subscribers = new ArrayList<>();
+    for (Map.Entry<String, NotifyListener> entry : sourceListeners.entrySet()) {
+      Registry source = registrySources.getRegistries().get(entry.getKey());
+      Thread subscriber =
+          new Thread(
+              () -> source.subscribe(subscribeUrl, entry.getValue()),
+              "RegistrySubscribe-" + entry.getKey());
+      subscriber.setDaemon(true);
+      subscriber.start();
+      subscribers.add(subscriber);
+    }
+    registry.subscribe(subscribeUrl, this);
+    try {
+      for (Thread subscriber : subscribers) {
+        subscriber.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Serve another environment than the one of the Spring context, before {@link
+   * #afterPropertiesSet()}. Federation and replication are left to the default environment.
+   *
+   * @param name environment name, suffixed to the snapshot file
+   * @param registry registry of the environment
+   */
+  void useEnvironment(String name, Registry registry) {
+    this.registry = registry;
+    registrySources = RegistrySources.NONE;
+    // RegistryReplication only drives the default environment
+    replicated = false;
+    if (!StringUtils.isEmpty(snapshotFile)) {
+      snapshotFile = snapshotFile + "." + name;
+    }
   }
 
   @Override
   public void destroy() {
-    registry.unsubscribe(SUBSCRIBE, this);
+    unsubscribe();
+    NotifyPipeline pipeline = notifyPipeline;
+    if (pipeline != null) {
+      notifyPipeline = null;
+      pipeline.shutdown();
+    }
+    if (snapshotWriter != null) {
+      snapshotWriter.shutdownNow();
+      try {
+        snapshotWriter.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      save();
+    }
+  }
+
+  private boolean restore(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return false;
+    }
+    try {
+      RegistrySnapshot.Editor editor = RegistrySnapshot.EMPTY.edit(urlStorage);
+      long epoch = RegistrySnapshotFile.read(file, editor);
+      synchronized (this) {
+        unconfirmed = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : editor.getChangedServices().entrySet()) {
+          unconfirmed.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        stale = true;
+        RegistrySnapshot restored = editor.publish();
+        registryCache.set(restored);
+        history.record(restored, 0L, System.currentTimeMillis());
+      }
+      log.info("Restored registry cache of epoch {} from {}, serving it as stale", epoch, file);
+      return true;
+    } catch (IOException e) {
+      log.warn("Ignore registry snapshot file " + file, e);
+      return false;
+    }
+  }
+
+  private void subscribeAndReconcile() {
+    try {
+      subscribeAll();
+      NotifyPipeline pipeline = notifyPipeline;
+      while (pipeline != null && !pipeline.awaitIdle(1, TimeUnit.MINUTES)) {
+        log.info("Waiting for {} queued registry notifications", pipeline.getQueueDepth());
+      }
+      reconcile();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      log.error("Failed to subscribe to the registry", e);
+    }
+  }
+
+  /** Drop the restored services the registry did not notify, they are gone. */
+  private synchronized void reconcile() {
+    RegistrySnapshot base = registryCache.get();
+    RegistrySnapshot.Editor editor = base.edit(urlStorage);
+    int dropped = 0;
+    for (Map.Entry<String, Set<String>> entry : unconfirmed.entrySet()) {
+      for (String service : entry.getValue()) {
+        editor.remove(entry.getKey(), service);
+        dropped++;
+      }
+    }
+    publish(base, editor);
+    unconfirmed = null;
+    stale = false;
+    log.info("Registry cache is up to date, dropped {} services gone since the snapshot", dropped);
+  }
+
+  private void save() {
+    RegistrySnapshot snapshot = registryCache.get();
+    if (stale || snapshot.getEpoch() == savedEpoch) {
+      return;
+    }
+    try {
+      RegistrySnapshotFile.write(snapshot, Paths.get(snapshotFile));
+      savedEpoch = snapshot.getEpoch();
+    } catch (Exception e) {
+      log.warn("Failed to save registry cache to " + snapshotFile, e);
+    }
   }
 
   /**
@@ -100,98 +631,537 @@ public class RegistryServerSync implements InitializingBean, DisposableBean, Not
    */
   @Override
   public void notify(List<URL> urls) {
+    notify(registrySources.isEmpty() ? null : registryName, urls);
+  }
+
+  /**
+   * @param source registry the URLs come from, null when not federated
+   * @param urls full URL list
+   */
+  private void notify(String source, List<URL> urls) {
+    urls = prepare(source, urls);
     if (CollectionUtils.isEmpty(urls)) {
       return;
     }
-    // Map<category, Map<serviceName, Map<Long, URL>>>
-    final Map<String, Map<String, Map<String, URL>>> categories = new ConcurrentHashMap<>(8);
+    submit(urls);
+  }
+
+  /** Filter, tag and aggregate URLs the way notified ones are. */
+  private List<URL> prepare(String source, List<URL> urls) {
+    urls = prepareInstances(source, urls);
+    if (isConsumersAggregated() && !CollectionUtils.isEmpty(urls)) {
+      urls = ConsumerAggregates.aggregate(urls);
+    }
+    return urls;
+  }
+
+  /** Filter and tag URLs the way notified ones are, keeping every instance. */
+  private List<URL> prepareInstances(String source, List<URL> urls) {
+    if (!subscriptionFilter.isAll()) {
+      urls = filter(urls);
+    }
+    if (source != null && !CollectionUtils.isEmpty(urls)) {
+      urls = tag(urls, source);
+    }
+    return urls;
+  }
+
+  /** @return true when consumers are cached as one URL per service and application */
+  public boolean isConsumersAggregated() {
+    return CONSUMERS_AGGREGATED.equals(consumersMode);
+  }
+
+  /**
+   * Read every consumer instance of a service from the registries, for when the cache only holds
+   * their aggregates. Always reads the present, whatever the time queried.
+   *
+   * @param service service key, group/interface:version
+   * @return Map<id, URL> filtered and tagged like notified URLs
+   */
+  public Map<String, URL> lookupConsumers(String service) {
+    Map<String, URL> ret = lookupConsumersByInterface(Tool.getInterface(service)).get(service);
+    return ret == null ? new LinkedHashMap<>() : ret;
+  }
+
+  /**
+   * Read every consumer instance of every group and version of an interface at once, see {@link
+   * #lookupConsumers}.
+   *
+   * @return Map<service key, Map<id, URL>>
+   */
+  public Map<String, Map<String, URL>> lookupConsumersByInterface(String interfaceName) {
+    URL url =
+        subscribeUrl
+            .setPath(interfaceName)
+            .addParameter(Constants.INTERFACE_KEY, interfaceName)
+            .addParameter(Constants.CATEGORY_KEY, Constants.CONSUMERS_CATEGORY);
+    Map<String, Map<String, URL>> ret = new HashMap<>();
+    String main = registrySources.isEmpty() ? null : registryName;
+    addConsumers(ret, prepareInstances(main, registry.lookup(url)));
+    for (Map.Entry<String, Registry> source : registrySources.getRegistries().entrySet()) {
+      addConsumers(ret, prepareInstances(source.getKey(), source.getValue().lookup(url)));
+    }
+    return ret;
+  }
+
+  private static void addConsumers(Map<String, Map<String, URL>> to, List<URL> urls) {
+    if (urls == null) {
+      return;
+    }
+    for (URL url : urls) {
+      if (!Constants.EMPTY_PROTOCOL.equalsIgnoreCase(url.getProtocol())
+          && Constants.CONSUMERS_CATEGORY.equals(url.getParameter(Constants.CATEGORY_KEY))) {
+        putInstance(to.computeIfAbsent(url.getServiceKey(), k -> new LinkedHashMap<>()), url);
+      }
+    }
+  }
+
+  /**
+   * Read the current instances of an interface from every registry, without waiting for any
+   * notification.
+   *
+   * @return Map<source, List<URL>> filtered and tagged like notified URLs, the source is null when
+   *     not federated
+   */
+  Map<String, List<URL>> lookup(String interfaceName) {
+    URL url =
+        subscribeUrl.setPath(interfaceName).addParameter(Constants.INTERFACE_KEY, interfaceName);
+    Map<String, List<URL>> ret = new LinkedHashMap<>();
+    String main = registrySources.isEmpty() ? null : registryName;
+    ret.put(main, prepare(main, registry.lookup(url)));
+    for (Map.Entry<String, Registry> source : registrySources.getRegistries().entrySet()) {
+      ret.put(source.getKey(), prepare(source.getKey(), source.getValue().lookup(url)));
+    }
+    return ret;
+  }
+
+  /**
+   * Apply instances read by {@link #lookup} as if every registry had just notified them, one
+   * category at a time so they coalesce with the notifications of the same category.
+   *
+   * @param fresh Map<source, List<URL>>
+   */
+  void repair(String interfaceName, Map<String, List<URL>> fresh) {
+    for (Map.Entry<String, List<URL>> entry : fresh.entrySet()) {
+      Map<String, List<URL>> categories = new HashMap<>();
+      if (entry.getValue() != null) {
+        for (URL url : entry.getValue()) {
+          if (!Constants.EMPTY_PROTOCOL.equalsIgnoreCase(url.getProtocol())) {
+            categories
+                .computeIfAbsent(
+                    url.getParameter(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY),
+                    k -> new ArrayList<>())
+                .add(url);
+          }
+        }
+      }
+      for (String category : subscriptionFilter.getCategories()) {
+        List<URL> urls = categories.get(category);
+        if (urls == null) {
+          // group and version are *, every service of the interface is removed
+          URL empty =
+              subscribeUrl
+                  .setProtocol(Constants.EMPTY_PROTOCOL)
+                  .setPath(interfaceName)
+                  .addParameter(Constants.INTERFACE_KEY, interfaceName)
+                  .addParameter(Constants.CATEGORY_KEY, category);
+          urls = prepare(entry.getKey(), Collections.singletonList(empty));
+        }
+        if (!CollectionUtils.isEmpty(urls)) {
+          submit(urls);
+        }
+      }
+    }
+  }
+
+  /** @return the categories subscribed to */
+  Set<String> getSubscribedCategories() {
+    return subscriptionFilter.getCategories();
+  }
+
+  private void submit(List<URL> urls) {
+    NotifyPipeline pipeline = notifyPipeline;
+    if (pipeline != null) {
+      try {
+        if (pipeline.offer(notifyKey(urls), urls)) {
+          return;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    apply(Collections.singletonList(urls));
+  }
+
+  /** Drop what this deployment does not manage before it costs anything. */
+  private List<URL> filter(List<URL> urls) {
+    if (urls == null) {
+      return null;
+    }
+    List<URL> accepted = null;
+    for (int i = 0; i < urls.size(); i++) {
+      URL url = urls.get(i);
+      if (subscriptionFilter.accept(url)) {
+        if (accepted != null) {
+          accepted.add(url);
+        }
+      } else if (accepted == null) {
+        accepted = new ArrayList<>(urls.subList(0, i));
+      }
+    }
+    return accepted == null ? urls : accepted;
+  }
+
+  private static List<URL> tag(List<URL> urls, String source) {
+    List<URL> tagged = new ArrayList<>(urls.size());
+    for (URL url : urls) {
+      tagged.add(url.addParameter(RegistrySources.SOURCE_KEY, source));
+    }
+    return tagged;
+  }
+
+  /** A newer notification replaces a pending one with the same interface and categories. */
+  private static String notifyKey(List<URL> urls) {
+    Set<String> categories = new TreeSet<>();
     String interfaceName = null;
     for (URL url : urls) {
-      interfaceName = handlerInUrls(categories, interfaceName, url);
+      categories.add(url.getParameter(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY));
+      if (interfaceName == null) {
+        interfaceName = url.getServiceInterface();
+      }
     }
-    if (categories.isEmpty()) {
-      return;
+    String source = urls.get(0).getParameter(RegistrySources.SOURCE_KEY);
+    return String.join(
+        Constants.PATH_SEPARATOR, source, interfaceName, String.valueOf(categories));
+  }
+
+  /**
+   * Parse the notifications, then build the next snapshot from all of them at once. Parsing and
+   * preparing the changes may run on several threads, there is only one writer at a time.
+   */
+  private void apply(List<List<URL>> notifications) {
+    List<Notification> parsed = new ArrayList<>(notifications.size());
+    for (List<URL> urls : notifications) {
+      Notification notification = parse(urls);
+      if (notification != null) {
+        parsed.add(notification);
+      }
+    }
+    if (!parsed.isEmpty()) {
+      publish(parsed);
     }
-    final String name = interfaceName;
-    categories.entrySet().forEach(categoryEntry -> putAllServices(name, categoryEntry));
+  }
+
+  private Notification parse(List<URL> urls) {
+    // Map<category, Map<serviceName, Map<id, URL>>>
+    final Map<String, Map<String, Map<String, URL>>> categories = new HashMap<>(8);
+    final List<URL> emptyUrls = new ArrayList<>();
+    final Set<String> interfaces = new HashSet<>(4);
+    String interfaceName = null;
+    for (URL url : urls) {
+      interfaces.add(String.valueOf(url.getServiceInterface()));
+      if (Constants.EMPTY_PROTOCOL.equalsIgnoreCase(url.getProtocol())) {
+        emptyUrls.add(url);
+      } else {
+        interfaceName = handlerInUrls(categories, interfaceName, url);
+      }
+    }
+    if (categories.isEmpty() && emptyUrls.isEmpty()) {
+      return null;
+    }
+    String source = urls.get(0).getParameter(RegistrySources.SOURCE_KEY);
+    return new Notification(source, interfaceName, interfaces, categories, emptyUrls);
+  }
+
+  /**
+   * Work out what the notifications change while holding the locks of their interfaces only, so
+   * notifications of other interfaces are prepared at the same time. Nothing but these
+   * notifications touches the services of these interfaces, the changes are then published
+   * without having to be checked again.
+   */
+  private void publish(List<Notification> notifications) {
+    Set<String> interfaces = new HashSet<>();
+    for (Notification notification : notifications) {
+      interfaces.addAll(notification.interfaces);
+    }
+    // bulkGet orders the locks, so overlapping batches can not deadlock
+    List<Lock> locks = new ArrayList<>();
+    for (Lock lock : interfaceLocks.bulkGet(interfaces)) {
+      locks.add(lock);
+    }
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+    try {
+      Changes changes = new Changes(registryCache.get());
+      for (Notification notification : notifications) {
+        for (URL url : notification.emptyUrls) {
+          removeServices(changes, notification.source, url);
+        }
+        for (Map.Entry<String, Map<String, Map<String, URL>>> categoryEntry :
+            notification.categories.entrySet()) {
+          putAllServices(changes, notification.source, notification.interfaceName, categoryEntry);
+        }
+      }
+      publish(changes);
+    } finally {
+      for (int i = locks.size() - 1; i >= 0; i--) {
+        locks.get(i).unlock();
+      }
+    }
+  }
+
+  private synchronized void publish(Changes changes) {
+    RegistrySnapshot base = registryCache.get();
+    RegistrySnapshot.Editor editor = base.edit(urlStorage);
+    for (Map.Entry<String, Map<String, Map<String, URL>>> category : changes.services.entrySet()) {
+      for (Map.Entry<String, Map<String, URL>> service : category.getValue().entrySet()) {
+        if (service.getValue().isEmpty()) {
+          editor.remove(category.getKey(), service.getKey());
+        } else {
+          editor.put(category.getKey(), service.getKey(), service.getValue());
+        }
+      }
+    }
+    if (unconfirmed != null) {
+      for (Map.Entry<String, Set<String>> entry : editor.getChangedServices().entrySet()) {
+        Set<String> services = unconfirmed.get(entry.getKey());
+        if (services != null) {
+          services.removeAll(entry.getValue());
+        }
+      }
+    }
+    publish(base, editor);
+  }
+
+  private void publish(RegistrySnapshot base, RegistrySnapshot.Editor editor) {
+    RegistrySnapshot published = editor.compact().publish();
+    registryCache.set(published);
+    if (published != base) {
+      eventLog.append(diff(base, published, editor.getChangedServices()), published.getEpoch());
+      history.record(published, replacedBytes(base, editor), System.currentTimeMillis());
+    }
+  }
+
+  /** @return estimated bytes of what only the base snapshot refers to now */
+  private static long replacedBytes(RegistrySnapshot base, RegistrySnapshot.Editor editor) {
+    long bytes = 0;
+    if (editor.isCompacted()) {
+      // every service was stored again
+      for (String category : base.getRegistryCache().keySet()) {
+        bytes += base.getIndex(category).getEstimatedBytes();
+      }
+      return bytes;
+    }
+    for (Map.Entry<String, Set<String>> entry : editor.getChangedServices().entrySet()) {
+      RegistryIndex index = base.getIndex(entry.getKey());
+      for (String service : entry.getValue()) {
+        bytes += index.getEstimatedBytes(service);
+      }
+    }
+    return bytes;
+  }
+
+  private static List<RegistryEvent> diff(
+      RegistrySnapshot base, RegistrySnapshot published, Map<String, Set<String>> changed) {
+    List<RegistryEvent> events = new ArrayList<>();
+    for (Map.Entry<String, Set<String>> entry : changed.entrySet()) {
+      String category = entry.getKey();
+      Map<String, Map<String, URL>> before = base.getServices(category);
+      Map<String, Map<String, URL>> after = published.getServices(category);
+      for (String service : entry.getValue()) {
+        RegistryEvent event =
+            RegistryEvent.diff(category, service, before.get(service), after.get(service));
+        if (event != null) {
+          events.add(event);
+        }
+      }
+    }
+    return events;
   }
 
   private void putAllServices(
-      String interfaceName, Map.Entry<String, Map<String, Map<String, URL>>> categoryEntry) {
+      Changes changes,
+      String source,
+      String interfaceName,
+      Map.Entry<String, Map<String, Map<String, URL>>> categoryEntry) {
     String category = categoryEntry.getKey();
-    ConcurrentMap<String, Map<String, URL>> services = registryCache.get(category);
-    if (services == null) {
-      services = new ConcurrentHashMap<>(8);
-      registryCache.put(category, services);
-    } else {
-      // Fix map can not be cleared when service is unregistered: when a unique
-      // “group/service:version” service is unregistered, but we still have the same
-      // services with different version or group, so empty protocols can not be invoked.
-      Set<String> keys = new HashSet<>(services.keySet());
-      for (String key : keys) {
-        if (Tool.getInterface(key).equals(interfaceName)
-            && !categoryEntry.getValue().entrySet().contains(key)) {
-          services.remove(key);
+    Map<String, Map<String, URL>> services = categoryEntry.getValue();
+    // Fix map can not be cleared when service is unregistered: when a unique
+    // “group/service:version” service is unregistered, but we still have the same
+    // services with different version or group, so empty protocols can not be invoked.
+    for (String key : changes.getServicesByInterface(category, interfaceName)) {
+      if (!services.containsKey(key)) {
+        putFromSource(changes, source, category, key, Collections.emptyMap());
+      }
+    }
+    for (Map.Entry<String, Map<String, URL>> serviceEntry : services.entrySet()) {
+      putFromSource(changes, source, category, serviceEntry.getKey(), serviceEntry.getValue());
+    }
+  }
+
+  /**
+   * Replace the instances a registry notified for a service. Instances of the other federated
+   * registries are kept, the service is removed once it has no instance left.
+   *
+   * @param source registry of the instances, null when not federated
+   */
+  private void putFromSource(
+      Changes changes, String source, String category, String service, Map<String, URL> urls) {
+    if (source != null) {
+      Map<String, URL> existing = changes.get(category, service);
+      if (existing != null) {
+        Map<String, URL> merged = new HashMap<>(urls);
+        for (Map.Entry<String, URL> entry : existing.entrySet()) {
+          if (!source.equals(entry.getValue().getParameter(RegistrySources.SOURCE_KEY))) {
+            merged.putIfAbsent(entry.getKey(), entry.getValue());
+          }
         }
+        urls = merged;
       }
     }
-    services.putAll(categoryEntry.getValue());
+    changes.put(category, service, urls);
   }
 
-  private String handlerInUrls(
-      Map<String, Map<String, Map<String, URL>>> categories, String interfaceName, URL url) {
+  private void removeServices(Changes changes, String source, URL url) {
     String category = url.getParameter(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
+    String group = url.getParameter(Constants.GROUP_KEY);
+    String version = url.getParameter(Constants.VERSION_KEY);
     // NOTE: group and version in empty protocol is *
-    if (Constants.EMPTY_PROTOCOL.equalsIgnoreCase(url.getProtocol())) {
-      ConcurrentMap<String, Map<String, URL>> services = registryCache.get(category);
-      if (services != null) {
-        String group = url.getParameter(Constants.GROUP_KEY);
-        String version = url.getParameter(Constants.VERSION_KEY);
-        // NOTE: group and version in empty protocol is *
-        if (!Constants.ANY_VALUE.equals(group) && !Constants.ANY_VALUE.equals(version)) {
-          services.remove(url.getServiceKey());
-        } else {
-          for (Map.Entry<String, Map<String, URL>> serviceEntry : services.entrySet()) {
-            String service = serviceEntry.getKey();
-            boolean isServiceInterface =
-                Tool.getInterface(service).equals(url.getServiceInterface());
-            boolean isGroup =
-                Constants.ANY_VALUE.equals(group)
-                    || StringUtils.isEquals(group, Tool.getGroup(service));
-            boolean isVersion =
-                Constants.ANY_VALUE.equals(version)
-                    || StringUtils.isEquals(version, Tool.getVersion(service));
-            if (isServiceInterface && isGroup && isVersion) {
-              services.remove(service);
-            }
-          }
+    if (!Constants.ANY_VALUE.equals(group) && !Constants.ANY_VALUE.equals(version)) {
+      putFromSource(changes, source, category, url.getServiceKey(), Collections.emptyMap());
+    } else {
+      for (String service :
+          changes.getServicesByInterface(category, url.getServiceInterface())) {
+        boolean isGroup =
+            Constants.ANY_VALUE.equals(group) || StringUtils.isEquals(group, Tool.getGroup(service));
+        boolean isVersion =
+            Constants.ANY_VALUE.equals(version)
+                || StringUtils.isEquals(version, Tool.getVersion(service));
+        if (isGroup && isVersion) {
+          putFromSource(changes, source, category, service, Collections.emptyMap());
         }
       }
-    } else {
-      if (StringUtils.isEmpty(interfaceName)) {
-        interfaceName = url.getServiceInterface();
+    }
+  }
+
+  private String handlerInUrls(
+      Map<String, Map<String, Map<String, URL>>> categories, String interfaceName, URL url) {
+    String category = url.getParameter(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
+    if (StringUtils.isEmpty(interfaceName)) {
+      interfaceName = url.getServiceInterface();
+    }
+    Map<String, Map<String, URL>> services =
+        categories.computeIfAbsent(category, k -> new HashMap<>(8));
+    String service = url.getServiceKey();
+    putInstance(services.computeIfAbsent(service, k -> new HashMap<>(8)), url);
+    return interfaceName;
+  }
+
+  /**
+   * Put an instance under its id. The same URL always hashes to the same ID. On the (unlikely)
+   * collision the URL that sorts first keeps the ID and the other one is hashed again, so that the
+   * IDs do not depend on the order of the notifications.
+   *
+   * @param ids Map<id, URL> instances of one service
+   */
+  static void putInstance(Map<String, URL> ids, URL url) {
+    int round = 0;
+    String id = InstanceIds.toHex(InstanceIds.hash(url, round));
+    URL existing;
+    while ((existing = ids.putIfAbsent(id, url)) != null && !existing.equals(url)) {
+      if (url.toFullString().compareTo(existing.toFullString()) < 0) {
+        ids.put(id, url);
+        url = existing;
+        round = idRound(url, id);
       }
-      Map<String, Map<String, URL>> services = categories.get(category);
-      if (services == null) {
-        services = new ConcurrentHashMap<>(8);
-        categories.put(category, services);
+      id = InstanceIds.toHex(InstanceIds.hash(url, ++round));
+    }
+  }
+
+  /** @return the round of {@link InstanceIds#hash(URL, int)} that gave the URL its id */
+  private static int idRound(URL url, String id) {
+    for (int round = 0; round < MAX_ID_ROUNDS; round++) {
+      if (id.equals(InstanceIds.toHex(InstanceIds.hash(url, round)))) {
+        return round;
       }
-      String service = url.getServiceKey();
-      Map<String, URL> ids = services.get(service);
-      if (ids == null) {
-        ids = new ConcurrentHashMap<>(8);
-        services.put(service, ids);
+    }
+    return MAX_ID_ROUNDS;
+  }
+
+  /**
+   * Services replaced by a batch of notifications, read over the snapshot they are prepared
+   * against.
+   */
+  private static final class Changes {
+    private final RegistrySnapshot base;
+
+    /** Map<category, Map<serviceName, Map<id, URL>>>, an empty map removes the service */
+    private final Map<String, Map<String, Map<String, URL>>> services = new HashMap<>(8);
+
+    private Changes(RegistrySnapshot base) {
+      this.base = base;
+    }
+
+    /** @return Map<id, URL> of a service as changed so far, null when there is none */
+    private Map<String, URL> get(String category, String service) {
+      Map<String, Map<String, URL>> changed = services.get(category);
+      if (changed != null && changed.containsKey(service)) {
+        Map<String, URL> urls = changed.get(service);
+        return urls.isEmpty() ? null : urls;
       }
+      return base.getServices(category).get(service);
+    }
 
-      // Make sure we use the same ID for the same URL
-      if (urlIdsMapper.containsKey(url.toFullString())) {
-        ids.put(urlIdsMapper.get(url.toFullString()), url);
-      } else {
-        String md5 = CoderUtils.md516Bit(url.toFullString());
-        ids.put(md5, url);
-        urlIdsMapper.putIfAbsent(url.toFullString(), md5);
+    private void put(String category, String service, Map<String, URL> urls) {
+      services.computeIfAbsent(category, k -> new HashMap<>(8)).put(service, urls);
+    }
+
+    /** @return every group and version of an interface, as changed so far */
+    private Set<String> getServicesByInterface(String category, String interfaceName) {
+      Set<String> ret = new HashSet<>(base.getIndex(category).getServicesByInterface(interfaceName));
+      Map<String, Map<String, URL>> changed = services.get(category);
+      if (changed != null) {
+        for (Map.Entry<String, Map<String, URL>> entry : changed.entrySet()) {
+          if (Tool.getInterface(entry.getKey()).equals(interfaceName)) {
+            if (entry.getValue().isEmpty()) {
+              ret.remove(entry.getKey());
+            } else {
+              ret.add(entry.getKey());
+            }
+          }
+        }
       }
+      return ret;
+    }
+  }
+
+  /** One parsed notification. */
+  private static final class Notification {
+    /** registry the notification comes from, null when not federated */
+    private final String source;
+
+    private final String interfaceName;
+
+    /** interfaces of every URL, the notification holds their locks while it is applied */
+    private final Set<String> interfaces;
+
+    /** Map<category, Map<serviceName, Map<id, URL>>> */
+    private final Map<String, Map<String, Map<String, URL>>> categories;
+
+    private final List<URL> emptyUrls;
+
+    private Notification(
+        String source,
+        String interfaceName,
+        Set<String> interfaces,
+        Map<String, Map<String, Map<String, URL>>> categories,
+        List<URL> emptyUrls) {
+      this.source = source;
+      this.interfaceName = interfaceName;
+      this.interfaces = interfaces;
+      this.categories = categories;
+      this.emptyUrls = emptyUrls;
     }
-    return interfaceName;
   }
 }
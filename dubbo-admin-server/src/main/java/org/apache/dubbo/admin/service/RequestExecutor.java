@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import org.apache.dubbo.admin.registry.cache.RegistryHistory;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs the remote reads of a batch request concurrently, such as metadata reports or registry
+ * lookups, each as part of the request with its environment and queried time.
+ */
+@Component
+public class RequestExecutor implements InitializingBean, DisposableBean {
+  @Value("${admin.request.workers:8}")
+  private int workers = 8;
+
+  private ExecutorService executor;
+
+  @Override
+  public void afterPropertiesSet() {
+    executor =
+        Executors.newFixedThreadPool(
+            Math.max(workers, 1), new NamedThreadFactory("RequestWorker", true));
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  /** @return the result of the task, run on another thread as part of the current request */
+  public <T> CompletableFuture<T> submit(Supplier<T> task) {
+    String env = AdminEnvironments.getCurrent();
+    Long queryTime = RegistryHistory.getQueryTime();
+    return CompletableFuture.supplyAsync(
+        () -> {
+          AdminEnvironments.setCurrent(env);
+          RegistryHistory.setQueryTime(queryTime);
+          try {
+            return task.get();
+          } finally {
+            AdminEnvironments.setCurrent(null);
+            RegistryHistory.setQueryTime(null);
+          }
+        },
+        executor);
+  }
+}
@@ -16,27 +16,66 @@
  */
 package org.apache.dubbo.admin.service.impl;
 
+import org.apache.dubbo.admin.registry.cache.RegistryHistory;
+import org.apache.dubbo.admin.registry.cache.RegistryIndex;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
 import org.apache.dubbo.admin.registry.config.GovernanceConfiguration;
 import org.apache.dubbo.admin.registry.metadata.MetaDataCollector;
+import org.apache.dubbo.admin.service.AdminEnvironments;
+import org.apache.dubbo.admin.service.QueryResultCache;
 import org.apache.dubbo.admin.service.RegistryServerSync;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.registry.Registry;
 
 import javax.annotation.Resource;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 /** @author wujunshen */
 public class AbstractService {
-  @Resource protected Registry registry;
+  @Resource private AdminEnvironments environments;
 
-  @Resource protected GovernanceConfiguration dynamicConfiguration;
+  @Resource private QueryResultCache queryResultCache;
 
-  @Resource protected MetaDataCollector metaDataCollector;
+  /** @return registry of the current request's environment */
+  protected Registry getRegistry() {
+    return environments.current().getRegistry();
+  }
+
+  /** @return config center of the current request's environment */
+  protected GovernanceConfiguration getDynamicConfiguration() {
+    return environments.current().getGovernanceConfiguration();
+  }
+
+  /** @return metadata report of the current request's environment */
+  protected MetaDataCollector getMetaDataCollector() {
+    return environments.current().getMetaDataCollector();
+  }
+
+  /** @return registry cache of the current request's environment */
+  protected RegistryServerSync getSync() {
+    return environments.current().getRegistryServerSync();
+  }
+
+  /** @return the current snapshot, or the one at the time the request asks for */
+  public RegistrySnapshot getSnapshot() {
+    return getSync().getSnapshot(RegistryHistory.getQueryTime());
+  }
 
-  @Resource private RegistryServerSync sync;
+  public Map<String, Map<String, Map<String, URL>>> getRegistryCache() {
+    return getSnapshot().getRegistryCache();
+  }
+
+  public RegistryIndex getRegistryIndex(String category) {
+    return getSnapshot().getIndex(category);
+  }
 
-  public ConcurrentMap<String, ConcurrentMap<String, Map<String, URL>>> getRegistryCache() {
-    return sync.getRegistryCache();
+  /**
+   * Result of a query over a whole category, computed again only once the category changed.
+   *
+   * @param parameters what else the result depends on
+   */
+  protected <T> T cached(String query, String category, Supplier<T> loader, Object... parameters) {
+    return queryResultCache.get(query, getSnapshot().getEpoch(category), loader, parameters);
   }
 }
@@ -18,24 +18,95 @@ package org.apache.dubbo.admin.service.impl;
 
 import org.apache.dubbo.admin.common.utils.Constants;
 import org.apache.dubbo.admin.common.utils.SyncUtils;
+import org.apache.dubbo.admin.common.utils.Tool;
+import org.apache.dubbo.admin.common.utils.UrlFilter;
 import org.apache.dubbo.admin.model.domain.Consumer;
+import org.apache.dubbo.admin.model.dto.ConsumerGroupDTO;
+import org.apache.dubbo.admin.registry.cache.ConsumerAggregates;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
 import org.apache.dubbo.admin.service.ConsumerService;
+import org.apache.dubbo.admin.service.RegistryServerSync;
+import org.apache.dubbo.admin.service.RequestExecutor;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.metadata.identifier.MetadataIdentifier;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 /** @author wujunshen */
 @Component
 public class ConsumerServiceImpl extends AbstractService implements ConsumerService {
+  @Resource private RequestExecutor requestExecutor;
+
   @Override
   public List<Consumer> findByService(String service) {
     return SyncUtils.url2ConsumerList(findConsumerUrlByService(service));
   }
 
+  @Override
+  public List<Consumer> findByService(String service, boolean full) {
+    RegistryServerSync sync = getSync();
+    if (full && sync.isConsumersAggregated()) {
+      return SyncUtils.url2ConsumerList(sync.lookupConsumers(service));
+    }
+    return findByService(service);
+  }
+
+  @Override
+  public List<CompletableFuture<List<Consumer>>> findAllByServices(List<String> services) {
+    RegistryServerSync sync = getSync();
+    List<CompletableFuture<List<Consumer>>> ret = new ArrayList<>(services.size());
+    if (sync.isConsumersAggregated()) {
+      Map<String, CompletableFuture<Map<String, Map<String, URL>>>> lookups = new HashMap<>();
+      for (String service : services) {
+        CompletableFuture<Map<String, Map<String, URL>>> lookup =
+            lookups.computeIfAbsent(
+                Tool.getInterface(service),
+                interfaceName ->
+                    requestExecutor.submit(() -> sync.lookupConsumersByInterface(interfaceName)));
+        ret.add(lookup.thenApply(consumers -> SyncUtils.url2ConsumerList(consumers.get(service))));
+      }
+      return ret;
+    }
+    Map<String, Map<String, URL>> consumers =
+        getSnapshot().getServices(Constants.CONSUMERS_CATEGORY);
+    for (String service : services) {
+      ret.add(
+          CompletableFuture.completedFuture(
+              SyncUtils.url2ConsumerList(UrlFilter.ALL.service(service).filter(consumers))));
+    }
+    return ret;
+  }
+
+  @Override
+  public List<ConsumerGroupDTO> findGroupsByService(String service) {
+    Map<String, ConsumerGroupDTO> groups = new TreeMap<>();
+    for (URL url : findConsumerUrlByService(service).values()) {
+      String application = url.getParameter(Constants.APPLICATION, "");
+      ConsumerGroupDTO group = groups.get(application);
+      if (group == null) {
+        group = new ConsumerGroupDTO();
+        group.setService(service);
+        group.setApplication(application);
+        groups.put(application, group);
+      }
+      group.setInstances(group.getInstances() + ConsumerAggregates.getInstances(url));
+      group.getAddresses().addAll(ConsumerAggregates.getAddresses(url));
+    }
+    for (ConsumerGroupDTO group : groups.values()) {
+      Collections.sort(group.getAddresses());
+    }
+    return new ArrayList<>(groups.values());
+  }
+
   @Override
   public List<Consumer> findAll() {
     return SyncUtils.url2ConsumerList(findAllConsumerUrl());
@@ -43,13 +114,11 @@ public class ConsumerServiceImpl extends AbstractService implements ConsumerServ
 
   @Override
   public String getConsumerMetadata(MetadataIdentifier consumerIdentifier) {
-    return metaDataCollector.getConsumerMetaData(consumerIdentifier);
+    return getMetaDataCollector().getConsumerMetaData(consumerIdentifier);
   }
 
   private Map<String, URL> findAllConsumerUrl() {
-    Map<String, String> filter = new ConcurrentHashMap<>(8);
-    filter.put(Constants.CATEGORY_KEY, Constants.CONSUMERS_CATEGORY);
-    return SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    return UrlFilter.ALL.filter(getSnapshot().getServices(Constants.CONSUMERS_CATEGORY));
   }
 
   @Override
@@ -58,18 +127,16 @@ public class ConsumerServiceImpl extends AbstractService implements ConsumerServ
   }
 
   private Map<String, URL> findConsumerUrlByAddress(String address) {
-    Map<String, String> filter = new ConcurrentHashMap<>(8);
-    filter.put(Constants.CATEGORY_KEY, Constants.CONSUMERS_CATEGORY);
-    filter.put(SyncUtils.ADDRESS_FILTER_KEY, address);
-
-    return SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    RegistrySnapshot snapshot = getSnapshot();
+    Set<String> services = snapshot.getIndex(Constants.CONSUMERS_CATEGORY).getServicesByIp(address);
+    return UrlFilter.ALL
+        .address(address)
+        .filter(snapshot.getServices(Constants.CONSUMERS_CATEGORY), services);
   }
 
   public Map<String, URL> findConsumerUrlByService(String service) {
-    Map<String, String> filter = new ConcurrentHashMap<>(8);
-    filter.put(Constants.CATEGORY_KEY, Constants.CONSUMERS_CATEGORY);
-    filter.put(SyncUtils.SERVICE_FILTER_KEY, service);
-
-    return SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    return UrlFilter.ALL
+        .service(service)
+        .filter(getSnapshot().getServices(Constants.CONSUMERS_CATEGORY));
   }
 }
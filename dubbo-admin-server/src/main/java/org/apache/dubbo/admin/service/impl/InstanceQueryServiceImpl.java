@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service.impl;
+
+import org.apache.dubbo.admin.common.exception.ParamValidationException;
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.admin.model.dto.InstanceDTO;
+import org.apache.dubbo.admin.model.dto.InstanceQueryDTO;
+import org.apache.dubbo.admin.registry.cache.InstanceParameters;
+import org.apache.dubbo.admin.registry.cache.InstanceQuery;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
+import org.apache.dubbo.admin.service.InstanceQueryService;
+import org.apache.dubbo.common.URL;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.Map;
+
+/** Evaluates a query against the parameter index of every category in the cache */
+@Component
+public class InstanceQueryServiceImpl extends AbstractService implements InstanceQueryService {
+  @Override
+  public InstanceQueryDTO query(String query, int limit) {
+    if (limit < 0) {
+      throw new ParamValidationException("Limit must not be negative");
+    }
+    InstanceQuery instanceQuery = InstanceQuery.parse(query);
+    RegistrySnapshot snapshot = getSnapshot();
+    InstanceQueryDTO ret = new InstanceQueryDTO();
+    for (Map.Entry<String, Map<String, Map<String, URL>>> category :
+        snapshot.getRegistryCache().entrySet()) {
+      InstanceParameters parameters = snapshot.getIndex(category.getKey()).getParameters();
+      BitSet matches = instanceQuery.match(category.getKey(), parameters);
+      ret.setTotal(ret.getTotal() + matches.cardinality());
+      for (int i = matches.nextSetBit(0);
+          i >= 0 && ret.getInstances().size() < limit;
+          i = matches.nextSetBit(i + 1)) {
+        String service = parameters.getService(i);
+        String id = parameters.getId(i);
+        Map<String, URL> urls = category.getValue().get(service);
+        URL url = urls == null ? null : urls.get(id);
+        if (url != null) {
+          ret.getInstances().add(toInstance(category.getKey(), service, id, url));
+        }
+      }
+    }
+    return ret;
+  }
+
+  private static InstanceDTO toInstance(String category, String service, String id, URL url) {
+    InstanceDTO instance = new InstanceDTO();
+    instance.setCategory(category);
+    instance.setService(service);
+    instance.setId(id);
+    instance.setAddress(url.getAddress());
+    instance.setApplication(url.getParameter(Constants.APPLICATION));
+    instance.setUrl(url.toFullString());
+    return instance;
+  }
+}
@@ -30,35 +30,35 @@ public class ManagementServiceImpl extends AbstractService implements Management
   @Override
   public void setConfig(ConfigDTO config) {
     if (Constants.GLOBAL_CONFIG.equals(config.getKey())) {
-      dynamicConfiguration.setConfig(GLOBAL_CONFIG_PATH, config.getConfig());
+      getDynamicConfiguration().setConfig(GLOBAL_CONFIG_PATH, config.getConfig());
     } else {
-      dynamicConfiguration.setConfig(getPath(config.getKey()), config.getConfig());
+      getDynamicConfiguration().setConfig(getPath(config.getKey()), config.getConfig());
     }
   }
 
   @Override
   public String getConfig(String key) {
     if (Constants.GLOBAL_CONFIG.equals(key)) {
-      return dynamicConfiguration.getConfig(GLOBAL_CONFIG_PATH);
+      return getDynamicConfiguration().getConfig(GLOBAL_CONFIG_PATH);
     }
-    return dynamicConfiguration.getConfig(getPath(key));
+    return getDynamicConfiguration().getConfig(getPath(key));
   }
 
   @Override
   public String getConfigPath(String key) {
     if (Constants.GLOBAL_CONFIG.equals(key)) {
-      return dynamicConfiguration.getPath(GLOBAL_CONFIG_PATH);
+      return getDynamicConfiguration().getPath(GLOBAL_CONFIG_PATH);
     }
-    return dynamicConfiguration.getPath(getPath(key));
+    return getDynamicConfiguration().getPath(getPath(key));
   }
 
   @Override
   public boolean updateConfig(ConfigDTO configDTO) {
     String key = configDTO.getKey();
     if (Constants.GLOBAL_CONFIG.equals(key)) {
-      dynamicConfiguration.setConfig(GLOBAL_CONFIG_PATH, configDTO.getConfig());
+      getDynamicConfiguration().setConfig(GLOBAL_CONFIG_PATH, configDTO.getConfig());
     } else {
-      dynamicConfiguration.setConfig(getPath(key), configDTO.getConfig());
+      getDynamicConfiguration().setConfig(getPath(key), configDTO.getConfig());
     }
     return true;
   }
@@ -66,9 +66,9 @@ public class ManagementServiceImpl extends AbstractService implements Management
   @Override
   public boolean deleteConfig(String key) {
     if (Constants.GLOBAL_CONFIG.equals(key)) {
-      dynamicConfiguration.deleteConfig(GLOBAL_CONFIG_PATH);
+      getDynamicConfiguration().deleteConfig(GLOBAL_CONFIG_PATH);
     } else {
-      dynamicConfiguration.deleteConfig(getPath(key));
+      getDynamicConfiguration().deleteConfig(getPath(key));
     }
     return true;
   }
@@ -46,7 +46,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
   public void saveOverride(DynamicConfigDTO override) {
     String id = ConvertUtils.getIdFromDTO(override);
     String path = getPath(id);
-    String exitConfig = dynamicConfiguration.getConfig(path);
+    String exitConfig = getDynamicConfiguration().getConfig(path);
     List<OverrideConfig> configs = new ArrayList<>();
     OverrideDTO existOverride = new DynamicConfigDto2OverrideDtoAdapter(override);
     if (exitConfig != null) {
@@ -62,13 +62,13 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
     configs.addAll(override.getConfigs());
     existOverride.setEnabled(override.getEnabled());
     existOverride.setConfigs(configs);
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(existOverride));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(existOverride));
 
     // for2.6
     if (StringUtils.isNotEmpty(override.getService())) {
       List<Override> result = convertDto2OldOverride(override);
       for (Override o : result) {
-        registry.register(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().register(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
     }
   }
@@ -77,7 +77,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
   public void updateOverride(DynamicConfigDTO update) {
     String id = ConvertUtils.getIdFromDTO(update);
     String path = getPath(id);
-    String exitConfig = dynamicConfiguration.getConfig(path);
+    String exitConfig = getDynamicConfiguration().getConfig(path);
     if (exitConfig == null) {
       // throw exception
     }
@@ -95,17 +95,17 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
     configs.addAll(update.getConfigs());
     overrideDTO.setConfigs(configs);
     overrideDTO.setEnabled(update.getEnabled());
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(overrideDTO));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(overrideDTO));
 
     // for 2.6
     if (StringUtils.isNotEmpty(update.getService())) {
       List<Override> oldOverrides = convertDto2OldOverride(old);
       List<Override> updatedOverrides = convertDto2OldOverride(update);
       for (Override o : oldOverrides) {
-        registry.unregister(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().unregister(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
       for (Override o : updatedOverrides) {
-        registry.register(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().register(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
     }
   }
@@ -116,7 +116,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
       // throw exception
     }
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config == null) {
       // throw exception
     }
@@ -130,20 +130,20 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
         }
       }
       if (newConfigs.isEmpty()) {
-        dynamicConfiguration.deleteConfig(path);
+        getDynamicConfiguration().deleteConfig(path);
       } else {
         overrideDTO.setConfigs(newConfigs);
-        dynamicConfiguration.setConfig(path, YamlParser.dumpObject(overrideDTO));
+        getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(overrideDTO));
       }
     } else {
-      dynamicConfiguration.deleteConfig(path);
+      getDynamicConfiguration().deleteConfig(path);
     }
 
     // for 2.6
     if (overrideDTO.getScope().equals(Constants.SERVICE)) {
       List<Override> overrides = convertDto2OldOverride(old);
       for (Override o : overrides) {
-        registry.unregister(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().unregister(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
     }
   }
@@ -154,23 +154,23 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
       // throw exception
     }
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config == null) {
       // throw exception
     }
     OverrideDTO override = YamlParser.loadObject(config, OverrideDTO.class);
     DynamicConfigDTO old = OverrideUtils.createFromOverride(override);
     override.setEnabled(true);
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(override));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(override));
 
     // 2.6
     if (override.getScope().equals(Constants.SERVICE)) {
       List<Override> overrides = convertDto2OldOverride(old);
       for (Override o : overrides) {
         o.setEnabled(false);
-        registry.unregister(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().unregister(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
         o.setEnabled(true);
-        registry.register(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().register(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
     }
   }
@@ -181,23 +181,23 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
       // throw exception
     }
     String path = getPath(id);
-    if (dynamicConfiguration.getConfig(path) == null) {
+    if (getDynamicConfiguration().getConfig(path) == null) {
       // throw exception
     }
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     OverrideDTO override = YamlParser.loadObject(config, OverrideDTO.class);
     DynamicConfigDTO old = OverrideUtils.createFromOverride(override);
     override.setEnabled(false);
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(override));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(override));
 
     // for 2.6
     if (override.getScope().equals(Constants.SERVICE)) {
       List<Override> overrides = convertDto2OldOverride(old);
       for (Override o : overrides) {
         o.setEnabled(true);
-        registry.unregister(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().unregister(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
         o.setEnabled(false);
-        registry.register(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().register(o.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
     }
   }
@@ -208,7 +208,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
       // throw exception
     }
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       OverrideDTO overrideDTO = YamlParser.loadObject(config, OverrideDTO.class);
       return OverrideUtils.createFromOverride(overrideDTO);
@@ -221,10 +221,10 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
     String id = ConvertUtils.getIdFromDTO(weightDTO);
     String scope = ConvertUtils.getScopeFromDTO(weightDTO);
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     OverrideConfig overrideConfig = OverrideUtils.weightDto2Config(weightDTO);
     OverrideDTO overrideDTO = insertConfig(config, overrideConfig, id, scope, Constants.WEIGHT);
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(overrideDTO));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(overrideDTO));
 
     // for 2.6
     if (scope.equals(Constants.SERVICE)) {
@@ -237,7 +237,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
     String id = ConvertUtils.getIdFromDTO(weightDTO);
     String scope = ConvertUtils.getScopeFromDTO(weightDTO);
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     WeightDTO oldWeight = null;
     if (config != null) {
       OverrideDTO overrideDTO = YamlParser.loadObject(config, OverrideDTO.class);
@@ -254,7 +254,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
             break;
           }
         }
-        dynamicConfiguration.setConfig(path, YamlParser.dumpObject(overrideDTO));
+        getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(overrideDTO));
       } else {
         // throw exception
       }
@@ -272,7 +272,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
   @java.lang.Override
   public void deleteWeight(String id) {
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     OverrideConfig oldConfig = null;
     if (config != null) {
       OverrideDTO overrideDTO = YamlParser.loadObject(config, OverrideDTO.class);
@@ -288,9 +288,9 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
           }
         }
         if (configs.isEmpty()) {
-          dynamicConfiguration.deleteConfig(path);
+          getDynamicConfiguration().deleteConfig(path);
         } else {
-          dynamicConfiguration.setConfig(path, YamlParser.dumpObject(overrideDTO));
+          getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(overrideDTO));
         }
       }
 
@@ -307,7 +307,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
   @java.lang.Override
   public WeightDTO findWeight(String id) {
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       OverrideDTO overrideDTO = YamlParser.loadObject(config, OverrideDTO.class);
       List<OverrideConfig> configs = overrideDTO.getConfigs();
@@ -327,10 +327,10 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
     String id = ConvertUtils.getIdFromDTO(balancingDTO);
     String scope = ConvertUtils.getScopeFromDTO(balancingDTO);
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     OverrideConfig overrideConfig = OverrideUtils.balancingDto2Config(balancingDTO);
     OverrideDTO overrideDTO = insertConfig(config, overrideConfig, id, scope, Constants.BALANCING);
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(overrideDTO));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(overrideDTO));
 
     // for 2.6
     if (scope.equals(Constants.SERVICE)) {
@@ -342,7 +342,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
   public void updateBalance(BalancingDTO balancingDTO) {
     String id = ConvertUtils.getIdFromDTO(balancingDTO);
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     BalancingDTO oldBalancing = null;
     if (config != null) {
       OverrideDTO overrideDTO = YamlParser.loadObject(config, OverrideDTO.class);
@@ -361,7 +361,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
             break;
           }
         }
-        dynamicConfiguration.setConfig(path, YamlParser.dumpObject(overrideDTO));
+        getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(overrideDTO));
       } else {
         // throw exception
       }
@@ -379,7 +379,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
   @java.lang.Override
   public void deleteBalance(String id) {
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     OverrideConfig oldConfig = null;
     if (config != null) {
       OverrideDTO overrideDTO = YamlParser.loadObject(config, OverrideDTO.class);
@@ -395,9 +395,9 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
           }
         }
         if (configs.isEmpty()) {
-          dynamicConfiguration.deleteConfig(path);
+          getDynamicConfiguration().deleteConfig(path);
         } else {
-          dynamicConfiguration.setConfig(path, YamlParser.dumpObject(overrideDTO));
+          getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(overrideDTO));
         }
       }
       // for 2.6
@@ -413,7 +413,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
   @java.lang.Override
   public BalancingDTO findBalance(String id) {
     String path = getPath(id);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       OverrideDTO overrideDTO = YamlParser.loadObject(config, OverrideDTO.class);
       List<OverrideConfig> configs = overrideDTO.getConfigs();
@@ -524,7 +524,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
       for (String address : addresses) {
         weight.setAddress(address);
         Override override = new WeightToOverrideAdapter(weight);
-        registry.unregister(override.toUrl());
+        getRegistry().unregister(override.toUrl());
       }
     }
   }
@@ -538,7 +538,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
       for (String address : addresses) {
         weight.setAddress(address);
         Override override = new WeightToOverrideAdapter(weight);
-        registry.register(override.toUrl());
+        getRegistry().register(override.toUrl());
       }
     }
   }
@@ -548,7 +548,7 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
     loadBalance.setService(balancingDTO.getService());
     loadBalance.setMethod(balancingDTO.getMethodName());
     loadBalance.setStrategy(balancingDTO.getStrategy());
-    registry.unregister(new LoadBalance2OverrideAdapter(loadBalance).toUrl());
+    getRegistry().unregister(new LoadBalance2OverrideAdapter(loadBalance).toUrl());
   }
 
   private void registerBalancing(BalancingDTO balancingDTO) {
@@ -556,6 +556,6 @@ public class OverrideServiceImpl extends AbstractService implements OverrideServ
     loadBalance.setService(balancingDTO.getService());
     loadBalance.setMethod(balancingDTO.getMethodName());
     loadBalance.setStrategy(balancingDTO.getStrategy());
-    registry.register(new LoadBalance2OverrideAdapter(loadBalance).toUrl());
+    getRegistry().register(new LoadBalance2OverrideAdapter(loadBalance).toUrl());
   }
 }
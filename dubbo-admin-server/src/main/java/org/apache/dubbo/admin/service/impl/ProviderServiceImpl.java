@@ -16,37 +16,55 @@
  */
 package org.apache.dubbo.admin.service.impl;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.dubbo.admin.common.exception.ParamValidationException;
 import org.apache.dubbo.admin.common.utils.*;
 import org.apache.dubbo.admin.model.domain.Provider;
 import org.apache.dubbo.admin.model.dto.ServiceDTO;
+import org.apache.dubbo.admin.model.dto.ServicePageDTO;
+import org.apache.dubbo.admin.registry.cache.RegistryIndex;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
 import org.apache.dubbo.admin.service.ProviderService;
+import org.apache.dubbo.admin.service.RequestExecutor;
 import org.apache.dubbo.common.URL;
-import org.apache.dubbo.common.utils.CollectionUtils;
 import org.apache.dubbo.metadata.identifier.MetadataIdentifier;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 
 import static org.apache.dubbo.admin.common.utils.Constants.OLD_DUBBO_VERSION;
 
 /** @author wujunshen */
 @Component
 public class ProviderServiceImpl extends AbstractService implements ProviderService {
+  private static final String CURSOR_SEPARATOR = "\n";
+
+  @Resource private RequestExecutor requestExecutor;
+
   @Override
   public void create(Provider provider) {
     URL url = provider.toUrl();
-    registry.register(url);
+    getRegistry().register(url);
   }
 
   @Override
   public String getProviderMetaData(MetadataIdentifier providerIdentifier) {
-    return metaDataCollector.getProviderMetaData(providerIdentifier);
+    // not cached by epoch, the metadata report is written asynchronously after registering
+    return getMetaDataCollector().getProviderMetaData(providerIdentifier);
+  }
+
+  @Override
+  public List<CompletableFuture<String>> getProviderMetaData(
+      List<MetadataIdentifier> providerIdentifiers) {
+    List<CompletableFuture<String>> ret = new ArrayList<>(providerIdentifiers.size());
+    for (MetadataIdentifier identifier : providerIdentifiers) {
+      ret.add(requestExecutor.submit(() -> getProviderMetaData(identifier)));
+    }
+    return ret;
   }
 
   @Override
@@ -55,7 +73,7 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
     if (oldProvider == null) {
       throw new IllegalStateException("Provider was changed!");
     }
-    registry.unregister(oldProvider);
+    getRegistry().unregister(oldProvider);
   }
 
   @Override
@@ -71,8 +89,8 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
     }
     URL newProvider = provider.toUrl();
 
-    registry.unregister(oldProvider);
-    registry.register(newProvider);
+    getRegistry().unregister(oldProvider);
+    getRegistry().register(newProvider);
   }
 
   @Override
@@ -81,32 +99,42 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
   }
 
   public Pair<String, URL> findProviderUrlPair(String id) {
-    return SyncUtils.filterFromCategory(getRegistryCache(), Constants.PROVIDERS_CATEGORY, id);
+    RegistrySnapshot snapshot = getSnapshot();
+    String service = snapshot.getIndex(Constants.PROVIDERS_CATEGORY).getServiceById(id);
+    if (service == null) {
+      return null;
+    }
+    URL url = snapshot.getServices(Constants.PROVIDERS_CATEGORY).get(service).get(id);
+    return url == null ? null : new Pair<>(id, url);
   }
 
   @Override
   public Set<String> findServices() {
-    Set<String> ret = new HashSet<>();
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
-        getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
-    if (providerUrls != null) {
-      ret.addAll(providerUrls.keySet());
-    }
-    return ret;
+    return cached(
+        "services",
+        Constants.PROVIDERS_CATEGORY,
+        () -> {
+          Set<String> ret = new HashSet<>();
+          Map<String, Map<String, URL>> providerUrls =
+              getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
+          if (providerUrls != null) {
+            ret.addAll(providerUrls.keySet());
+          }
+          return Collections.unmodifiableSet(ret);
+        });
   }
 
   @Override
   public List<String> findAddresses() {
+    // one address per provider, like findAddressesByApplication, so not from the address index
     List<String> ret = new ArrayList<>();
-
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
+    Map<String, Map<String, URL>> providerUrls =
         getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
     if (null == providerUrls) {
       return ret;
     }
 
-    for (Entry<String, Map<String, URL>> e1 : providerUrls.entrySet()) {
-      Map<String, URL> value = e1.getValue();
+    for (Map<String, URL> value : providerUrls.values()) {
       for (Entry<String, URL> e2 : value.entrySet()) {
         URL u = e2.getValue();
         String app = u.getAddress();
@@ -121,29 +149,13 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
 
   @Override
   public List<String> findAddressesByApplication(String application) {
-    List<String> ret = new ArrayList<>();
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
-        getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
-    for (Entry<String, Map<String, URL>> e1 : providerUrls.entrySet()) {
-      Map<String, URL> value = e1.getValue();
-      for (Entry<String, URL> e2 : value.entrySet()) {
-        URL u = e2.getValue();
-        if (application.equals(u.getParameter(Constants.APPLICATION))) {
-          String addr = u.getAddress();
-          if (addr != null) {
-            ret.add(addr);
-          }
-        }
-      }
-    }
-
-    return ret;
+    return getRegistryIndex(Constants.PROVIDERS_CATEGORY).getAddressesByApplication(application);
   }
 
   @Override
   public List<String> findAddressesByService(String service) {
     List<String> ret = new ArrayList<>();
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
+    Map<String, Map<String, URL>> providerUrls =
         getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
     if (null == providerUrls) {
       return ret;
@@ -163,7 +175,7 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
   @Override
   public List<String> findApplicationsByServiceName(String service) {
     List<String> ret = new ArrayList<>();
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
+    Map<String, Map<String, URL>> providerUrls =
         getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
     if (null == providerUrls) {
       return ret;
@@ -195,11 +207,7 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
   }
 
   private Map<String, URL> findProviderUrlByService(String service) {
-    Map<String, String> filter = new ConcurrentHashMap<>(2);
-    filter.put(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
-    filter.put(SyncUtils.SERVICE_FILTER_KEY, service);
-
-    return SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    return UrlFilter.ALL.service(service).filter(getProviderServices());
   }
 
   @Override
@@ -208,9 +216,11 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
   }
 
   private Map<String, URL> findAllProviderUrl() {
-    Map<String, String> filter = new ConcurrentHashMap<>(2);
-    filter.put(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
-    return SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    return UrlFilter.ALL.filter(getProviderServices());
+  }
+
+  private Map<String, Map<String, URL>> getProviderServices() {
+    return getSnapshot().getServices(Constants.PROVIDERS_CATEGORY);
   }
 
   @Override
@@ -219,58 +229,30 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
   }
 
   public Map<String, URL> findProviderUrlByAddress(String address) {
-    Map<String, String> filter = new ConcurrentHashMap<>(2);
-    filter.put(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
-    filter.put(SyncUtils.ADDRESS_FILTER_KEY, address);
-
-    return SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    RegistrySnapshot snapshot = getSnapshot();
+    Set<String> services = snapshot.getIndex(Constants.PROVIDERS_CATEGORY).getServicesByIp(address);
+    return UrlFilter.ALL
+        .address(address)
+        .filter(snapshot.getServices(Constants.PROVIDERS_CATEGORY), services);
   }
 
   @Override
   public List<String> findServicesByAddress(String address) {
-    List<String> ret = new ArrayList<>();
-
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
-        getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
-    if (providerUrls == null || address == null || address.length() == 0) {
-      return ret;
-    }
-
-    for (Entry<String, Map<String, URL>> e1 : providerUrls.entrySet()) {
-      Map<String, URL> value = e1.getValue();
-      for (Entry<String, URL> e2 : value.entrySet()) {
-        URL u = e2.getValue();
-        if (address.equals(u.getAddress())) {
-          ret.add(e1.getKey());
-          break;
-        }
-      }
+    if (address == null || address.length() == 0) {
+      return new ArrayList<>();
     }
-
-    return ret;
+    return new ArrayList<>(
+        getRegistryIndex(Constants.PROVIDERS_CATEGORY).getServicesByAddress(address));
   }
 
   @Override
   public Set<String> findApplications() {
-    Set<String> ret = new HashSet<>();
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
-        getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
-    if (providerUrls == null) {
-      return ret;
-    }
-
-    for (Entry<String, Map<String, URL>> e1 : providerUrls.entrySet()) {
-      Map<String, URL> value = e1.getValue();
-      for (Entry<String, URL> e2 : value.entrySet()) {
-        URL u = e2.getValue();
-        String app = u.getParameter(Constants.APPLICATION);
-        if (app != null) {
-          ret.add(app);
-        }
-      }
-    }
-
-    return ret;
+    return cached(
+        "applications",
+        Constants.PROVIDERS_CATEGORY,
+        () ->
+            Collections.unmodifiableSet(
+                new HashSet<>(getRegistryIndex(Constants.PROVIDERS_CATEGORY).getApplications())));
   }
 
   @Override
@@ -280,74 +262,51 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
 
   @Override
   public String findVersionInApplication(String application) {
-    List<String> services = findServicesByApplication(application);
-    if (CollectionUtils.isEmpty(services)) {
+    String version =
+        getRegistryIndex(Constants.PROVIDERS_CATEGORY).getVersionByApplication(application);
+    if (version == null) {
       throw new ParamValidationException("there is no service for application: " + application);
     }
-    return findServiceVersion(services.get(0), application);
+    return version;
   }
 
   @Override
   public String findServiceVersion(String serviceName, String application) {
-    String version = OLD_DUBBO_VERSION;
-    Map<String, URL> result = findProviderUrlByAppAndService(application, serviceName);
-    if (result.isEmpty()) {
-      return version;
-    }
-
-    Optional<URL> op = Optional.of(result.values().stream().findFirst()).get();
-    URL url = op.orElse(null);
-
-    if (Objects.requireNonNull(url).getParameter(Constants.SPECIFICATION_VERSION_KEY) == null) {
-      return version;
-    }
-    return url.getParameter(Constants.SPECIFICATION_VERSION_KEY);
+    String version =
+        getRegistryIndex(Constants.PROVIDERS_CATEGORY).getVersion(serviceName, application);
+    return version == null ? OLD_DUBBO_VERSION : version;
   }
 
   private Map<String, URL> findProviderUrlByAppAndService(String app, String service) {
-    Map<String, String> filter = new ConcurrentHashMap<>(3);
-    filter.put(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
-    filter.put(Constants.APPLICATION, app);
-    filter.put(SyncUtils.SERVICE_FILTER_KEY, service);
-    return SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    return UrlFilter.ALL
+        .service(service)
+        .parameter(Constants.APPLICATION, app)
+        .filter(getProviderServices());
   }
 
   private Map<String, URL> findProviderUrlByApplication(String application) {
-    Map<String, String> filter = new ConcurrentHashMap<>(2);
-    filter.put(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
-    filter.put(Constants.APPLICATION, application);
-    return SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    RegistrySnapshot snapshot = getSnapshot();
+    Set<String> services =
+        snapshot.getIndex(Constants.PROVIDERS_CATEGORY).getServicesByApplication(application);
+    return UrlFilter.ALL
+        .parameter(Constants.APPLICATION, application)
+        .filter(snapshot.getServices(Constants.PROVIDERS_CATEGORY), services);
   }
 
   @Override
   public List<String> findServicesByApplication(String application) {
-    List<String> result = new ArrayList<>();
-
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
-        getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
-    if (providerUrls == null || application == null || application.length() == 0) {
-      return result;
-    }
-
-    for (Entry<String, Map<String, URL>> e1 : providerUrls.entrySet()) {
-      Map<String, URL> value = e1.getValue();
-      for (Entry<String, URL> e2 : value.entrySet()) {
-        URL u = e2.getValue();
-        if (application.equals(u.getParameter(Constants.APPLICATION))) {
-          result.add(e1.getKey());
-          break;
-        }
-      }
+    if (application == null || application.length() == 0) {
+      return new ArrayList<>();
     }
-
-    return result;
+    return new ArrayList<>(
+        getRegistryIndex(Constants.PROVIDERS_CATEGORY).getServicesByApplication(application));
   }
 
   @Override
   public List<String> findMethodsByService(String service) {
     List<String> ret = new ArrayList<>();
 
-    ConcurrentMap<String, Map<String, URL>> providerUrls =
+    Map<String, Map<String, URL>> providerUrls =
         getRegistryCache().get(Constants.PROVIDERS_CATEGORY);
     if (providerUrls == null || service == null || service.length() == 0) {
       return ret;
@@ -382,11 +341,7 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
   }
 
   private Pair<String, URL> findProviderUrl(String service, String address) {
-    Map<String, String> filter = new ConcurrentHashMap<>(2);
-    filter.put(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
-    filter.put(SyncUtils.ADDRESS_FILTER_KEY, address);
-
-    Map<String, URL> ret = SyncUtils.filterFromCategory(getRegistryCache(), filter);
+    Map<String, URL> ret = findProviderUrlByAddress(address);
     if (ret.isEmpty()) {
       return null;
     } else {
@@ -397,6 +352,15 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
 
   @Override
   public Set<ServiceDTO> getServiceDtoList(String pattern, String filter, String env) {
+    return cached(
+        "serviceDtoList",
+        Constants.PROVIDERS_CATEGORY,
+        () -> Collections.unmodifiableSet(loadServiceDtoList(pattern, filter)),
+        pattern,
+        filter);
+  }
+
+  private Set<ServiceDTO> loadServiceDtoList(String pattern, String filter) {
     List<Provider> providers = new ArrayList<>();
     if (!filter.contains(Constants.ANY_VALUE) && !filter.contains(Constants.INTERROGATION_POINT)) {
       // filter with specific string
@@ -408,45 +372,177 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
         providers = findByApplication(filter);
       }
     } else {
-      // filter with fuzzy search
-      Set<String> candidates = Collections.emptySet();
+      // filter with fuzzy search, the index only matches the names sharing its literal parts
+      RegistryIndex index = getRegistryIndex(Constants.PROVIDERS_CATEGORY);
+      Set<ServiceDTO> result = new TreeSet<>();
       if (Constants.SERVICE.equals(pattern)) {
-        candidates = findServices();
+        for (String service : index.searchServices(filter)) {
+          for (String app : index.getApplicationsByService(service)) {
+            result.add(toServiceDTO(app, service));
+          }
+        }
       } else if (Constants.APPLICATION.equals(pattern)) {
-        candidates = findApplications();
+        for (String app : index.searchApplications(filter)) {
+          for (String service : index.getServicesByApplication(app)) {
+            result.add(toServiceDTO(app, service));
+          }
+        }
       } else if (Constants.IP.equals(pattern)) {
-        candidates = new HashSet<>(findAddresses());
-      }
-      // replace dot symbol and asterisk symbol to java-based regex pattern
-      filter =
-          filter
-              .toLowerCase()
-              .replace(Constants.PUNCTUATION_POINT, Constants.PUNCTUATION_SEPARATOR_POINT);
-      // filter start with [* 、? 、+] will triggering PatternSyntaxException
-      if (filter.startsWith(Constants.ANY_VALUE)
-          || filter.startsWith(Constants.INTERROGATION_POINT)
-          || filter.startsWith(Constants.PLUS_SIGNS)) {
-        filter = Constants.PUNCTUATION_POINT + filter;
-      }
-      // search with no case insensitive
-      Pattern regex = Pattern.compile(filter, Pattern.CASE_INSENSITIVE);
-      for (String candidate : candidates) {
-        Matcher matcher = regex.matcher(candidate);
-        if (matcher.matches() || matcher.lookingAt()) {
-          if (Constants.SERVICE.equals(pattern)) {
-            providers.addAll(findByService(candidate));
-          } else if (Constants.IP.equals(pattern)) {
-            providers.addAll(findByAddress(candidate));
-          } else {
-            providers.addAll(findByApplication(candidate));
+        for (String address : index.searchAddresses(filter)) {
+          for (String service : index.getServicesByAddress(address)) {
+            for (String app : index.getApplicationsByAddress(service, address)) {
+              result.add(toServiceDTO(app, service));
+            }
           }
         }
       }
+      return result;
     }
 
     return convertProviders2DTO(providers);
   }
 
+  @Override
+  public ServicePageDTO searchServices(
+      String pattern, String filter, String cursor, int size, boolean count) {
+    if (size <= 0) {
+      throw new ParamValidationException("Page size must be positive");
+    }
+    return cached(
+        "searchServices",
+        Constants.PROVIDERS_CATEGORY,
+        () -> loadServicePage(pattern, filter, cursor, size, count),
+        pattern,
+        filter,
+        cursor,
+        size,
+        count);
+  }
+
+  private ServicePageDTO loadServicePage(
+      String pattern, String filter, String cursor, int size, boolean count) {
+    ServiceDTO after = cursor == null ? null : decodeCursor(cursor);
+    ServicePageDTO page = new ServicePageDTO();
+    List<ServiceDTO> content = page.getContent();
+    boolean more = false;
+    if (!Constants.SERVICE.equals(pattern) && !Constants.APPLICATION.equals(pattern)) {
+      // few services share an address, all of them are sorted in memory
+      Set<ServiceDTO> services = getServiceDtoList(pattern, filter, null);
+      for (ServiceDTO service : services) {
+        if (after == null || service.compareTo(after) > 0) {
+          if (content.size() == size) {
+            more = true;
+            break;
+          }
+          content.add(service);
+        }
+      }
+      if (count) {
+        page.setTotal((long) services.size());
+      }
+    } else {
+      RegistryIndex index = getRegistryIndex(Constants.PROVIDERS_CATEGORY);
+      boolean fuzzy =
+          filter.contains(Constants.ANY_VALUE) || filter.contains(Constants.INTERROGATION_POINT);
+      // matching services, null for every service of the applications
+      Set<String> services = null;
+      List<String> applications;
+      if (Constants.SERVICE.equals(pattern)) {
+        services =
+            fuzzy
+                ? index.searchServices(filter)
+                : index.getApplicationsByService(filter).isEmpty()
+                    ? Collections.emptySet()
+                    : Collections.singleton(filter);
+        applications = index.getSortedApplications();
+        if (services.size() < applications.size()) {
+          // cheaper to start from the services than to go through every application
+          Set<String> serviceApplications = new TreeSet<>();
+          for (String service : services) {
+            serviceApplications.addAll(index.getApplicationsByService(service));
+          }
+          applications = new ArrayList<>(serviceApplications);
+        }
+      } else if (fuzzy) {
+        applications = new ArrayList<>(index.searchApplications(filter));
+      } else {
+        applications =
+            index.getServicesByApplication(filter).isEmpty()
+                ? Collections.emptyList()
+                : Collections.singletonList(filter);
+      }
+      // the results are ordered by application first, start from the cursor's one
+      int from = 0;
+      if (after != null) {
+        from = Collections.binarySearch(applications, StringUtils.trimToEmpty(after.getAppName()));
+        from = from < 0 ? -from - 1 : from;
+      }
+      for (int i = from; i < applications.size() && !more; i++) {
+        String app = applications.get(i);
+        Set<ServiceDTO> row = new TreeSet<>();
+        for (String service : index.getServicesByApplication(app)) {
+          if (services == null || services.contains(service)) {
+            row.add(toServiceDTO(app, service));
+          }
+        }
+        for (ServiceDTO service : row) {
+          if (after == null || service.compareTo(after) > 0) {
+            if (content.size() == size) {
+              more = true;
+              break;
+            }
+            content.add(service);
+          }
+        }
+      }
+      if (count) {
+        long total = 0;
+        if (services != null) {
+          for (String service : services) {
+            total += index.getApplicationsByService(service).size();
+          }
+        } else {
+          for (String app : applications) {
+            total += index.getServicesByApplication(app).size();
+          }
+        }
+        page.setTotal(total);
+      }
+    }
+    if (more) {
+      page.setCursor(encodeCursor(content.get(content.size() - 1)));
+    }
+    return page;
+  }
+
+  /** The cursor is the last service of a page, so services coming or going do not shift it. */
+  private static String encodeCursor(ServiceDTO service) {
+    String key =
+        String.join(
+            CURSOR_SEPARATOR,
+            StringUtils.trimToEmpty(service.getAppName()),
+            StringUtils.trimToEmpty(service.getService()),
+            StringUtils.trimToEmpty(service.getGroup()),
+            StringUtils.trimToEmpty(service.getVersion()));
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static ServiceDTO decodeCursor(String cursor) {
+    try {
+      String[] key =
+          new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+              .split(CURSOR_SEPARATOR, -1);
+      if (key.length == 4) {
+        return new ServiceDTO(key[1], key[0], key[2], key[3]);
+      }
+    } catch (IllegalArgumentException e) {
+      // not base64
+    }
+    throw new ParamValidationException("Invalid cursor: " + cursor);
+  }
+
   /**
    * Convert provider list to ServiceDTO list
    *
@@ -456,18 +552,17 @@ public class ProviderServiceImpl extends AbstractService implements ProviderServ
   public Set<ServiceDTO> convertProviders2DTO(List<Provider> providers) {
     Set<ServiceDTO> result = new TreeSet<>();
     for (Provider provider : providers) {
-      String app = provider.getApplication();
-      String service = provider.getService();
-      String group = Tool.getGroup(service);
-      String version = Tool.getVersion(service);
-      String interfaze = Tool.getInterface(service);
-      ServiceDTO s = new ServiceDTO();
-      s.setAppName(app);
-      s.setService(interfaze);
-      s.setGroup(group);
-      s.setVersion(version);
-      result.add(s);
+      result.add(toServiceDTO(provider.getApplication(), provider.getService()));
     }
     return result;
   }
+
+  private static ServiceDTO toServiceDTO(String app, String service) {
+    ServiceDTO s = new ServiceDTO();
+    s.setAppName(app);
+    s.setService(Tool.getInterface(service));
+    s.setGroup(Tool.getGroup(service));
+    s.setVersion(Tool.getVersion(service));
+    return s;
+  }
 }
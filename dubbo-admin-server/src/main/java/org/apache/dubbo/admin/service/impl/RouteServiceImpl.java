@@ -45,19 +45,19 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
   public void createConditionRoute(ConditionRouteDTO conditionRoute) {
     String id = ConvertUtils.getIdFromDTO(conditionRoute);
     String path = getPath(id, Constants.CONDITION_ROUTE);
-    String existConfig = dynamicConfiguration.getConfig(path);
+    String existConfig = getDynamicConfiguration().getConfig(path);
     RoutingRule existRule = null;
     if (existConfig != null) {
       existRule = YamlParser.loadObject(existConfig, RoutingRule.class);
     }
     existRule = RouteUtils.insertConditionRule(existRule, conditionRoute);
     // register2.7
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(existRule));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(existRule));
 
     // register2.6
     if (StringUtils.isNotEmpty(conditionRoute.getService())) {
       for (Route old : convertRouteToOldRoute(conditionRoute)) {
-        registry.register(old.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().register(old.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
     }
   }
@@ -66,22 +66,22 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
   public void updateConditionRoute(ConditionRouteDTO newConditionRoute) {
     String id = ConvertUtils.getIdFromDTO(newConditionRoute);
     String path = getPath(id, Constants.CONDITION_ROUTE);
-    String existConfig = dynamicConfiguration.getConfig(path);
+    String existConfig = getDynamicConfiguration().getConfig(path);
     if (existConfig == null) {
       throw new ResourceNotFoundException("no existing condition route for path: " + path);
     }
     RoutingRule routingRule = YamlParser.loadObject(existConfig, RoutingRule.class);
     ConditionRouteDTO oldConditionRoute = RouteUtils.createConditionRouteFromRule(routingRule);
     routingRule = RouteUtils.insertConditionRule(routingRule, newConditionRoute);
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(routingRule));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(routingRule));
 
     // for 2.6
     if (StringUtils.isNotEmpty(newConditionRoute.getService())) {
       for (Route old : convertRouteToOldRoute(oldConditionRoute)) {
-        registry.unregister(old.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().unregister(old.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
       for (Route updated : convertRouteToOldRoute(newConditionRoute)) {
-        registry.register(updated.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().register(updated.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
     }
   }
@@ -92,7 +92,7 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
       // throw exception
     }
     String path = getPath(id, Constants.CONDITION_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config == null) {
       // throw exception
     }
@@ -101,9 +101,9 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
         RouteUtils.filterBlackWhiteListFromConditions(route.getConditions());
     if (!blackWhiteList.isEmpty()) {
       route.setConditions(blackWhiteList);
-      dynamicConfiguration.setConfig(path, YamlParser.dumpObject(route));
+      getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(route));
     } else {
-      dynamicConfiguration.deleteConfig(path);
+      getDynamicConfiguration().deleteConfig(path);
     }
 
     // for 2.6
@@ -111,7 +111,7 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
       RoutingRule originRule = YamlParser.loadObject(config, RoutingRule.class);
       ConditionRouteDTO conditionRouteDTO = RouteUtils.createConditionRouteFromRule(originRule);
       for (Route old : convertRouteToOldRoute(conditionRouteDTO)) {
-        registry.unregister(old.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
+        getRegistry().unregister(old.toUrl().addParameter(Constants.COMPATIBLE_CONFIG, true));
       }
     }
   }
@@ -119,7 +119,7 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
   @Override
   public void deleteAccess(String id) {
     String path = getPath(id, Constants.CONDITION_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       RoutingRule ruleDTO = YamlParser.loadObject(config, RoutingRule.class);
       List<String> blackWhiteList =
@@ -127,15 +127,15 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
       List<String> conditions =
           RouteUtils.filterConditionRuleFromConditions(ruleDTO.getConditions());
       if (conditions.isEmpty()) {
-        dynamicConfiguration.deleteConfig(path);
+        getDynamicConfiguration().deleteConfig(path);
       } else {
         ruleDTO.setConditions(conditions);
-        dynamicConfiguration.setConfig(path, YamlParser.dumpObject(ruleDTO));
+        getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(ruleDTO));
       }
       // 2.6
       if (ruleDTO.getScope().equals(Constants.SERVICE) && !blackWhiteList.isEmpty()) {
         Route route = RouteUtils.convertBlackWhiteList2Route(blackWhiteList, Constants.SERVICE, id);
-        registry.unregister(route.toUrl());
+        getRegistry().unregister(route.toUrl());
       }
     }
   }
@@ -144,7 +144,7 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
   public void createAccess(AccessDTO accessDTO) {
     String id = ConvertUtils.getIdFromDTO(accessDTO);
     String path = getPath(id, Constants.CONDITION_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     List<String> blackWhiteList = RouteUtils.convertToBlackWhiteList(accessDTO);
     RoutingRule ruleDTO;
     if (config == null) {
@@ -165,19 +165,19 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
         ruleDTO.getConditions().addAll(blackWhiteList);
       }
     }
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(ruleDTO));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(ruleDTO));
 
     // for 2.6
     if (ruleDTO.getScope().equals("service")) {
       Route route = RouteUtils.convertAccessDto2Route(accessDTO);
-      registry.register(route.toUrl());
+      getRegistry().register(route.toUrl());
     }
   }
 
   @Override
   public AccessDTO findAccess(String id) {
     String path = getPath(id, Constants.CONDITION_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       RoutingRule ruleDTO = YamlParser.loadObject(config, RoutingRule.class);
       List<String> blackWhiteList =
@@ -192,7 +192,7 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
     String key = ConvertUtils.getIdFromDTO(accessDTO);
     String path = getPath(key, Constants.CONDITION_ROUTE);
     List<String> blackWhiteList = RouteUtils.convertToBlackWhiteList(accessDTO);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     List<String> oldList = null;
     if (config != null) {
       RoutingRule ruleDTO = YamlParser.loadObject(config, RoutingRule.class);
@@ -201,22 +201,22 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
           RouteUtils.filterConditionRuleFromConditions(ruleDTO.getConditions());
       conditions.addAll(blackWhiteList);
       ruleDTO.setConditions(conditions);
-      dynamicConfiguration.setConfig(path, YamlParser.dumpObject(ruleDTO));
+      getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(ruleDTO));
     }
 
     // 2.6
     if (StringUtils.isNotEmpty(accessDTO.getService())) {
       Route oldRoute = RouteUtils.convertBlackWhiteList2Route(oldList, Constants.SERVICE, key);
       Route newRoute = RouteUtils.convertAccessDto2Route(accessDTO);
-      registry.unregister(oldRoute.toUrl());
-      registry.register(newRoute.toUrl());
+      getRegistry().unregister(oldRoute.toUrl());
+      getRegistry().register(newRoute.toUrl());
     }
   }
 
   @Override
   public void enableConditionRoute(String id) {
     String path = getPath(id, Constants.CONDITION_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       RoutingRule ruleDTO = YamlParser.loadObject(config, RoutingRule.class);
 
@@ -225,22 +225,22 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
         for (Route oldRoute :
             convertRouteToOldRoute(RouteUtils.createConditionRouteFromRule(ruleDTO))) {
           URL oldUrl = oldRoute.toUrl();
-          registry.unregister(oldUrl);
+          getRegistry().unregister(oldUrl);
           oldUrl = oldUrl.addParameter("enabled", true);
-          registry.register(oldUrl);
+          getRegistry().register(oldUrl);
         }
       }
 
       // 2.7
       ruleDTO.setEnabled(true);
-      dynamicConfiguration.setConfig(path, YamlParser.dumpObject(ruleDTO));
+      getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(ruleDTO));
     }
   }
 
   @Override
   public void disableConditionRoute(String serviceName) {
     String path = getPath(serviceName, Constants.CONDITION_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       RoutingRule routeRule = YamlParser.loadObject(config, RoutingRule.class);
 
@@ -249,22 +249,22 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
         for (Route oldRoute :
             convertRouteToOldRoute(RouteUtils.createConditionRouteFromRule(routeRule))) {
           URL oldUrl = oldRoute.toUrl();
-          registry.unregister(oldUrl);
+          getRegistry().unregister(oldUrl);
           oldUrl = oldUrl.addParameter("enabled", false);
-          registry.register(oldUrl);
+          getRegistry().register(oldUrl);
         }
       }
 
       // 2.7
       routeRule.setEnabled(false);
-      dynamicConfiguration.setConfig(path, YamlParser.dumpObject(routeRule));
+      getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(routeRule));
     }
   }
 
   @Override
   public ConditionRouteDTO findConditionRoute(String id) {
     String path = getPath(id, Constants.CONDITION_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       RoutingRule routingRule = YamlParser.loadObject(config, RoutingRule.class);
       ConditionRouteDTO conditionRouteDTO = RouteUtils.createConditionRouteFromRule(routingRule);
@@ -282,53 +282,53 @@ public class RouteServiceImpl extends AbstractService implements RouteService {
     String id = ConvertUtils.getIdFromDTO(tagRoute);
     String path = getPath(id, Constants.TAG_ROUTE);
     TagRoute store = RouteUtils.convertTagRoute2Store(tagRoute);
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(store));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(store));
   }
 
   @Override
   public void updateTagRoute(TagRouteDTO tagRoute) {
     String id = ConvertUtils.getIdFromDTO(tagRoute);
     String path = getPath(id, Constants.TAG_ROUTE);
-    if (dynamicConfiguration.getConfig(path) == null) {
+    if (getDynamicConfiguration().getConfig(path) == null) {
       throw new ResourceNotFoundException("can not find tagroute: " + id);
       // throw exception
     }
     TagRoute store = RouteUtils.convertTagRoute2Store(tagRoute);
-    dynamicConfiguration.setConfig(path, YamlParser.dumpObject(store));
+    getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(store));
   }
 
   @Override
   public void deleteTagRoute(String id) {
     String path = getPath(id, Constants.TAG_ROUTE);
-    dynamicConfiguration.deleteConfig(path);
+    getDynamicConfiguration().deleteConfig(path);
   }
 
   @Override
   public void enableTagRoute(String id) {
     String path = getPath(id, Constants.TAG_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       TagRoute tagRoute = YamlParser.loadObject(config, TagRoute.class);
       tagRoute.setEnabled(true);
-      dynamicConfiguration.setConfig(path, YamlParser.dumpObject(tagRoute));
+      getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(tagRoute));
     }
   }
 
   @Override
   public void disableTagRoute(String id) {
     String path = getPath(id, Constants.TAG_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       TagRoute tagRoute = YamlParser.loadObject(config, TagRoute.class);
       tagRoute.setEnabled(false);
-      dynamicConfiguration.setConfig(path, YamlParser.dumpObject(tagRoute));
+      getDynamicConfiguration().setConfig(path, YamlParser.dumpObject(tagRoute));
     }
   }
 
   @Override
   public TagRouteDTO findTagRoute(String id) {
     String path = getPath(id, Constants.TAG_ROUTE);
-    String config = dynamicConfiguration.getConfig(path);
+    String config = getDynamicConfiguration().getConfig(path);
     if (config != null) {
       TagRoute tagRoute = YamlParser.loadObject(config, TagRoute.class);
       return RouteUtils.convertTagRoute2Display(tagRoute);
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.common.utils;
+
+import org.apache.dubbo.common.URL;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+public class UrlFilterTest {
+
+  @Test
+  public void testFilter() {
+    Map<String, URL> demo = new HashMap<>();
+    demo.put(
+        "1", URL.valueOf("dubbo://10.0.0.1:20880/DemoService?application=app-a&side=provider"));
+    demo.put(
+        "2", URL.valueOf("dubbo://10.0.0.2:20880/DemoService?application=app-b&side=provider"));
+    Map<String, Map<String, URL>> services = new HashMap<>();
+    services.put("DemoService", demo);
+    services.put(
+        "OtherService",
+        Collections.singletonMap(
+            "3", URL.valueOf("dubbo://10.0.0.1:20881/OtherService?application=app-a")));
+
+    Assert.assertEquals(3, UrlFilter.ALL.filter(services).size());
+    Assert.assertEquals(
+        Collections.singleton("1"),
+        UrlFilter.ALL
+            .parameter("side", "provider")
+            .parameter(Constants.APPLICATION, "app-a")
+            .filter(services)
+            .keySet());
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList("1", "3")),
+        UrlFilter.ALL.address("10.0.0.1").filter(services).keySet());
+    Assert.assertEquals(
+        Collections.singleton("3"),
+        UrlFilter.ALL.address("10.0.0.1:20881").filter(services).keySet());
+    Assert.assertTrue(UrlFilter.ALL.address("10.0.0.1:port").filter(services).isEmpty());
+    Assert.assertEquals(
+        Collections.singleton("2"),
+        UrlFilter.ALL.service("DemoService").address("10.0.0.2").filter(services).keySet());
+    Assert.assertEquals(
+        Collections.singleton("3"),
+        UrlFilter.ALL
+            .address("10.0.0.1")
+            .filter(services, Collections.singleton("OtherService"))
+            .keySet());
+
+    Map<String, String> filter = new HashMap<>();
+    filter.put(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY);
+    filter.put(SyncUtils.SERVICE_FILTER_KEY, "DemoService");
+    filter.put(Constants.APPLICATION, "app-b");
+    Assert.assertEquals(
+        Collections.singleton("2"),
+        SyncUtils.filterFromCategory(
+                Collections.singletonMap(Constants.PROVIDERS_CATEGORY, services), filter)
+            .keySet());
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.controller;
+
+import org.apache.dubbo.admin.AbstractSpringIntegrationTest;
+import org.apache.dubbo.admin.service.RegistryReplication;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.annotation.Resource;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class RegistryReplicationControllerTest extends AbstractSpringIntegrationTest {
+  private static final String SNAPSHOT = "/dubbo-admin/api/{env}/registry/replication/snapshot";
+
+  private static final String EVENTS = "/dubbo-admin/api/{env}/registry/replication/events?after=0";
+
+  @Resource private RegistryReplication registryReplication;
+
+  @After
+  public void tearDown() {
+    ReflectionTestUtils.setField(registryReplication, "enabled", false);
+    ReflectionTestUtils.setField(registryReplication, "token", "");
+    ReflectionTestUtils.setField(registryReplication, "leading", false);
+  }
+
+  @Test
+  public void shouldHideEndpointsWhenDisabled() {
+    assertThat(get(SNAPSHOT, null).getStatusCode(), is(HttpStatus.NOT_FOUND));
+    assertThat(get(EVENTS, null).getStatusCode(), is(HttpStatus.NOT_FOUND));
+    // not even an empty token is accepted
+    assertThat(get(SNAPSHOT, "").getStatusCode(), is(HttpStatus.NOT_FOUND));
+  }
+
+  @Test
+  public void shouldRequireTokenWhenEnabled() {
+    ReflectionTestUtils.setField(registryReplication, "enabled", true);
+    ReflectionTestUtils.setField(registryReplication, "token", "secret");
+    ReflectionTestUtils.setField(registryReplication, "leading", true);
+
+    assertThat(get(SNAPSHOT, null).getStatusCode(), is(HttpStatus.UNAUTHORIZED));
+    assertThat(get(SNAPSHOT, "guess").getStatusCode(), is(HttpStatus.UNAUTHORIZED));
+    assertThat(get(EVENTS, "").getStatusCode(), is(HttpStatus.UNAUTHORIZED));
+
+    ResponseEntity<byte[]> snapshot = get(SNAPSHOT, "secret");
+    assertThat(snapshot.getStatusCode(), is(HttpStatus.OK));
+    assertThat(
+        snapshot.getHeaders().getFirst(RegistryReplication.SEQUENCE_HEADER), is(notNullValue()));
+    assertThat(get(EVENTS, "secret").getStatusCode(), is(HttpStatus.OK));
+  }
+
+  private ResponseEntity<byte[]> get(String path, String token) {
+    HttpHeaders headers = new HttpHeaders();
+    if (token != null) {
+      headers.set(RegistryReplication.TOKEN_HEADER, token);
+    }
+    return restTemplate.exchange(
+        url(path), HttpMethod.GET, new HttpEntity<>(headers), byte[].class, "default");
+  }
+}
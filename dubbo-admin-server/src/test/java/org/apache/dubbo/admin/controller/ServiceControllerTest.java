@@ -20,6 +20,9 @@ package org.apache.dubbo.admin.controller;
 import org.apache.dubbo.admin.AbstractSpringIntegrationTest;
 import org.apache.dubbo.admin.common.utils.Constants;
 import org.apache.dubbo.admin.model.dto.ServiceDTO;
+import org.apache.dubbo.admin.model.dto.ServiceDetailDTO;
+import org.apache.dubbo.admin.model.dto.ServicePageDTO;
+import org.apache.dubbo.admin.service.ProviderService;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.registry.Registry;
 import org.apache.dubbo.registry.support.AbstractRegistry;
@@ -27,20 +30,31 @@ import org.junit.After;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ServiceControllerTest extends AbstractSpringIntegrationTest {
   @Resource private Registry registry;
+  @Resource private ServiceController serviceController;
 
   @After
   public void tearDown() throws Exception {
@@ -99,6 +113,138 @@ public class ServiceControllerTest extends AbstractSpringIntegrationTest {
     assertThat(responseEntity.getBody(), hasSize(num));
   }
 
+  @Test
+  public void shouldGetServiceDetail() throws Exception {
+    final String service = "org.apache.dubbo.admin.test.detail";
+    registry.register(generateProviderServiceUrl("dubbo-admin", service));
+    registry.register(
+        URL.valueOf(
+            "consumer://127.0.0.1/"
+                + service
+                + "?application=dubbo-admin-consumer&category=consumers&side=consumer"));
+    TimeUnit.SECONDS.sleep(1);
+
+    // the second request is written from the cached fragments
+    for (int i = 0; i < 2; i++) {
+      final ResponseEntity<ServiceDetailDTO> response =
+          restTemplate.getForEntity(
+              url("/dubbo-admin/api/{env}/service/{service}"),
+              ServiceDetailDTO.class,
+              "whatever",
+              service);
+      assertThat(response.getStatusCode(), is(HttpStatus.OK));
+      assertThat(response.getBody().getService(), is(service));
+      assertThat(response.getBody().getApplication(), is("dubbo-admin"));
+      assertThat(response.getBody().getProviders(), hasSize(1));
+      assertThat(response.getBody().getProviders().get(0).getAddress(), is("127.0.0.1:20881"));
+      assertThat(response.getBody().getConsumers(), hasSize(1));
+    }
+  }
+
+  @Test
+  public void shouldGetServiceDetails() throws Exception {
+    final String service = "org.apache.dubbo.admin.test.details";
+    registry.register(generateProviderServiceUrl("dubbo-admin", service + 0));
+    registry.register(generateProviderServiceUrl("dubbo-admin-other", service + 1));
+    registry.register(
+        URL.valueOf(
+            "consumer://127.0.0.1/"
+                + service
+                + 0
+                + "?application=dubbo-admin-consumer&category=consumers&side=consumer"));
+    TimeUnit.SECONDS.sleep(1);
+
+    // a detail whose metadata cannot be read is still written
+    final CompletableFuture<String> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException("metadata report is down"));
+    final ProviderService metadata = mock(ProviderService.class);
+    when(metadata.getProviderMetaData(anyList()))
+        .thenReturn(
+            Arrays.asList(
+                failed,
+                CompletableFuture.completedFuture(null),
+                CompletableFuture.completedFuture("{\"canonicalName\":\"" + service + 0 + "\"}")));
+    final Object providerService =
+        ReflectionTestUtils.getField(serviceController, "providerService");
+    ReflectionTestUtils.setField(serviceController, "providerService", metadata);
+    final List<String> services = Arrays.asList(service + 1, service + "Unknown", service + 0);
+    final ResponseEntity<List<ServiceDetailDTO>> response;
+    try {
+      response =
+          restTemplate.exchange(
+              url("/dubbo-admin/api/{env}/services/details?full=true"),
+              HttpMethod.POST,
+              new HttpEntity<>(services),
+              new ParameterizedTypeReference<List<ServiceDetailDTO>>() {},
+              "whatever");
+    } finally {
+      ReflectionTestUtils.setField(serviceController, "providerService", providerService);
+    }
+    assertThat(response.getStatusCode(), is(HttpStatus.OK));
+    final List<ServiceDetailDTO> details = response.getBody();
+    assertThat(details, hasSize(3));
+    assertThat(details.get(0).getService(), is(service + 1));
+    assertThat(details.get(0).getApplication(), is("dubbo-admin-other"));
+    assertThat(details.get(0).getProviders(), hasSize(1));
+    assertThat(details.get(0).getMetadata(), is(nullValue()));
+    assertThat(details.get(1).getApplication(), is(nullValue()));
+    assertThat(details.get(1).getProviders(), hasSize(0));
+    assertThat(details.get(2).getService(), is(service + 0));
+    assertThat(details.get(2).getApplication(), is("dubbo-admin"));
+    assertThat(details.get(2).getMetadata().getCanonicalName(), is(service + 0));
+    assertThat(details.get(2).getConsumers(), hasSize(1));
+  }
+
+  @Test
+  public void shouldPageWithCursor() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      registry.register(
+          generateProviderServiceUrl("dubbo-admin", "org.apache.dubbo.admin.test.page" + i));
+    }
+    registry.register(generateProviderServiceUrl("dubbo-admin", "org.apache.dubbo.admin.other"));
+    TimeUnit.SECONDS.sleep(1);
+
+    final String search =
+        "/dubbo-admin/api/{env}/services/search?pattern={pattern}&filter={filter}&size=2";
+    ServicePageDTO page =
+        restTemplate.getForObject(
+            url(search + "&count=true"),
+            ServicePageDTO.class,
+            "whatever",
+            Constants.SERVICE,
+            "*.page*");
+    assertThat(page.getTotal(), is(5L));
+    assertThat(page.getContent(), hasSize(2));
+    assertThat(page.getContent().get(0).getService(), is("org.apache.dubbo.admin.test.page0"));
+    // unregistering a service before the cursor does not shift the next page
+    registry.unregister(
+        generateProviderServiceUrl("dubbo-admin", "org.apache.dubbo.admin.test.page0"));
+    TimeUnit.SECONDS.sleep(1);
+
+    List<String> services = new ArrayList<>();
+    String cursor = page.getCursor();
+    while (cursor != null) {
+      page =
+          restTemplate.getForObject(
+              url(search + "&cursor={cursor}"),
+              ServicePageDTO.class,
+              "whatever",
+              Constants.SERVICE,
+              "*.page*",
+              cursor);
+      assertThat(page.getTotal(), is(nullValue()));
+      page.getContent().forEach(service -> services.add(service.getService()));
+      cursor = page.getCursor();
+    }
+    assertThat(
+        services,
+        is(
+            Arrays.asList(
+                "org.apache.dubbo.admin.test.page2",
+                "org.apache.dubbo.admin.test.page3",
+                "org.apache.dubbo.admin.test.page4")));
+  }
+
   @Ignore
   @Test
   public void shouldFilterUsingPattern() throws InterruptedException {
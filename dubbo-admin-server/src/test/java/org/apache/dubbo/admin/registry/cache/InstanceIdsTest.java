@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class InstanceIdsTest {
+
+  @Test
+  public void testHash() {
+    String url = "dubbo://10.0.0.1:20880/org.apache.dubbo.DemoService?application=app-a";
+    assertEquals(InstanceIds.hash(URL.valueOf(url)), InstanceIds.hash(URL.valueOf(url)));
+    assertNotEquals(
+        InstanceIds.hash(URL.valueOf(url)), InstanceIds.hash(URL.valueOf(url + "&weight=50")));
+  }
+
+  @Test
+  public void testHashRounds() {
+    URL url = URL.valueOf("dubbo://10.0.0.1:20880/org.apache.dubbo.DemoService?application=app-a");
+    assertEquals(InstanceIds.hash(url), InstanceIds.hash(url, 0));
+    assertEquals(InstanceIds.hash(url, 1), InstanceIds.hash(URL.valueOf(url.toFullString()), 1));
+    assertNotEquals(InstanceIds.hash(url), InstanceIds.hash(url, 1));
+    assertNotEquals(InstanceIds.hash(url, 1), InstanceIds.hash(url, 2));
+  }
+
+  @Test
+  public void testToHex() {
+    assertEquals("0000000000000000", InstanceIds.toHex(0L));
+    assertEquals("00000000000000FF", InstanceIds.toHex(255L));
+    assertEquals("FFFFFFFFFFFFFFFF", InstanceIds.toHex(-1L));
+    assertEquals("8000000000000001", InstanceIds.toHex(Long.MIN_VALUE + 1));
+  }
+}
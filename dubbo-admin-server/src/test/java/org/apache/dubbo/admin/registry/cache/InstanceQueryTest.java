@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.admin.common.exception.ParamValidationException;
+import org.apache.dubbo.common.URL;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class InstanceQueryTest {
+
+  @Test
+  public void testMatch() {
+    Map<String, URL> urls = new LinkedHashMap<>();
+    urls.put(
+        "1",
+        URL.valueOf(
+            "dubbo://10.0.0.1:20880/DemoService?application=app-a&dubbo=2.6.2&side=provider"));
+    urls.put(
+        "2",
+        URL.valueOf(
+            "dubbo://10.0.0.2:20880/DemoService?application=app-a&dubbo=2.7.3&side=provider"));
+    urls.put(
+        "3",
+        URL.valueOf(
+            "dubbo://10.1.0.3:20880/DemoService?application=app-b&dubbo=2.6.5&side=provider"));
+    InstanceParameters parameters =
+        RegistryIndex.EMPTY.update("DemoService", urls).getParameters();
+    assertEquals(3, parameters.size());
+    assertEquals("1", parameters.getId(0));
+    assertEquals("DemoService", parameters.getService(0));
+
+    assertEquals(
+        ordinals(0), match("dubbo=2.6.* AND side=provider AND application=app-a", parameters));
+    assertEquals(ordinals(0, 2), match("dubbo=2.6.*", parameters));
+    assertEquals(ordinals(1), match("dubbo!=2.6.2 application=app-a", parameters));
+    assertEquals(ordinals(0, 1, 2), match("application=app-b OR address=10.0.*", parameters));
+    assertEquals(ordinals(2), match("NOT address=10.0.*", parameters));
+    assertEquals(ordinals(1), match("address=10.0.0.2:20880", parameters));
+    assertEquals(
+        ordinals(0, 2),
+        match("(application=app-b or dubbo=2.6.2) and category=providers", parameters));
+    assertEquals(ordinals(), match("category=consumers AND application=app-a", parameters));
+    assertEquals(ordinals(0, 1, 2), match("side=*", parameters));
+    assertEquals(ordinals(), match("missing=1", parameters));
+  }
+
+  @Test
+  public void testMatchAcrossServices() {
+    Map<String, URL> demo = new LinkedHashMap<>();
+    demo.put("1", URL.valueOf("dubbo://10.0.0.1:20880/DemoService?application=app-a&dubbo=2.6.2"));
+    demo.put("2", URL.valueOf("dubbo://10.0.0.2:20880/DemoService?application=app-b&dubbo=2.7.3"));
+    Map<String, URL> order = new LinkedHashMap<>();
+    order.put(
+        "3", URL.valueOf("dubbo://10.0.0.3:20880/OrderService?application=app-a&dubbo=2.7.3"));
+    RegistryIndex index =
+        RegistryIndex.EMPTY.update("DemoService", demo).update("OrderService", order);
+    InstanceParameters parameters = index.getParameters();
+    assertEquals(ordinals(0, 2), match("application=app-a", parameters));
+    assertEquals("OrderService", parameters.getService(2));
+
+    // the remaining instances keep their ordinals, the removed one is handed out again
+    demo.remove("1");
+    index = index.update("DemoService", demo);
+    parameters = index.getParameters();
+    assertEquals(2, parameters.size());
+    assertEquals(ordinals(2), match("application=app-a", parameters));
+    assertEquals(ordinals(1, 2), match("NOT dubbo=2.6.*", parameters));
+    assertEquals(ordinals(), match("dubbo=2.6.*", parameters));
+
+    order.put("4", URL.valueOf("dubbo://10.0.0.4:20880/OrderService?application=app-c"));
+    parameters = index.update("OrderService", order).getParameters();
+    assertEquals("4", parameters.getId(0));
+    assertEquals(ordinals(0, 1, 2), match("address=10.0.0.*", parameters));
+
+    parameters = index.remove("DemoService").remove("OrderService").getParameters();
+    assertEquals(0, parameters.size());
+    assertEquals(0, parameters.indexEntries());
+  }
+
+  @Test
+  public void testMalformed() {
+    String[] queries = {
+      "",
+      "application",
+      "=1",
+      "application=app-a AND",
+      "(side=provider",
+      "OR side=provider",
+      "side=provider)"
+    };
+    for (String query : queries) {
+      try {
+        InstanceQuery.parse(query);
+        fail(query);
+      } catch (ParamValidationException e) {
+        // expected
+      }
+    }
+  }
+
+  private static BitSet match(String query, InstanceParameters parameters) {
+    return InstanceQuery.parse(query).match("providers", parameters);
+  }
+
+  private static BitSet ordinals(int... ordinals) {
+    BitSet ret = new BitSet();
+    for (int ordinal : ordinals) {
+      ret.set(ordinal);
+    }
+    return ret;
+  }
+}
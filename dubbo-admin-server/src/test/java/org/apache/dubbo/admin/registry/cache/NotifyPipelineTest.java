@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NotifyPipelineTest {
+
+  @Test
+  public void testCoalesce() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<URL> appliedUrls = Collections.synchronizedList(new ArrayList<>());
+    NotifyPipeline pipeline =
+        new NotifyPipeline(
+            16,
+            2,
+            8,
+            batch -> {
+              started.countDown();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              batch.forEach(appliedUrls::addAll);
+            });
+    pipeline.start();
+    try {
+      pipeline.offer("a", urls("dubbo://10.0.0.1:20880/A?v=1"));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      // "a" is in flight, the next three lists collapse into the last one
+      pipeline.offer("a", urls("dubbo://10.0.0.1:20880/A?v=2"));
+      pipeline.offer("a", urls("dubbo://10.0.0.1:20880/A?v=3"));
+      pipeline.offer("a", urls("dubbo://10.0.0.1:20880/A?v=4"));
+      assertEquals(1, pipeline.getQueueDepth());
+      release.countDown();
+      assertTrue(pipeline.awaitIdle(5, TimeUnit.SECONDS));
+
+      assertEquals(2, appliedUrls.size());
+      assertEquals("1", appliedUrls.get(0).getParameter("v"));
+      assertEquals("4", appliedUrls.get(1).getParameter("v"));
+      assertEquals(4, pipeline.getReceived());
+      assertEquals(2, pipeline.getCoalesced());
+      assertEquals(2, pipeline.getApplied());
+      assertEquals(0, pipeline.getQueueDepth());
+    } finally {
+      pipeline.shutdown();
+    }
+  }
+
+  @Test
+  public void testRetryFailedBatch() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    List<URL> appliedUrls = Collections.synchronizedList(new ArrayList<>());
+    NotifyPipeline pipeline =
+        new NotifyPipeline(
+            16,
+            1,
+            8,
+            batch -> {
+              if (calls.getAndIncrement() == 0) {
+                throw new IllegalStateException("transient");
+              }
+              batch.forEach(appliedUrls::addAll);
+            });
+    pipeline.offer("a", urls("dubbo://10.0.0.1:20880/A?v=1"));
+    pipeline.offer("b", urls("dubbo://10.0.0.1:20880/B?v=1"));
+    pipeline.start();
+    try {
+      for (int i = 0; i < 50 && pipeline.getRetrying() < 2; i++) {
+        TimeUnit.MILLISECONDS.sleep(100);
+      }
+      assertEquals(1, pipeline.getFailures());
+      assertEquals(2, pipeline.getRetrying());
+      // waiting for the retry, a newer list of "a" replaces the failed one
+      pipeline.offer("a", urls("dubbo://10.0.0.1:20880/A?v=2"));
+      assertTrue(pipeline.awaitIdle(5, TimeUnit.SECONDS));
+      for (int i = 0; i < 50 && pipeline.getApplied() < 2; i++) {
+        TimeUnit.MILLISECONDS.sleep(100);
+      }
+
+      assertEquals(2, pipeline.getApplied());
+      assertEquals(0, pipeline.getRetrying());
+      assertEquals(0, pipeline.getQueueDepth());
+      assertEquals(
+          new HashSet<>(Arrays.asList("A?v=2", "B?v=1")),
+          appliedUrls.stream()
+              .map(url -> url.getPath() + "?v=" + url.getParameter("v"))
+              .collect(Collectors.toSet()));
+    } finally {
+      pipeline.shutdown();
+    }
+  }
+
+  private List<URL> urls(String url) {
+    return Collections.singletonList(URL.valueOf(url));
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentBitmapTest {
+
+  @Test
+  public void testWithAndWithout() {
+    PersistentBitmap bitmap = PersistentBitmap.EMPTY.with(3).with(5000).with(63).with(64);
+    assertEquals(4, bitmap.cardinality());
+    assertTrue(bitmap.contains(5000));
+    assertFalse(bitmap.contains(4999));
+    assertSame(bitmap, bitmap.with(63));
+    assertSame(bitmap, bitmap.without(7));
+
+    BitSet expected = new BitSet();
+    expected.set(3);
+    expected.set(63);
+    expected.set(64);
+    expected.set(5000);
+    assertEquals(expected, bitmap.toBitSet());
+
+    // a chunk left empty is dropped
+    PersistentBitmap smaller = bitmap.without(5000);
+    expected.clear(5000);
+    assertEquals(expected, smaller.toBitSet());
+    assertEquals(1024 / Long.SIZE, smaller.words());
+    assertSame(PersistentBitmap.EMPTY, smaller.without(3).without(63).without(64));
+  }
+
+  @Test
+  public void testUnchangedByDerivedBitmaps() {
+    PersistentBitmap bitmap = PersistentBitmap.EMPTY.with(1).with(2);
+    PersistentBitmap derived = bitmap.with(3).without(1);
+    assertTrue(bitmap.contains(1));
+    assertFalse(bitmap.contains(3));
+    assertEquals(2, bitmap.cardinality());
+    assertEquals(2, derived.cardinality());
+  }
+
+  @Test
+  public void testOr() {
+    long[] words = new long[PersistentBitmap.EMPTY.with(2000).words()];
+    PersistentBitmap.EMPTY.with(1).or(words);
+    PersistentBitmap.EMPTY.with(2000).or(words);
+    BitSet bits = BitSet.valueOf(words);
+    assertEquals(2, bits.cardinality());
+    assertTrue(bits.get(1));
+    assertTrue(bits.get(2000));
+  }
+}
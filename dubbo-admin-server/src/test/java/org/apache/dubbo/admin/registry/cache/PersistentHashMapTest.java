@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dubbo.admin.registry.cache;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PersistentHashMapTest {
+
+  @Test
+  public void testPlusAndMinus() {
+    PersistentHashMap<String, String> empty = PersistentHashMap.empty();
+    PersistentHashMap<String, String> one = empty.plus("a", "1");
+    PersistentHashMap<String, String> two = one.plus("b", "2");
+
+    assertEquals(0, empty.size());
+    assertEquals(1, one.size());
+    assertNull(one.get("b"));
+    assertEquals("2", two.get("b"));
+    assertSame(two, two.minus("c"));
+    assertEquals(one, two.minus("b"));
+    assertEquals(0, two.minus("a").minus("b").size());
+  }
+
+  @Test
+  public void testCollisions() {
+    // "Aa" and "BB" share the same hash code
+    PersistentHashMap<String, Integer> map =
+        PersistentHashMap.<String, Integer>empty().plus("Aa", 1).plus("BB", 2).plus("C", 3);
+    assertEquals(3, map.size());
+    assertEquals(Integer.valueOf(1), map.get("Aa"));
+    assertEquals(Integer.valueOf(2), map.get("BB"));
+    map = map.minus("Aa");
+    assertNull(map.get("Aa"));
+    assertEquals(Integer.valueOf(2), map.get("BB"));
+    assertEquals(2, map.entrySet().size());
+  }
+
+  @Test
+  public void testAgainstHashMap() {
+    Random random = new Random(7);
+    Map<Integer, Integer> expected = new HashMap<>();
+    PersistentHashMap<Integer, Integer> actual = PersistentHashMap.empty();
+    for (int i = 0; i < 20000; i++) {
+      int key = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        actual = actual.minus(key);
+      } else {
+        expected.put(key, i);
+        actual = actual.plus(key, i);
+      }
+    }
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected, actual);
+    assertEquals(expected, new HashMap<>(actual));
+  }
+}
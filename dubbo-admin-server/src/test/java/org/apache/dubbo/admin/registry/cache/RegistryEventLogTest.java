@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RegistryEventLogTest {
+
+  @Test
+  public void testDiff() {
+    Map<String, URL> before = new HashMap<>();
+    before.put("1", URL.valueOf("dubbo://10.0.0.1:20880/DemoService?application=a&weight=100"));
+    before.put("2", URL.valueOf("dubbo://10.0.0.2:20880/DemoService?application=a"));
+    Map<String, URL> after = new HashMap<>();
+    after.put("3", URL.valueOf("dubbo://10.0.0.1:20880/DemoService?application=a&weight=50"));
+    after.put("4", URL.valueOf("dubbo://10.0.0.3:20880/DemoService?application=b"));
+
+    RegistryEvent event = RegistryEvent.diff("providers", "DemoService", before, after);
+    assertEquals(Collections.singleton("4"), event.getAdded().keySet());
+    assertEquals(Collections.singleton("2"), event.getRemoved().keySet());
+    assertEquals(1, event.getChanged().size());
+    assertEquals("1", event.getChanged().get(0).getOldId());
+    assertEquals("3", event.getChanged().get(0).getId());
+    assertEquals(2, event.getApplications().size());
+
+    assertNull(RegistryEvent.diff("providers", "DemoService", after, after));
+    assertEquals(
+        2, RegistryEvent.diff("providers", "DemoService", null, after).getAdded().size());
+  }
+
+  @Test
+  public void testLog() {
+    RegistryEventLog log = new RegistryEventLog(3);
+    RegistryEvent event =
+        RegistryEvent.diff(
+            "providers",
+            "DemoService",
+            null,
+            Collections.singletonMap("1", URL.valueOf("dubbo://10.0.0.1:20880/DemoService")));
+    assertTrue(log.getEvents(0, 10).isEmpty());
+    for (int i = 0; i < 4; i++) {
+      log.append(Collections.singletonList(event), i + 1);
+    }
+    assertEquals(4, log.getLastSequence());
+    assertEquals(2, log.getFirstSequence());
+    // event 1 is gone
+    assertNull(log.getEvents(0, 10));
+    List<RegistryEvent> events = log.getEvents(1, 10);
+    assertEquals(3, events.size());
+    assertEquals(2, events.get(0).getSequence());
+    assertEquals(2, events.get(0).getEpoch());
+    assertEquals(1, log.getEvents(2, 1).size());
+    assertTrue(log.getEvents(4, 10).isEmpty());
+    assertNull(log.getEvents(5, 10));
+  }
+
+  @Test
+  public void testResumeAcrossWraparound() {
+    RegistryEventLog log = new RegistryEventLog(4);
+    RegistryEvent event =
+        RegistryEvent.diff(
+            "providers",
+            "DemoService",
+            null,
+            Collections.singletonMap("1", URL.valueOf("dubbo://10.0.0.1:20880/DemoService")));
+    long cursor = 0;
+    for (int round = 0; round < 5; round++) {
+      // three events per round, so the ring wraps around at a different slot each time
+      for (int i = 0; i < 3; i++) {
+        log.append(Collections.singletonList(event), round);
+      }
+      List<RegistryEvent> events = log.getEvents(cursor, 2);
+      assertEquals(2, events.size());
+      assertEquals(cursor + 1, events.get(0).getSequence());
+      cursor = events.get(1).getSequence();
+      events = log.getEvents(cursor, 10);
+      assertEquals(1, events.size());
+      assertEquals(cursor + 1, events.get(0).getSequence());
+      assertEquals(round, events.get(0).getEpoch());
+      cursor = events.get(0).getSequence();
+    }
+    assertEquals(15, cursor);
+    assertEquals(12, log.getFirstSequence());
+    assertEquals(4, log.getEvents(11, 10).size());
+    // a reader that fell more than the capacity behind has to start over
+    for (int i = 0; i < 5; i++) {
+      log.append(Collections.singletonList(event), 5);
+    }
+    assertNull(log.getEvents(cursor, 10));
+  }
+
+  @Test
+  public void testListener() {
+    RegistryEventLog log = new RegistryEventLog(4);
+    RegistryEvent event =
+        RegistryEvent.diff(
+            "providers",
+            "DemoService",
+            null,
+            Collections.singletonMap("1", URL.valueOf("dubbo://10.0.0.1:20880/DemoService")));
+    AtomicInteger appended = new AtomicInteger();
+    Runnable listener = appended::incrementAndGet;
+    log.addListener(listener);
+    log.append(Collections.emptyList(), 1);
+    assertEquals(0, appended.get());
+    log.append(Collections.singletonList(event), 1);
+    assertEquals(1, appended.get());
+    log.removeListener(listener);
+    log.append(Collections.singletonList(event), 2);
+    assertEquals(1, appended.get());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectEmptyLog() {
+    new RegistryEventLog(0);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RegistryHistoryTest {
+
+  @Test
+  public void testGet() {
+    RegistryHistory history = new RegistryHistory(10, 1000, Long.MAX_VALUE);
+    RegistrySnapshot first = RegistrySnapshot.EMPTY.edit().publish();
+    RegistrySnapshot skipped = first.edit().publish();
+    RegistrySnapshot second = skipped.edit().publish();
+    history.record(first, 0, 100);
+    history.record(skipped, 0, 105);
+    history.record(second, 0, 110);
+    RegistrySnapshot current = second.edit().publish();
+    history.record(current, 0, 115);
+
+    assertEquals(2, history.size());
+    assertNull(history.get(99, current));
+    assertSame(first, history.get(100, current));
+    // within an interval the answer is the snapshot kept at its start
+    assertSame(first, history.get(107, current));
+    assertSame(second, history.get(112, current));
+    assertSame(current, history.get(115, current));
+    assertSame(current, history.get(Long.MAX_VALUE, current));
+  }
+
+  @Test
+  public void testPrune() {
+    RegistryHistory history = new RegistryHistory(10, 100, 50);
+    RegistrySnapshot snapshot = RegistrySnapshot.EMPTY;
+    history.record(snapshot = snapshot.edit().publish(), 0, 0);
+    history.record(snapshot = snapshot.edit().publish(), 30, 10);
+    history.record(snapshot = snapshot.edit().publish(), 30, 20);
+    // the first one retains 30 bytes, the second another 30 which exceeds the budget
+    assertEquals(2, history.size());
+    assertEquals(Long.valueOf(10), history.getOldestTime());
+    assertEquals(30, history.getEstimatedBytes());
+
+    history.record(snapshot = snapshot.edit().publish(), 0, 115);
+    assertEquals(Long.valueOf(20), history.getOldestTime());
+    history.record(snapshot.edit().publish(), 0, 300);
+    assertEquals(1, history.size());
+    assertEquals(Long.valueOf(300), history.getOldestTime());
+  }
+}
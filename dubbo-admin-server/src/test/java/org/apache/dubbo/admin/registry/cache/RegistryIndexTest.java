@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RegistryIndexTest {
+
+  @Test
+  public void testUpdateAndRemove() {
+    RegistryIndex index = RegistryIndex.EMPTY;
+    Map<String, URL> urls = new HashMap<>();
+    urls.put("1", provider("10.0.0.1", "app-a", "org.apache.dubbo.DemoService", "2.7.3"));
+    urls.put("2", provider("10.0.0.2", "app-b", "org.apache.dubbo.DemoService", null));
+    index = index.update("org.apache.dubbo.DemoService", urls);
+    index =
+        index.update(
+            "org.apache.dubbo.OtherService",
+            Collections.singletonMap(
+                "3", provider("10.0.0.1", "app-a", "org.apache.dubbo.OtherService", "2.7.3")));
+
+    assertEquals(2, index.getApplications().size());
+    assertEquals(2, index.getServicesByApplication("app-a").size());
+    assertEquals(2, index.getServicesByAddress("10.0.0.1:20880").size());
+    assertEquals(2, index.getServicesByIp("10.0.0.1").size());
+    assertEquals(2, index.getAddressesByApplication("app-a").size());
+    assertEquals(2, index.getApplicationsByService("org.apache.dubbo.DemoService").size());
+    assertEquals("2.7.3", index.getVersionByApplication("app-a"));
+    assertEquals("2.6", index.getVersion("org.apache.dubbo.DemoService", "app-b"));
+    assertEquals("org.apache.dubbo.DemoService", index.getServiceById("2"));
+    assertEquals(2, index.getServiceCount());
+    assertEquals(3, index.getInstanceCount());
+    assertEquals(2, index.getInstanceCount("org.apache.dubbo.DemoService"));
+    assertEquals(2, index.getInstanceCountByApplication("app-a"));
+    assertEquals(
+        CacheSizes.estimate(urls), index.getEstimatedBytes("org.apache.dubbo.DemoService"));
+    long bytes = index.getEstimatedBytes();
+    long indexBytes = index.getEstimatedIndexBytes();
+    assertTrue(bytes > CacheSizes.estimate(urls));
+
+    index =
+        index.update(
+            "group/org.apache.dubbo.DemoService:1.0.0",
+            Collections.singletonMap(
+                "4", provider("10.0.0.3", "app-c", "org.apache.dubbo.DemoService", null)));
+    assertEquals(2, index.getServicesByInterface("org.apache.dubbo.DemoService").size());
+    index = index.remove("group/org.apache.dubbo.DemoService:1.0.0");
+    assertEquals(
+        Collections.singleton("org.apache.dubbo.DemoService"),
+        index.getServicesByInterface("org.apache.dubbo.DemoService"));
+
+    // app-b goes away from DemoService
+    urls.remove("2");
+    RegistryIndex before = index;
+    index = index.update("org.apache.dubbo.DemoService", urls);
+    assertTrue(index.getServicesByApplication("app-b").isEmpty());
+    assertTrue(index.getServicesByIp("10.0.0.2:20880").isEmpty());
+    assertNull(index.getVersionByApplication("app-b"));
+    assertNull(index.getServiceById("2"));
+    assertEquals(1, before.getServicesByApplication("app-b").size());
+    assertEquals(0, index.getInstanceCountByApplication("app-b"));
+    assertEquals(2, index.getInstanceCount());
+    assertTrue(index.getEstimatedBytes() < bytes);
+    assertTrue(index.getEstimatedIndexBytes() < indexBytes);
+
+    index = index.remove("org.apache.dubbo.OtherService");
+    assertEquals(1, index.getServicesByApplication("app-a").size());
+    assertEquals(1, index.getServicesByAddress("10.0.0.1:20880").size());
+
+    index = index.remove("org.apache.dubbo.DemoService");
+    assertEquals(0, index.getInstanceCount());
+    assertEquals(0L, index.getEstimatedBytes());
+    assertEquals(0L, index.getEstimatedIndexBytes());
+  }
+
+  private URL provider(String ip, String application, String service, String release) {
+    URL url =
+        URL.valueOf(
+            "dubbo://" + ip + ":20880/" + service + "?application=" + application + "&side=provider");
+    return release == null ? url : url.addParameter("release", release);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.common.URL;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class RegistrySnapshotTest {
+  private static final String DEMO = "com.foo.DemoService";
+
+  private static final String ORDER = "com.foo.OrderService";
+
+  @Test
+  public void testEpochs() {
+    RegistrySnapshot first =
+        RegistrySnapshot.EMPTY
+            .edit()
+            .put(Constants.PROVIDERS_CATEGORY, DEMO, urls(DEMO, "127.0.0.1"))
+            .put(Constants.PROVIDERS_CATEGORY, ORDER, urls(ORDER, "127.0.0.1"))
+            .publish();
+    assertEquals(first.getEpoch(), first.getEpoch(Constants.PROVIDERS_CATEGORY));
+    assertEquals(first.getEpoch(), first.getEpoch(Constants.PROVIDERS_CATEGORY, DEMO));
+    assertEquals(0, first.getEpoch(Constants.CONSUMERS_CATEGORY));
+
+    RegistrySnapshot second =
+        first
+            .edit()
+            .put(Constants.PROVIDERS_CATEGORY, DEMO, urls(DEMO, "127.0.0.2"))
+            .put(Constants.CONSUMERS_CATEGORY, ORDER, urls(ORDER, "127.0.0.3"))
+            .publish();
+    assertEquals(second.getEpoch(), second.getEpoch(Constants.PROVIDERS_CATEGORY));
+    assertEquals(second.getEpoch(), second.getEpoch(Constants.PROVIDERS_CATEGORY, DEMO));
+    // results derived from an untouched service stay valid
+    assertEquals(first.getEpoch(), second.getEpoch(Constants.PROVIDERS_CATEGORY, ORDER));
+    assertEquals(second.getEpoch(), second.getEpoch(Constants.CONSUMERS_CATEGORY, ORDER));
+
+    RegistrySnapshot third = second.edit().remove(Constants.PROVIDERS_CATEGORY, DEMO).publish();
+    assertEquals(third.getEpoch(), third.getEpoch(Constants.PROVIDERS_CATEGORY));
+    assertEquals(0, third.getEpoch(Constants.PROVIDERS_CATEGORY, DEMO));
+    assertEquals(second.getEpoch(), third.getEpoch(Constants.CONSUMERS_CATEGORY));
+  }
+
+  private static Map<String, URL> urls(String service, String host) {
+    URL url = URL.valueOf("dubbo://" + host + ":20880/" + service);
+    return Collections.singletonMap(url.toFullString(), url);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.common.URL;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+
+  @Test
+  public void testSearch() {
+    SearchIndex index = SearchIndex.EMPTY;
+    for (String name :
+        Arrays.asList(
+            "com.foo.DemoService",
+            "com.foo.OrderService",
+            "com.foobar.DemoService",
+            "org.apache.dubbo.DemoService",
+            "c")) {
+      index = index.plus(name);
+    }
+    assertEquals(5, index.size());
+    assertSame(index, index.plus("c"));
+
+    assertEquals(set("com.foo.DemoService", "com.foo.OrderService"), index.search("com.foo.*"));
+    assertEquals(
+        set("com.foo.DemoService", "com.foo.OrderService", "com.foobar.DemoService"),
+        index.search("com.foo*"));
+    assertEquals(
+        set("com.foo.DemoService", "com.foobar.DemoService", "org.apache.dubbo.DemoService"),
+        index.search("*demoservice"));
+    assertEquals(set("com.foo.DemoService"), index.search("COM.FOO.D?mo*"));
+    assertEquals(
+        set("c", "com.foo.DemoService", "com.foo.OrderService", "com.foobar.DemoService"),
+        index.search("c*"));
+    assertEquals(set("org.apache.dubbo.DemoService"), index.search("*dubbo*"));
+    assertEquals(5, index.search("*").size());
+    assertTrue(index.search("net.*").isEmpty());
+    assertTrue(index.search("*Missing*").isEmpty());
+
+    index = index.minus("com.foo.DemoService");
+    assertEquals(set("com.foo.OrderService"), index.search("com.foo.*"));
+    index = index.minus("com.foo.OrderService").minus("com.foobar.DemoService").minus("c");
+    index = index.minus("org.apache.dubbo.DemoService");
+    assertEquals(0, index.size());
+    assertEquals(0, index.indexEntries());
+
+    assertSame(SearchIndex.NONE, SearchIndex.NONE.plus("com.foo.DemoService"));
+  }
+
+  @Test
+  public void testRegistryIndex() {
+    RegistryIndex index =
+        RegistryIndex.empty("providers")
+            .update(
+                "com.foo.DemoService",
+                Collections.singletonMap(
+                    "1",
+                    URL.valueOf("dubbo://10.0.0.1:20880/com.foo.DemoService?application=app-a")));
+    index =
+        index.update(
+            "com.foo.OrderService",
+            Collections.singletonMap(
+                "2", URL.valueOf("dubbo://10.0.0.2:20880/com.foo.OrderService?application=app-a")));
+    assertEquals(set("com.foo.DemoService", "com.foo.OrderService"), index.searchServices("com.*"));
+    assertEquals(set("app-a"), index.searchApplications("app*"));
+    assertEquals(set("10.0.0.2:20880"), index.searchAddresses("*.2:*"));
+    assertEquals(
+        set("app-a"), index.getApplicationsByAddress("com.foo.DemoService", "10.0.0.1:20880"));
+
+    index = index.remove("com.foo.DemoService");
+    assertEquals(set("com.foo.OrderService"), index.searchServices("com.*"));
+    assertEquals(set("app-a"), index.searchApplications("app*"));
+    assertTrue(index.searchAddresses("10.0.0.1*").isEmpty());
+    index = index.remove("com.foo.OrderService");
+    assertTrue(index.searchApplications("*").isEmpty());
+    assertEquals(0, index.getEstimatedIndexBytes());
+
+    // the other categories are not searchable
+    assertTrue(
+        RegistryIndex.empty("consumers")
+            .update(
+                "com.foo.DemoService",
+                Collections.singletonMap(
+                    "1", URL.valueOf("consumer://10.0.0.1/com.foo.DemoService?application=app-a")))
+            .searchServices("*")
+            .isEmpty());
+  }
+
+  private static Set<String> set(String... names) {
+    return new HashSet<>(Arrays.asList(names));
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dubbo.admin.registry.cache;
+
+import org.apache.dubbo.admin.common.exception.ConfigurationException;
+import org.apache.dubbo.common.URL;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriptionFilterTest {
+
+  @Test
+  public void testParse() {
+    SubscriptionFilter all = SubscriptionFilter.parse("", null, " ");
+    assertTrue(all.isAll());
+    assertEquals("providers,consumers,routers,configurators", all.getCategoryParameter());
+
+    SubscriptionFilter filter =
+        SubscriptionFilter.parse(
+            "providers, configurators", "com.foo.order., com.foo.pay.", "com.foo.order.internal.");
+    assertFalse(filter.isAll());
+    assertEquals("providers,configurators", filter.getCategoryParameter());
+    assertTrue(filter.acceptInterface("com.foo.order.OrderService"));
+    assertTrue(filter.acceptInterface("com.foo.pay.PayService"));
+    assertFalse(filter.acceptInterface("com.foo.order.internal.AuditService"));
+    assertFalse(filter.acceptInterface("com.bar.UserService"));
+
+    assertTrue(filter.accept(URL.valueOf("dubbo://10.0.0.1:20880/com.foo.order.OrderService")));
+    assertFalse(
+        filter.accept(
+            URL.valueOf("consumer://10.0.0.1/com.foo.order.OrderService?category=consumers")));
+  }
+
+  @Test(expected = ConfigurationException.class)
+  public void testUnknownCategory() {
+    SubscriptionFilter.parse("providers,customers", "", "");
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.utils.NetUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.dubbo.admin.common.utils.Constants.PROVIDERS_CATEGORY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class AdminEnvironmentsTest {
+  private TestingServer zkServer;
+
+  @Mock private AutowireCapableBeanFactory beanFactory;
+
+  @Mock private RegistryServerSync registryServerSync;
+
+  @Mock private QueryResultCache queryResultCache;
+
+  @InjectMocks private AdminEnvironments adminEnvironments;
+
+  @Before
+  public void setup() throws Exception {
+    int zkServerPort = NetUtils.getAvailablePort();
+    zkServer = new TestingServer(zkServerPort, true);
+    MockEnvironment environment = new MockEnvironment();
+    environment.setProperty(
+        "admin.env.prod.registry.address", "zookeeper://127.0.0.1:" + zkServerPort);
+    ReflectionTestUtils.setField(adminEnvironments, "environment", environment);
+    ReflectionTestUtils.setField(adminEnvironments, "environments", "prod");
+    ReflectionTestUtils.setField(adminEnvironments, "idleTimeout", 0L);
+    adminEnvironments.afterPropertiesSet();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    adminEnvironments.destroy();
+    zkServer.close();
+  }
+
+  @Test
+  public void testLazyStartAndIdleStop() {
+    AdminEnvironments.Context defaultContext = adminEnvironments.get("dev");
+    assertNull(defaultContext.getName());
+    assertSame(registryServerSync, defaultContext.getRegistryServerSync());
+    assertSame(defaultContext, adminEnvironments.current());
+    assertTrue(adminEnvironments.getStarted().isEmpty());
+
+    AdminEnvironments.Context prod = adminEnvironments.get("prod");
+    assertEquals("prod", prod.getName());
+    assertNotSame(registryServerSync, prod.getRegistryServerSync());
+    assertSame(prod, adminEnvironments.get("prod"));
+    AdminEnvironments.setCurrent("prod");
+    try {
+      assertSame(prod, adminEnvironments.current());
+    } finally {
+      AdminEnvironments.setCurrent(null);
+    }
+
+    ReflectionTestUtils.setField(adminEnvironments, "idleTimeout", -1L);
+    adminEnvironments.stopIdle();
+    assertTrue(adminEnvironments.getStarted().isEmpty());
+    // its epochs start over with the next start
+    verify(queryResultCache).invalidate(prod);
+    assertNotSame(prod, adminEnvironments.get("prod"));
+  }
+
+  @Test
+  public void testKeepUsedEnvironment() {
+    AdminEnvironments.Context prod = adminEnvironments.get("prod");
+    ReflectionTestUtils.setField(adminEnvironments, "idleTimeout", 60000L);
+    adminEnvironments.stopIdle();
+    assertSame(prod, adminEnvironments.get("prod"));
+  }
+
+  @Test
+  public void testSubscribeEnvironmentWhenReplicated() throws Exception {
+    // admin.registry.replication.enabled applies to every environment's cache
+    doAnswer(
+            invocation -> {
+              RegistryServerSync sync = invocation.getArgument(0);
+              ReflectionTestUtils.setField(sync, "replicated", true);
+              return null;
+            })
+        .when(beanFactory)
+        .autowireBean(any());
+    URL provider = URL.valueOf("dubbo://10.0.0.1:20880/org.apache.dubbo.DemoService");
+    try (CuratorFramework client =
+        CuratorFrameworkFactory.newClient(zkServer.getConnectString(), new RetryOneTime(1))) {
+      client.start();
+      client
+          .create()
+          .creatingParentsIfNeeded()
+          .forPath(
+              "/dubbo/org.apache.dubbo.DemoService/providers/"
+                  + URL.encode(provider.toFullString()));
+    }
+
+    RegistryServerSync prod = adminEnvironments.get("prod").getRegistryServerSync();
+    for (int i = 0;
+        i < 100 && (!prod.isSubscribed() || prod.getSnapshot().getEpoch(PROVIDERS_CATEGORY) == 0);
+        i++) {
+      TimeUnit.MILLISECONDS.sleep(100);
+    }
+    assertTrue(prod.isSubscribed());
+    assertEquals(1, prod.getRegistryIndex(PROVIDERS_CATEGORY).getInstanceCount());
+  }
+}
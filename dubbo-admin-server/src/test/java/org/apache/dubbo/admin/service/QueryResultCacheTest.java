@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import org.apache.dubbo.admin.registry.cache.RegistryHistory;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryResultCacheTest {
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private AdminEnvironments environments;
+
+  private QueryResultCache cache;
+
+  @Before
+  public void setup() {
+    environments = new AdminEnvironments();
+    environments.afterPropertiesSet();
+    cache = new QueryResultCache();
+    ReflectionTestUtils.setField(cache, "environments", environments);
+    cache.afterPropertiesSet();
+  }
+
+  private String load() {
+    return "result" + loads.incrementAndGet();
+  }
+
+  @Test
+  public void testInvalidateOnNewEpoch() {
+    assertEquals("result1", cache.get("query", 1, this::load, "a"));
+    assertEquals("result1", cache.get("query", 1, this::load, "a"));
+    assertEquals("result2", cache.get("query", 1, this::load, "b"));
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+
+    // the cached result of epoch 1 is stale, which is a miss
+    assertEquals("result3", cache.get("query", 2, this::load, "a"));
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+    assertEquals("result3", cache.get("query", 2, this::load, "a"));
+    assertEquals(2, cache.getHits());
+
+    // a request still holding the older snapshot does not replace the newer result
+    assertEquals("result4", cache.get("query", 1, this::load, "a"));
+    assertEquals("result3", cache.get("query", 2, this::load, "a"));
+  }
+
+  @Test
+  public void testInvalidateEnvironment() {
+    assertEquals("result1", cache.get("query", 5, this::load));
+    cache.invalidate(environments.current());
+    assertEquals(0, cache.getSize());
+    // started again, the environment counts its epochs from scratch
+    assertEquals("result2", cache.get("query", 1, this::load));
+    assertEquals("result2", cache.get("query", 1, this::load));
+  }
+
+  @Test
+  public void testBypassTimeTravel() {
+    assertEquals("result1", cache.get("query", 1, this::load));
+    RegistryHistory.setQueryTime(1000L);
+    try {
+      assertEquals("result2", cache.get("query", 1, this::load));
+      assertEquals("result3", cache.get("query", 1, this::load));
+    } finally {
+      RegistryHistory.setQueryTime(null);
+    }
+    assertEquals("result1", cache.get("query", 1, this::load));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void testNullNotCached() {
+    Supplier<String> reported = () -> loads.incrementAndGet() > 1 ? "result" : null;
+    assertNull(cache.get("query", 1, reported));
+    assertEquals(0, cache.getSize());
+    // loaded again, the result may be there now
+    assertEquals("result", cache.get("query", 1, reported));
+    assertEquals("result", cache.get("query", 1, reported));
+    assertEquals(2, loads.get());
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.utils.NetUtils;
+import org.apache.dubbo.registry.Registry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RegistryBootstrapTest {
+
+  @Test
+  public void testListInterfaces() throws Exception {
+    int port = NetUtils.getAvailablePort();
+    try (TestingServer zkServer = new TestingServer(port, true);
+        CuratorFramework client =
+            CuratorFrameworkFactory.newClient(zkServer.getConnectString(), new RetryOneTime(1))) {
+      client.start();
+      client
+          .create()
+          .creatingParentsIfNeeded()
+          .forPath("/dubbo/org.apache.dubbo.DemoService/providers");
+      client
+          .create()
+          .creatingParentsIfNeeded()
+          .forPath("/dubbo/org.apache.dubbo.OtherService/consumers");
+      Registry registry = mock(Registry.class);
+      when(registry.getUrl()).thenReturn(URL.valueOf("zookeeper://127.0.0.1:" + port));
+      assertEquals(
+          new HashSet<>(
+              Arrays.asList("org.apache.dubbo.DemoService", "org.apache.dubbo.OtherService")),
+          RegistryBootstrap.listInterfaces(registry));
+
+      Registry empty = mock(Registry.class);
+      when(empty.getUrl()).thenReturn(URL.valueOf("zookeeper://127.0.0.1:" + port + "?group=none"));
+      assertTrue(RegistryBootstrap.listInterfaces(empty).isEmpty());
+
+      Registry other = mock(Registry.class);
+      when(other.getUrl()).thenReturn(URL.valueOf("nacos://127.0.0.1:8848"));
+      assertTrue(RegistryBootstrap.listInterfaces(other).isEmpty());
+    }
+  }
+
+  @Test
+  public void testRun() {
+    Set<String> interfaces = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      interfaces.add("org.apache.dubbo.Service" + i);
+    }
+    Set<String> loaded = ConcurrentHashMap.newKeySet();
+    RegistryBootstrap bootstrap = new RegistryBootstrap(4);
+    bootstrap.run(
+        interfaces,
+        interfaceName -> {
+          if (interfaceName.endsWith("Service7")) {
+            throw new IllegalStateException("unreachable");
+          }
+          loaded.add(interfaceName);
+        });
+    assertFalse(bootstrap.isRunning());
+    assertEquals(100, bootstrap.getTotal());
+    assertEquals(100, bootstrap.getLoaded());
+    assertEquals(1, bootstrap.getFailed());
+    assertEquals(99, loaded.size());
+
+    bootstrap.run(Collections.emptySet(), interfaceName -> {});
+    assertEquals(0, bootstrap.getTotal());
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dubbo.admin.service;
+
+import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.registry.Registry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RegistryReconcilerTest {
+  private static final String SERVICE = "org.apache.dubbo.DemoService";
+
+  private final Registry registry = mock(Registry.class);
+
+  private final RegistryServerSync registryServerSync = new RegistryServerSync();
+
+  private final RegistryReconciler reconciler = new RegistryReconciler();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(registryServerSync, "registry", registry);
+    ReflectionTestUtils.setField(reconciler, "registryServerSync", registryServerSync);
+    ReflectionTestUtils.setField(reconciler, "buckets", 1);
+  }
+
+  @Test
+  public void testRemoveGhostProvider() {
+    URL alive = URL.valueOf("dubbo://10.0.0.1:20880/" + SERVICE);
+    URL ghost = URL.valueOf("dubbo://10.0.0.2:20880/" + SERVICE);
+    URL consumer =
+        URL.valueOf("consumer://10.0.0.3/" + SERVICE + "?category=consumers&side=consumer");
+    registryServerSync.notify(Arrays.asList(alive, ghost));
+    registryServerSync.notify(Collections.singletonList(consumer));
+    when(registry.lookup(any(URL.class))).thenReturn(Arrays.asList(alive, consumer));
+
+    assertEquals(1, reconciler.reconcile(0));
+    assertEquals(
+        Collections.singleton("10.0.0.1:20880"),
+        registryServerSync.getRegistryIndex(Constants.PROVIDERS_CATEGORY).getAddresses());
+    assertEquals(
+        1,
+        registryServerSync
+            .getSnapshot()
+            .getServices(Constants.CONSUMERS_CATEGORY)
+            .get(SERVICE)
+            .size());
+
+    // in sync now
+    assertEquals(0, reconciler.reconcile(0));
+    assertEquals(2, reconciler.getRuns());
+    assertEquals(1, reconciler.getRepairs());
+  }
+
+  @Test
+  public void testRemoveGoneInterface() {
+    registryServerSync.notify(
+        Collections.singletonList(URL.valueOf("dubbo://10.0.0.1:20880/" + SERVICE + "?group=a")));
+    when(registry.lookup(any(URL.class))).thenReturn(Collections.emptyList());
+
+    assertEquals(1, reconciler.reconcile(0));
+    assertEquals(
+        0,
+        registryServerSync.getRegistryIndex(Constants.PROVIDERS_CATEGORY).getServiceCount());
+    assertEquals(0, reconciler.reconcile(0));
+  }
+
+  @Test
+  public void testSkipInterfaceNotifiedDuringLookup() {
+    URL first = URL.valueOf("dubbo://10.0.0.1:20880/" + SERVICE);
+    URL ghost = URL.valueOf("dubbo://10.0.0.2:20880/" + SERVICE);
+    URL second = URL.valueOf("dubbo://10.0.0.3:20880/" + SERVICE);
+    registryServerSync.notify(Arrays.asList(first, ghost));
+    // the lookup returns what was registered before the notification it races with
+    when(registry.lookup(any(URL.class)))
+        .thenAnswer(
+            invocation -> {
+              registryServerSync.notify(Arrays.asList(first, second));
+              return Collections.singletonList(first);
+            });
+
+    assertEquals(0, reconciler.reconcile(0));
+    assertEquals(
+        2,
+        registryServerSync.getRegistryIndex(Constants.PROVIDERS_CATEGORY).getInstanceCount());
+    assertEquals(0, reconciler.getRepairs());
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.admin.service;
+
+import org.apache.dubbo.admin.common.exception.ConfigurationException;
+import org.apache.dubbo.admin.common.exception.PermissionDeniedException;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RegistryReplicationTest {
+
+  @Test(expected = ConfigurationException.class)
+  public void testRefuseToStartWithoutToken() throws Exception {
+    RegistryReplication replication = new RegistryReplication();
+    ReflectionTestUtils.setField(replication, "enabled", true);
+    replication.afterPropertiesSet();
+  }
+
+  @Test(expected = PermissionDeniedException.class)
+  public void testRejectTokenWhenDisabled() {
+    // an empty configured token must not match an empty header
+    new RegistryReplication().checkToken("");
+  }
+
+  @Test
+  public void testAcceptSharedToken() {
+    RegistryReplication replication = new RegistryReplication();
+    ReflectionTestUtils.setField(replication, "enabled", true);
+    ReflectionTestUtils.setField(replication, "token", "secret");
+    replication.checkToken("secret");
+  }
+
+  @Test
+  public void testNoSubscriptionAfterSteppingDown() {
+    RegistryServerSync registryServerSync = mock(RegistryServerSync.class);
+    RegistryReplication replication = new RegistryReplication();
+    ReflectionTestUtils.setField(replication, "registryServerSync", registryServerSync);
+    ReflectionTestUtils.setField(replication, "term", 1L);
+    ReflectionTestUtils.invokeMethod(replication, "subscribe", 1L);
+    verify(registryServerSync).subscribe();
+
+    // the subscriber of a term that ended starts late
+    ReflectionTestUtils.invokeMethod(replication, "stepDown");
+    verify(registryServerSync).unsubscribe();
+    ReflectionTestUtils.invokeMethod(replication, "subscribe", 1L);
+    verify(registryServerSync, times(1)).subscribe();
+  }
+}
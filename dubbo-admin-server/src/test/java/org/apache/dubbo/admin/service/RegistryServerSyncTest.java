@@ -17,20 +17,38 @@
 
 package org.apache.dubbo.admin.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.dubbo.admin.common.utils.Constants;
+import org.apache.dubbo.admin.registry.cache.ConsumerAggregates;
+import org.apache.dubbo.admin.registry.cache.InstanceIds;
+import org.apache.dubbo.admin.registry.cache.RegistryEvent;
+import org.apache.dubbo.admin.registry.cache.RegistryIndex;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshot;
+import org.apache.dubbo.admin.registry.cache.RegistrySnapshotFile;
+import org.apache.dubbo.admin.registry.cache.RegistrySources;
 import org.apache.dubbo.common.URL;
+import org.apache.dubbo.registry.NotifyListener;
 import org.apache.dubbo.registry.Registry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -49,7 +67,8 @@ public class RegistryServerSyncTest {
   @Test
   public void testAfterPropertiesSet() {
     registryServerSync.afterPropertiesSet();
-    verify(registry).subscribe(any(URL.class), any(RegistryServerSync.class));
+    // the bootstrap and the subscription run in the background
+    verify(registry, timeout(5000)).subscribe(any(URL.class), any(RegistryServerSync.class));
   }
 
   @Test
@@ -84,12 +103,14 @@ public class RegistryServerSyncTest {
 
     registryServerSync.notify(Arrays.asList(consumerUrl, consumerUrl, providerUrl));
 
-    ConcurrentMap<String, Map<String, URL>> consumerMap =
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    Map<String, Map<String, URL>> consumerMap =
         registryServerSync.getRegistryCache().get(Constants.CONSUMER_PROTOCOL);
     assertTrue(consumerMap.containsKey("org.apache.dubbo.consumer"));
-    ConcurrentMap<String, Map<String, URL>> providerMap =
+    Map<String, Map<String, URL>> providerMap =
         registryServerSync.getRegistryCache().get(Constants.PROVIDER_PROTOCOL);
     assertTrue(providerMap.containsKey("org.apache.dubbo.provider"));
+    assertEquals(2, registryServerSync.getEventLog().getLastSequence());
 
     // when url.getProtocol is empty protocol
     when(consumerUrl.getProtocol()).thenReturn(Constants.EMPTY_PROTOCOL);
@@ -97,13 +118,185 @@ public class RegistryServerSyncTest {
     when(consumerUrl.getParameter(Constants.VERSION_KEY)).thenReturn("2.7.0");
     registryServerSync.notify(Collections.singletonList(consumerUrl));
 
+    consumerMap = registryServerSync.getRegistryCache().get(Constants.CONSUMER_PROTOCOL);
     assertTrue(!consumerMap.containsKey("org.apache.dubbo.consumer"));
+    assertEquals(
+        1, registryServerSync.getEventLog().getEvents(2, 10).get(0).getRemoved().size());
 
     // when url's group or version is ANY_VALUE (*)
     when(providerUrl.getProtocol()).thenReturn(Constants.EMPTY_PROTOCOL);
     when(providerUrl.getParameter(Constants.GROUP_KEY)).thenReturn(Constants.ANY_VALUE);
     registryServerSync.notify(Collections.singletonList(providerUrl));
 
+    providerMap = registryServerSync.getRegistryCache().get(Constants.PROVIDER_PROTOCOL);
     assertTrue(!providerMap.containsKey("org.apache.dubbo.provider"));
+
+    // published snapshots are never changed afterwards
+    assertTrue(registryServerSync.getSnapshot().getEpoch() > snapshot.getEpoch());
+    assertTrue(
+        snapshot
+            .getServices(Constants.PROVIDER_PROTOCOL)
+            .containsKey("org.apache.dubbo.provider"));
+  }
+
+  @Test
+  public void testRemoveStaleGroups() {
+    String service = "org.apache.dubbo.DemoService";
+    URL groupA = URL.valueOf("dubbo://10.0.0.1:20880/" + service + "?group=a");
+    URL groupB = URL.valueOf("dubbo://10.0.0.2:20880/" + service + "?group=b");
+    URL other = URL.valueOf("dubbo://10.0.0.3:20880/org.apache.dubbo.OtherService?group=b");
+    registryServerSync.notify(Arrays.asList(groupA, groupB));
+    registryServerSync.notify(Collections.singletonList(other));
+
+    // group b is gone from DemoService only
+    registryServerSync.notify(Collections.singletonList(groupA));
+    Map<String, Map<String, URL>> providers =
+        registryServerSync.getSnapshot().getServices(Constants.PROVIDERS_CATEGORY);
+    assertEquals(
+        new HashSet<>(Arrays.asList("a/" + service, "b/org.apache.dubbo.OtherService")),
+        providers.keySet());
+    assertEquals(
+        Collections.singleton("a/" + service),
+        registryServerSync
+            .getRegistryIndex(Constants.PROVIDERS_CATEGORY)
+            .getServicesByInterface(service));
+  }
+
+  @Test
+  public void testPutInstanceOnCollision() {
+    URL first = URL.valueOf("dubbo://10.0.0.1:20880/org.apache.dubbo.DemoService");
+    URL second = URL.valueOf("dubbo://10.0.0.2:20880/org.apache.dubbo.DemoService");
+    String id = InstanceIds.toHex(InstanceIds.hash(second));
+    String rehashed = InstanceIds.toHex(InstanceIds.hash(second, 1));
+
+    // pretend the first one hashed to the id of the second
+    Map<String, URL> ids = new HashMap<>();
+    ids.put(id, first);
+    RegistryServerSync.putInstance(ids, second);
+    assertEquals(first, ids.get(id));
+    assertEquals(second, ids.get(rehashed));
+
+    // the same URL again is not a collision
+    RegistryServerSync.putInstance(ids, second);
+    assertEquals(2, ids.size());
+  }
+
+  @Test
+  public void testFederation() {
+    Registry east = mock(Registry.class);
+    ReflectionTestUtils.setField(registryServerSync, "notifyWorkers", 0);
+    ReflectionTestUtils.setField(
+        registryServerSync,
+        "registrySources",
+        new RegistrySources(Collections.singletonMap("east", east)));
+    registryServerSync.afterPropertiesSet();
+    ArgumentCaptor<NotifyListener> eastListener = ArgumentCaptor.forClass(NotifyListener.class);
+    verify(east, timeout(5000)).subscribe(any(URL.class), eastListener.capture());
+
+    String service = "org.apache.dubbo.DemoService";
+    registryServerSync.notify(
+        Collections.singletonList(URL.valueOf("dubbo://10.0.0.1:20880/" + service)));
+    eastListener
+        .getValue()
+        .notify(Collections.singletonList(URL.valueOf("dubbo://10.1.0.1:20880/" + service)));
+
+    Map<String, URL> urls =
+        registryServerSync.getSnapshot().getServices(Constants.PROVIDERS_CATEGORY).get(service);
+    assertEquals(2, urls.size());
+    assertEquals(
+        new HashSet<>(Arrays.asList("default", "east")),
+        urls.values().stream()
+            .map(url -> url.getParameter(RegistrySources.SOURCE_KEY))
+            .collect(Collectors.toSet()));
+
+    // east has no provider left, the main registry's one stays
+    eastListener
+        .getValue()
+        .notify(
+            Collections.singletonList(
+                URL.valueOf("empty://10.1.0.1/" + service + "?category=providers")));
+    urls = registryServerSync.getSnapshot().getServices(Constants.PROVIDERS_CATEGORY).get(service);
+    assertEquals(1, urls.size());
+    assertEquals(
+        "default", urls.values().iterator().next().getParameter(RegistrySources.SOURCE_KEY));
+  }
+
+  @Test
+  public void testAggregatedConsumers() {
+    ReflectionTestUtils.setField(
+        registryServerSync, "consumersMode", RegistryServerSync.CONSUMERS_AGGREGATED);
+    String service = "org.apache.dubbo.DemoService";
+    String query = "?application=app-a&category=consumers&side=consumer&timestamp=";
+    URL first = URL.valueOf("consumer://10.0.0.2/" + service + query + "1");
+    URL second = URL.valueOf("consumer://10.0.0.1/" + service + query + "2");
+    URL other =
+        URL.valueOf(
+            "consumer://10.0.0.3/" + service + "?application=app-b&category=consumers&side=consumer");
+    registryServerSync.notify(Arrays.asList(first, second, other));
+
+    RegistrySnapshot snapshot = registryServerSync.getSnapshot();
+    Map<String, URL> urls = snapshot.getServices(Constants.CONSUMERS_CATEGORY).get(service);
+    assertEquals(2, urls.size());
+    URL aggregate =
+        urls.values().stream()
+            .filter(url -> "app-a".equals(url.getParameter(Constants.APPLICATION)))
+            .findFirst()
+            .get();
+    assertEquals("10.0.0.1,10.0.0.2", aggregate.getParameter(ConsumerAggregates.ADDRESSES_KEY));
+    assertEquals(2, aggregate.getParameter(ConsumerAggregates.INSTANCES_KEY, 0));
+    assertNull(aggregate.getParameter("timestamp"));
+
+    RegistryIndex index = snapshot.getIndex(Constants.CONSUMERS_CATEGORY);
+    assertEquals(3, index.getInstanceCount());
+    assertEquals(2, index.getInstanceCountByApplication("app-a"));
+    assertEquals(Collections.singleton(service), index.getServicesByIp("10.0.0.2"));
+
+    // the same instances in another order make the same aggregate
+    registryServerSync.notify(Arrays.asList(other, second, first));
+    assertEquals(
+        urls.keySet(),
+        registryServerSync.getSnapshot().getServices(Constants.CONSUMERS_CATEGORY).get(service)
+            .keySet());
+
+    when(registry.lookup(any(URL.class))).thenReturn(Arrays.asList(first, second, other));
+    assertEquals(3, registryServerSync.lookupConsumers(service).size());
+  }
+
+  @Test
+  public void testReplicate() throws Exception {
+    String service = "org.apache.dubbo.DemoService";
+    URL first = URL.valueOf("dubbo://10.0.0.1:20880/" + service + "?weight=100");
+    URL second = URL.valueOf("dubbo://10.0.0.2:20880/" + service);
+    registryServerSync.notify(Arrays.asList(first, second));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    RegistrySnapshotFile.write(registryServerSync.getSnapshot(), bytes);
+    long sequence = registryServerSync.getEventLog().getLastSequence();
+
+    // a change, then a service gone, both after the snapshot
+    registryServerSync.notify(Arrays.asList(first.addParameter("weight", 50), second));
+    registryServerSync.notify(
+        Collections.singletonList(
+            URL.valueOf("dubbo://10.0.0.3:20880/org.apache.dubbo.OtherService")));
+    registryServerSync.notify(
+        Collections.singletonList(
+            URL.valueOf("empty://10.0.0.3/org.apache.dubbo.OtherService?category=providers")));
+
+    RegistryServerSync follower = new RegistryServerSync();
+    RegistrySnapshot.Editor editor = RegistrySnapshot.EMPTY.edit();
+    RegistrySnapshotFile.read(bytes.toByteArray(), editor);
+    follower.replicate(editor.publish().getRegistryCache());
+    assertEquals(
+        registryServerSync.getEventLog().getEvents(0, 10).size(),
+        follower.getEventLog().getEvents(0, 10).size() + 3);
+
+    // events go over the wire as JSON, replaying one already in the snapshot changes nothing
+    ObjectMapper objectMapper = new ObjectMapper();
+    List<RegistryEvent> events =
+        objectMapper.readValue(
+            objectMapper.writeValueAsBytes(
+                registryServerSync.getEventLog().getEvents(sequence - 1, 10)),
+            new TypeReference<List<RegistryEvent>>() {});
+    follower.replicate(events);
+    assertEquals(registryServerSync.getRegistryCache(), follower.getRegistryCache());
   }
 }